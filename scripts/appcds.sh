@@ -0,0 +1,34 @@
+#!/bin/sh
+# Application class-data sharing for faster startup (JDK 19+).
+#
+#   scripts/appcds.sh dump   packages the classes into a jar, then makes a
+#                            training run that exits once the app is
+#                            interactive and writes the archive
+#   scripts/appcds.sh run    starts the app from the jar with the archive
+#
+# CDS only archives classes loaded from jars, hence the packaging step.
+# CLASSES defaults to the Eclipse output folder.
+set -e
+cd "$(dirname "$0")/.."
+CLASSES=${CLASSES:-bin}
+JAR=netsim.jar
+ARCHIVE=netsim.jsa
+BIN=${JAVA_HOME:+$JAVA_HOME/bin/}
+
+case "$1" in
+    dump)
+        rm -f "$JAR" "$ARCHIVE"
+        "${BIN}jar" --create --file "$JAR" --main-class App -C "$CLASSES" .
+        "${BIN}java" -XX:ArchiveClassesAtExit="$ARCHIVE" -Dnetsim.exitAfterStartup=true \
+            -Dnetsim.startupTiming=true -jar "$JAR"
+        ;;
+    run)
+        shift
+        # Falls back to a normal start if the archive is missing or stale
+        exec "${BIN}java" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto "$@" -jar "$JAR"
+        ;;
+    *)
+        echo "usage: $0 dump | run [jvm options]" >&2
+        exit 2
+        ;;
+esac
@@ -1,25 +1,41 @@
+import api.ApiServer;
 import controllers.NetworkController;
+import controllers.SimulationController;
 import views.NetworkView;
+import views.SpriteCache;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import java.awt.Font;
+import java.io.IOException;
 
 
 public class App {
+    private static final String[] FONT_KEYS = {
+        "Button.font", "Label.font", "TextField.font", "TextArea.font", "ComboBox.font",
+        "List.font", "Menu.font", "MenuItem.font", "TabbedPane.font", "TitledBorder.font"
+    };
 	
     public static void main(String[] args) {
-    	 Font nonSerifFont = new Font("Arial", Font.BOLD, 14);
-    	    UIManager.put("Button.font", nonSerifFont);
-    	    UIManager.put("Label.font", nonSerifFont);
-    	    UIManager.put("TextField.font", nonSerifFont);
-    	    UIManager.put("TextArea.font", nonSerifFont);
-    	    UIManager.put("ComboBox.font", nonSerifFont);
-    	    UIManager.put("List.font", nonSerifFont);
-    	    UIManager.put("Menu.font", nonSerifFont);
-    	    UIManager.put("MenuItem.font", nonSerifFont);
-    	    UIManager.put("TabbedPane.font", nonSerifFont);
-    	    UIManager.put("TitledBorder.font", nonSerifFont);
+        // Decode the device icons while the window is being built
+        SpriteCache sprites = SpriteCache.loadAsync();
         NetworkController controller = new NetworkController();
-        NetworkView view = new NetworkView(controller);
-        view.setVisible(true);
+        SimulationController simulation = new SimulationController(controller);
+        SwingUtilities.invokeLater(() -> {
+            Font nonSerifFont = new Font("Arial", Font.BOLD, 14);
+            for (String key : FONT_KEYS) UIManager.put(key, nonSerifFont);
+            NetworkView view = new NetworkView(controller, simulation, sprites);
+            view.setVisible(true);
+            // Reopen the previous project with -Dnetsim.openLastProject=true
+            if (Boolean.getBoolean("netsim.openLastProject")) view.openLastProject();
+        });
+        // Local automation API, enabled with -Dnetsim.apiPort=<port>
+        String apiPort = System.getProperty("netsim.apiPort");
+        if (apiPort != null) {
+            try {
+                new ApiServer(controller, simulation).start(Integer.parseInt(apiPort));
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Could not start API server on port " + apiPort + ": " + e.getMessage());
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package analysis;
+
+import simulation.Topology;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a failure sweep, most critical scenario first.
+ */
+public final class CriticalityReport {
+    private final Topology topology;
+    private final long baselinePairs;
+    private final List<ScenarioResult> results;
+    private final long elapsedNanos;
+
+    CriticalityReport(Topology topology, long baselinePairs, List<ScenarioResult> results, long elapsedNanos) {
+        this.topology = topology;
+        this.baselinePairs = baselinePairs;
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<ScenarioResult> getResults() { return results; }
+    public long getBaselinePairs() { return baselinePairs; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public Topology getTopology() { return topology; }
+
+    public double lostFraction(ScenarioResult result) {
+        return baselinePairs > 0 ? (double) result.getLostPairs() / baselinePairs : 0;
+    }
+
+    /**
+     * Scenarios that lose any reachability or isolate any computer.
+     */
+    public long countHarmful() {
+        return results.stream().filter(r -> r.getLostPairs() > 0 || r.getIsolatedComputers() > 0).count();
+    }
+
+    public String summary(int maxLines) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d scenarios in %.1f ms, %d harmful; %d reachable computer pairs before failures%n",
+            results.size(), elapsedNanos / 1e6, countHarmful(), baselinePairs));
+        int rank = 0;
+        for (ScenarioResult result : results) {
+            if (rank >= maxLines || (result.getLostPairs() == 0 && result.getIsolatedComputers() == 0)) break;
+            sb.append(String.format("%3d. %-40s lost %d pairs (%.1f%%), %d isolated",
+                ++rank, result.getScenario().describe(topology), result.getLostPairs(),
+                lostFraction(result) * 100, result.getIsolatedComputers()));
+            int[] sample = result.getIsolatedSample();
+            if (sample.length > 0) {
+                sb.append(": ");
+                for (int i = 0; i < sample.length; i++) {
+                    if (i > 0) sb.append(", ");
+                    sb.append(topology.name(sample[i]));
+                }
+                if (result.getIsolatedComputers() > sample.length) sb.append(", ...");
+            }
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary(20);
+    }
+}
@@ -0,0 +1,33 @@
+package analysis;
+
+import simulation.Topology;
+import java.util.StringJoiner;
+
+/**
+ * A set of links and devices (topology node indexes) that fail together.
+ */
+public final class FailureScenario {
+    private final int[] links;
+    private final int[] nodes;
+
+    public FailureScenario(int[] links, int[] nodes) {
+        this.links = links.clone();
+        this.nodes = nodes.clone();
+    }
+
+    int[] getLinks() { return links; }
+    int[] getNodes() { return nodes; }
+
+    public int size() {
+        return links.length + nodes.length;
+    }
+
+    public String describe(Topology topology) {
+        StringJoiner joiner = new StringJoiner(" + ");
+        for (int node : nodes) joiner.add(topology.name(node));
+        for (int link : links) {
+            joiner.add(topology.name(topology.linkA(link)) + "--" + topology.name(topology.linkB(link)));
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,314 @@
+package analysis;
+
+import simulation.Topology;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates the impact of link and device failures on a topology snapshot.
+ *
+ * Failures are applied virtually: each worker thread marks failed links
+ * and nodes in its own stamp arrays and walks the shared, immutable CSR
+ * graph around them, so no scenario copies the graph. Only the baseline
+ * components touched by a failure are walked again. Single failures that
+ * cannot disconnect anything (links that are not bridges, forwarding
+ * devices that are not articulation points) are answered without a walk.
+ *
+ * Reachability is topological: two computers reach each other if a path
+ * of working links joins them. Routing tables and VLANs are not considered.
+ */
+public final class FailureSweep {
+    private final Topology topology;
+
+    // Baseline connectivity
+    private final int[] component;
+    private final int[] componentStart;
+    private final int[] componentNodes;
+    private final int[] componentComputers;
+    private final long baselinePairs;
+    private final boolean[] bridge;
+    private final boolean[] articulation;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    public FailureSweep(Topology topology) {
+        this.topology = topology;
+        int n = topology.nodeCount();
+        component = new int[n];
+        Arrays.fill(component, -1);
+        int[] order = new int[n];
+        int[] starts = new int[n + 1];
+        int components = 0;
+        int filled = 0;
+        for (int v = 0; v < n; v++) {
+            if (component[v] >= 0) continue;
+            starts[components] = filled;
+            int head = filled;
+            order[filled++] = v;
+            component[v] = components;
+            while (head < filled) {
+                int u = order[head++];
+                for (int s = topology.adjStart(u); s < topology.adjEnd(u); s++) {
+                    int w = topology.adjNode(s);
+                    if (component[w] < 0) {
+                        component[w] = components;
+                        order[filled++] = w;
+                    }
+                }
+            }
+            components++;
+        }
+        starts[components] = filled;
+        componentStart = Arrays.copyOf(starts, components + 1);
+        componentNodes = order;
+        componentComputers = new int[components];
+        long pairs = 0;
+        for (int v = 0; v < n; v++) {
+            if (topology.type(v) == Topology.COMPUTER) componentComputers[component[v]]++;
+        }
+        for (int c : componentComputers) pairs += pairs(c);
+        baselinePairs = pairs;
+        bridge = new boolean[topology.linkCount()];
+        articulation = new boolean[n];
+        findCutElements();
+        scratch = ThreadLocal.withInitial(() -> new Scratch(n, topology.linkCount()));
+    }
+
+    /**
+     * Every single-link failure.
+     */
+    public List<FailureScenario> singleLinkScenarios() {
+        List<FailureScenario> scenarios = new ArrayList<>(topology.linkCount());
+        for (int link = 0; link < topology.linkCount(); link++) {
+            scenarios.add(new FailureScenario(new int[] { link }, new int[0]));
+        }
+        return scenarios;
+    }
+
+    /**
+     * Every single failure of a switch or router.
+     */
+    public List<FailureScenario> singleDeviceScenarios() {
+        List<FailureScenario> scenarios = new ArrayList<>();
+        for (int v = 0; v < topology.nodeCount(); v++) {
+            if (topology.type(v) != Topology.COMPUTER) {
+                scenarios.add(new FailureScenario(new int[0], new int[] { v }));
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * Random combinations of {@code failures} simultaneous failures, each
+     * a link or a switch/router, drawn without repetition within a scenario.
+     */
+    public List<FailureScenario> sampledScenarios(int count, int failures, long seed) {
+        int[] devices = IntStream.range(0, topology.nodeCount())
+            .filter(v -> topology.type(v) != Topology.COMPUTER).toArray();
+        int elements = topology.linkCount() + devices.length;
+        if (failures < 1 || failures > elements) {
+            throw new IllegalArgumentException("Cannot fail " + failures + " of " + elements + " links and devices");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        List<FailureScenario> scenarios = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Set<Integer> picked = new HashSet<>();
+            while (picked.size() < failures) picked.add(random.nextInt(elements));
+            int[] links = picked.stream().filter(e -> e < topology.linkCount()).mapToInt(Integer::intValue).sorted().toArray();
+            int[] nodes = picked.stream().filter(e -> e >= topology.linkCount())
+                .mapToInt(e -> devices[e - topology.linkCount()]).sorted().toArray();
+            scenarios.add(new FailureScenario(links, nodes));
+        }
+        return scenarios;
+    }
+
+    /**
+     * Evaluates the scenarios in parallel and ranks them by lost
+     * reachability, then by isolated computers.
+     */
+    public CriticalityReport run(List<FailureScenario> scenarios) {
+        long start = System.nanoTime();
+        List<ScenarioResult> results = IntStream.range(0, scenarios.size()).parallel()
+            .mapToObj(i -> evaluate(scenarios.get(i)))
+            .sorted(ScenarioResult.BY_CRITICALITY)
+            .collect(Collectors.toList());
+        return new CriticalityReport(topology, baselinePairs, results, System.nanoTime() - start);
+    }
+
+    /**
+     * Convenience for the usual review: all single links, all single
+     * switches/routers and {@code samples} random multi-failures.
+     */
+    public CriticalityReport runStandardSweep(int samples, int failuresPerSample, long seed) {
+        List<FailureScenario> scenarios = new ArrayList<>(singleLinkScenarios());
+        scenarios.addAll(singleDeviceScenarios());
+        int elements = topology.linkCount() + singleDeviceScenarios().size();
+        if (samples > 0 && failuresPerSample <= elements) {
+            scenarios.addAll(sampledScenarios(samples, failuresPerSample, seed));
+        }
+        return run(scenarios);
+    }
+
+    public long getBaselinePairs() {
+        return baselinePairs;
+    }
+
+    public ScenarioResult evaluate(FailureScenario scenario) {
+        int[] links = scenario.getLinks();
+        int[] nodes = scenario.getNodes();
+        // Single failures that cannot split a component
+        if (nodes.length == 0 && links.length == 1 && !bridge[links[0]]) {
+            return new ScenarioResult(scenario, 0, 0, new int[0]);
+        }
+        if (links.length == 0 && nodes.length == 1 && !articulation[nodes[0]]
+                && topology.type(nodes[0]) != Topology.COMPUTER) {
+            return new ScenarioResult(scenario, 0, 0, new int[0]);
+        }
+
+        Scratch s = scratch.get();
+        int stamp = s.nextStamp();
+        for (int link : links) s.failedLink[link] = stamp;
+        for (int node : nodes) s.failedNode[node] = stamp;
+        // Baseline components that contain a failure
+        int affectedCount = 0;
+        for (int link : links) affectedCount = s.markComponent(component[topology.linkA(link)], stamp, affectedCount);
+        for (int node : nodes) affectedCount = s.markComponent(component[node], stamp, affectedCount);
+
+        long lost = 0;
+        int isolated = 0;
+        int[] isolatedSample = new int[ScenarioResult.SAMPLE_SIZE];
+        for (int i = 0; i < affectedCount; i++) {
+            int c = s.affected[i];
+            boolean hadPeers = componentComputers[c] > 1;
+            long remaining = 0;
+            for (int k = componentStart[c]; k < componentStart[c + 1]; k++) {
+                int root = componentNodes[k];
+                if (s.failedNode[root] == stamp || s.visited[root] == stamp) continue;
+                int computers = walk(s, root, stamp);
+                remaining += pairs(computers);
+                if (computers == 1 && hadPeers) {
+                    int computer = s.lastComputer;
+                    if (isolated < isolatedSample.length) isolatedSample[isolated] = computer;
+                    isolated++;
+                }
+            }
+            lost += pairs(componentComputers[c]) - remaining;
+        }
+        return new ScenarioResult(scenario, lost, isolated,
+            Arrays.copyOf(isolatedSample, Math.min(isolated, isolatedSample.length)));
+    }
+
+    // Depth-first walk avoiding failed elements; returns the computers reached
+    private int walk(Scratch s, int root, int stamp) {
+        int top = 0;
+        s.stack[top++] = root;
+        s.visited[root] = stamp;
+        int computers = 0;
+        while (top > 0) {
+            int u = s.stack[--top];
+            if (topology.type(u) == Topology.COMPUTER) {
+                computers++;
+                s.lastComputer = u;
+            }
+            for (int e = topology.adjStart(u); e < topology.adjEnd(u); e++) {
+                int w = topology.adjNode(e);
+                if (s.visited[w] == stamp || s.failedNode[w] == stamp || s.failedLink[topology.adjLink(e)] == stamp) {
+                    continue;
+                }
+                s.visited[w] = stamp;
+                s.stack[top++] = w;
+            }
+        }
+        return computers;
+    }
+
+    private static long pairs(long computers) {
+        return computers * (computers - 1) / 2;
+    }
+
+    // Iterative Tarjan over the CSR graph: bridges and articulation points
+    private void findCutElements() {
+        int n = topology.nodeCount();
+        int[] disc = new int[n];
+        int[] low = new int[n];
+        int[] parentLink = new int[n];
+        int[] nextEdge = new int[n];
+        int[] stack = new int[n];
+        int time = 0;
+        for (int root = 0; root < n; root++) {
+            if (disc[root] != 0) continue;
+            int rootChildren = 0;
+            int top = 0;
+            stack[top++] = root;
+            disc[root] = low[root] = ++time;
+            parentLink[root] = -1;
+            nextEdge[root] = topology.adjStart(root);
+            while (top > 0) {
+                int u = stack[top - 1];
+                if (nextEdge[u] < topology.adjEnd(u)) {
+                    int e = nextEdge[u]++;
+                    int w = topology.adjNode(e);
+                    int link = topology.adjLink(e);
+                    if (link == parentLink[u]) continue;
+                    if (disc[w] == 0) {
+                        disc[w] = low[w] = ++time;
+                        parentLink[w] = link;
+                        nextEdge[w] = topology.adjStart(w);
+                        stack[top++] = w;
+                        if (u == root) rootChildren++;
+                    } else {
+                        low[u] = Math.min(low[u], disc[w]);
+                    }
+                } else {
+                    top--;
+                    if (top == 0) break;
+                    int p = stack[top - 1];
+                    low[p] = Math.min(low[p], low[u]);
+                    if (low[u] > disc[p]) bridge[parentLink[u]] = true;
+                    if (p != root && low[u] >= disc[p]) articulation[p] = true;
+                }
+            }
+            if (rootChildren > 1) articulation[root] = true;
+        }
+    }
+
+    // Per-thread working state; stamps avoid clearing between scenarios
+    private static final class Scratch {
+        final int[] failedLink;
+        final int[] failedNode;
+        final int[] visited;
+        final int[] componentMark;
+        final int[] affected;
+        final int[] stack;
+        int stamp;
+        int lastComputer;
+
+        Scratch(int nodes, int links) {
+            failedLink = new int[links];
+            failedNode = new int[nodes];
+            visited = new int[nodes];
+            componentMark = new int[nodes + 1];
+            affected = new int[nodes + 1];
+            stack = new int[nodes];
+        }
+
+        int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(failedLink, 0);
+                Arrays.fill(failedNode, 0);
+                Arrays.fill(visited, 0);
+                Arrays.fill(componentMark, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+
+        int markComponent(int c, int stamp, int count) {
+            if (componentMark[c] == stamp) return count;
+            componentMark[c] = stamp;
+            affected[count] = c;
+            return count + 1;
+        }
+    }
+}
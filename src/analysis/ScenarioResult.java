@@ -0,0 +1,38 @@
+package analysis;
+
+import java.util.Comparator;
+
+/**
+ * Impact of one failure scenario.
+ */
+public final class ScenarioResult {
+    static final int SAMPLE_SIZE = 5;
+
+    static final Comparator<ScenarioResult> BY_CRITICALITY = Comparator
+        .comparingLong(ScenarioResult::getLostPairs).reversed()
+        .thenComparing(Comparator.comparingInt(ScenarioResult::getIsolatedComputers).reversed())
+        .thenComparingInt(r -> r.getScenario().size());
+
+    private final FailureScenario scenario;
+    private final long lostPairs;
+    private final int isolatedComputers;
+    private final int[] isolatedSample;
+
+    ScenarioResult(FailureScenario scenario, long lostPairs, int isolatedComputers, int[] isolatedSample) {
+        this.scenario = scenario;
+        this.lostPairs = lostPairs;
+        this.isolatedComputers = isolatedComputers;
+        this.isolatedSample = isolatedSample;
+    }
+
+    public FailureScenario getScenario() { return scenario; }
+
+    /** Computer pairs that could reach each other before the failure but not after. */
+    public long getLostPairs() { return lostPairs; }
+
+    /** Computers left without any other reachable computer. */
+    public int getIsolatedComputers() { return isolatedComputers; }
+
+    /** Node indexes of up to five of the isolated computers. */
+    public int[] getIsolatedSample() { return isolatedSample.clone(); }
+}
@@ -0,0 +1,919 @@
+package api;
+
+import analysis.CriticalityReport;
+import analysis.FailureSweep;
+import analysis.ScenarioResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import controllers.BroadcastDomains;
+import controllers.NetworkController;
+import controllers.NetworkController.NetworkException;
+import controllers.ProjectFiles;
+import controllers.SimulationController;
+import controllers.ValidationReport;
+import history.ProjectDiff;
+import history.ProjectHistory;
+import history.Version;
+import models.*;
+import rules.RuleEngine;
+import rules.Violation;
+import simulation.PacketCapture;
+import simulation.Simulator;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP/JSON interface to the controllers, for scripts and load tests.
+ * Binds to the loopback address only and serves every request on its own
+ * virtual thread. Listings are streamed, and write endpoints accept either
+ * a single object or an array of them.
+ *
+ * <pre>
+ * GET    /api/devices?type=&amp;prefix=&amp;offset=&amp;limit=
+ * POST   /api/devices                 {type, name, ip, ports} or [..]
+ * POST   /api/devices/remove          ["name", ..]
+ * GET    /api/devices/{name}
+ * PATCH  /api/devices/{name}          {name, ip, ports}
+ * DELETE /api/devices/{name}
+ * GET    /api/devices/{name}/ports
+ * PATCH  /api/devices/{name}/ports/{n}  {speed, vlan} or {speed, trunk: "10,20-29"}
+ * GET    /api/connections
+ * POST   /api/connections             {a, b, bandwidthBps, delayNanos, lossRate, mtu, queue, queueCapacity} or [..]
+ * PATCH  /api/connections             {a, b, bandwidthBps, delayNanos, lossRate, mtu, queue, queueCapacity} or [..]
+ * POST   /api/connections/remove      {a, b} or [..]
+ * GET    /api/candidates?source=&amp;prefix=&amp;offset=&amp;limit=
+ * GET    /api/search?q=&amp;limit=
+ * GET    /api/validation
+ * GET    /api/violations
+ * GET    /api/failures?samples=&amp;size=&amp;seed=&amp;limit=
+ * GET    /api/vlans?a=&amp;b=
+ * GET    /api/vlans/{vlan}?device=&amp;limit=
+ * POST   /api/project/save            {path}
+ * POST   /api/project/load            {path}
+ * GET    /api/history?path=
+ * POST   /api/history/commit          {path, message}
+ * GET    /api/history/diff?path=&amp;from=&amp;to=&amp;limit=   (no to: the current project)
+ * POST   /api/history/checkout        {path, version}
+ * GET    /api/simulation
+ * POST   /api/simulation/start        {seed}
+ * POST   /api/simulation/stop
+ * POST   /api/simulation/traffic      {from, to, intervalNanos, size, priority} or [..]
+ * POST   /api/simulation/advance      {nanos}
+ * POST   /api/simulation/link         {a, b, down}
+ * POST   /api/simulation/checkpoint   {path}
+ * POST   /api/simulation/restore      {path}
+ * POST   /api/simulation/capture      {path, format, devices: [..], links: [{a, b}, ..]}
+ * POST   /api/simulation/capture-stop
+ * </pre>
+ */
+public class ApiServer {
+    private static final int DEFAULT_PAGE = 1000;
+    private static final String[] LINK_FIELDS = {"bandwidthBps", "delayNanos", "lossRate", "mtu", "queue", "queueCapacity"};
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    private final NetworkController network;
+    private final SimulationController simulation;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public ApiServer(NetworkController network, SimulationController simulation) {
+        this.network = network;
+        this.simulation = simulation;
+    }
+
+    public synchronized void start(int port) throws IOException {
+        if (server != null) throw new IllegalStateException("Server already started");
+        // Without TCP_NODELAY small keep-alive responses wait on delayed ACKs (~40ms each).
+        // Read once by the JDK server, so it has to be set before the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        // One virtual thread per request (Java 21)
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Port actually bound, useful when started on port 0.
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    private interface Body {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (NetworkException | IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, String.valueOf(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException, NetworkException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getRawPath().substring("/api/".length()).split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String resource = path[0];
+        String sub = path.length > 1 ? URLDecoder.decode(path[1], StandardCharsets.UTF_8) : null;
+
+        switch (resource) {
+            case "devices":
+                if (sub == null) {
+                    if (method.equals("GET")) {
+                        listDevices(exchange, query);
+                    } else if (method.equals("POST")) {
+                        sendBatch(exchange, this::addDevice);
+                    } else {
+                        throw methodNotAllowed();
+                    }
+                } else if (sub.equals("remove") && method.equals("POST")) {
+                    sendBatch(exchange, item -> {
+                        network.removeDevice(requireDevice(asString(item, "name")));
+                        return null;
+                    });
+                } else if (path.length > 2 && path[2].equals("ports")) {
+                    ports(exchange, method, requireDevice(sub), path);
+                } else {
+                    Device device = requireDevice(sub);
+                    switch (method) {
+                        case "GET":
+                            send(exchange, 200, json -> writeDevice(json, device));
+                            break;
+                        case "PATCH":
+                            updateDevice(device, asObject(readJson(exchange)));
+                            send(exchange, 200, json -> writeDevice(json, device));
+                            break;
+                        case "DELETE":
+                            network.removeDevice(device);
+                            send(exchange, 200, json -> json.beginObject().field("ok", true).endObject());
+                            break;
+                        default:
+                            throw methodNotAllowed();
+                    }
+                }
+                break;
+            case "connections":
+                if (sub == null && method.equals("GET")) {
+                    listConnections(exchange, query);
+                } else if (sub == null && method.equals("POST")) {
+                    sendBatch(exchange, this::addConnection);
+                } else if (sub == null && method.equals("PATCH")) {
+                    sendBatch(exchange, this::updateConnection);
+                } else if ("remove".equals(sub) && method.equals("POST")) {
+                    sendBatch(exchange, item -> {
+                        Map<String, Object> spec = asObject(item);
+                        network.disconnectDevices(requireDevice(string(spec, "a")), requireDevice(string(spec, "b")));
+                        return null;
+                    });
+                } else {
+                    throw methodNotAllowed();
+                }
+                break;
+            case "candidates":
+                requireMethod(method, "GET");
+                listCandidates(exchange, query);
+                break;
+            case "search":
+                requireMethod(method, "GET");
+                List<Device> found = network.searchDevices(query.get("q"), intParam(query, "limit", DEFAULT_PAGE));
+                send(exchange, 200, json -> {
+                    json.beginArray();
+                    for (Device device : found) writeDevice(json, device);
+                    json.endArray();
+                });
+                break;
+            case "validation":
+                requireMethod(method, "GET");
+                ValidationReport report = network.validateNetwork();
+                send(exchange, 200, json -> writeReport(json, report));
+                break;
+            case "violations":
+                requireMethod(method, "GET");
+                // Kept up to date per change, so this does not rescan the network
+                RuleEngine rules = RuleEngine.attachedTo(network);
+                List<Violation> violations = rules.getViolations();
+                send(exchange, 200, json -> writeViolations(json, violations));
+                break;
+            case "failures":
+                requireMethod(method, "GET");
+                failureSweep(exchange, query);
+                break;
+            case "vlans":
+                requireMethod(method, "GET");
+                vlans(exchange, sub, query);
+                break;
+            case "project":
+                requireMethod(method, "POST");
+                project(exchange, sub);
+                break;
+            case "history":
+                history(exchange, method, sub, query);
+                break;
+            case "simulation":
+                simulation(exchange, method, sub);
+                break;
+            default:
+                throw new HttpError(404, "Unknown resource: " + resource);
+        }
+    }
+
+    // Devices
+
+    private void listDevices(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String type = query.get("type");
+        String prefix = query.getOrDefault("prefix", "").toLowerCase(Locale.ROOT);
+        int offset = intParam(query, "offset", 0);
+        int limit = intParam(query, "limit", Integer.MAX_VALUE);
+        List<Device> devices = network.getDevices();
+        stream(exchange, json -> {
+            json.beginArray();
+            int skipped = 0;
+            int written = 0;
+            for (Device device : devices) {
+                if (written >= limit) break;
+                if (type != null && !typeName(device).equals(type)) continue;
+                if (!device.getName().toLowerCase(Locale.ROOT).startsWith(prefix)) continue;
+                if (skipped++ < offset) continue;
+                writeDevice(json, device);
+                written++;
+            }
+            json.endArray();
+        });
+    }
+
+    private Object addDevice(Object item) {
+        Map<String, Object> spec = asObject(item);
+        String type = string(spec, "type");
+        String name = string(spec, "name");
+        String ip = optString(spec, "ip", "0.0.0.0");
+        Device device;
+        switch (type) {
+            case "computer":
+                device = new Computer(name, ip);
+                break;
+            case "switch":
+                device = new Switch(name, ip, (int) optLong(spec, "ports", Switch.DEFAULT_PORT_COUNT));
+                break;
+            case "router":
+                device = new Router(name, ip);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown device type: " + type);
+        }
+        network.addDevice(device);
+        return device;
+    }
+
+    private void updateDevice(Device device, Map<String, Object> spec) {
+        String name = optString(spec, "name", device.getName());
+        String ip = optString(spec, "ip", device.getIpAddress());
+        // Throws if the name is taken, checked under the controller's lock
+        network.updateDevice(device, name, ip);
+        if (spec.containsKey("ports")) {
+            if (!(device instanceof Switch)) throw new IllegalArgumentException("Only switches have a port count");
+            network.setPortCount((Switch) device, (int) optLong(spec, "ports", 0));
+        }
+    }
+
+    private void ports(HttpExchange exchange, String method, Device device, String[] path) throws IOException {
+        if (!(device instanceof Switch)) throw new IllegalArgumentException("Only switches have ports");
+        Switch sw = (Switch) device;
+        if (path.length == 3) {
+            requireMethod(method, "GET");
+            List<Port> ports = sw.getPorts();
+            send(exchange, 200, json -> {
+                json.beginArray();
+                for (Port port : ports) writePort(json, port);
+                json.endArray();
+            });
+            return;
+        }
+        requireMethod(method, "PATCH");
+        int index;
+        try {
+            index = Integer.parseInt(path[3]) - 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Port number must be an integer");
+        }
+        Port port = sw.getPort(index);
+        Map<String, Object> spec = asObject(readJson(exchange));
+        int speed = (int) optLong(spec, "speed", port.getSpeedMbps());
+        BitSet trunk = null;
+        if (spec.containsKey("trunk")) {
+            trunk = Port.parseVlans(string(spec, "trunk"));
+        } else if (!spec.containsKey("vlan") && port.getMode() == Port.Mode.TRUNK) {
+            trunk = port.getVlans();
+        }
+        int vlan = (int) optLong(spec, "vlan", port.getAccessVlan());
+        network.configurePort(sw, index, speed, vlan, trunk);
+        send(exchange, 200, json -> writePort(json, port));
+    }
+
+    private void listCandidates(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String source = query.get("source");
+        if (source == null) throw new IllegalArgumentException("Missing parameter 'source'");
+        int offset = intParam(query, "offset", 0);
+        int limit = intParam(query, "limit", DEFAULT_PAGE);
+        controllers.CandidatePage page = network.findConnectionCandidates(
+            requireDevice(source), query.get("prefix"), offset, limit);
+        send(exchange, 200, json -> {
+            json.beginObject().name("devices").beginArray();
+            for (Device device : page.getDevices()) writeDevice(json, device);
+            json.endArray();
+            json.field("hasMore", page.hasMore()).field("nextOffset", page.getNextOffset());
+            json.endObject();
+        });
+    }
+
+    // Connections
+
+    private void listConnections(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int offset = intParam(query, "offset", 0);
+        int limit = intParam(query, "limit", Integer.MAX_VALUE);
+        List<Connection> connections = network.getConnections();
+        stream(exchange, json -> {
+            json.beginArray();
+            int end = (int) Math.min(connections.size(), (long) offset + limit);
+            for (int i = Math.min(offset, end); i < end; i++) {
+                writeConnection(json, connections.get(i));
+            }
+            json.endArray();
+        });
+    }
+
+    private Object addConnection(Object item) throws NetworkException {
+        Map<String, Object> spec = asObject(item);
+        Device a = requireDevice(string(spec, "a"));
+        Device b = requireDevice(string(spec, "b"));
+        // Checked before connecting, so a bad value does not leave a link behind
+        Connection settings = linkSettings(new Connection(a, b), spec);
+        network.connectDevices(a, b);
+        if (hasLinkSettings(spec)) network.configureLink(a, b, settings);
+        return network.getConnection(a, b);
+    }
+
+    private Object updateConnection(Object item) throws NetworkException {
+        Map<String, Object> spec = asObject(item);
+        Device a = requireDevice(string(spec, "a"));
+        Device b = requireDevice(string(spec, "b"));
+        Connection current = network.getConnection(a, b);
+        if (current == null) throw new HttpError(404, a.getName() + " and " + b.getName() + " are not connected");
+        Connection settings = new Connection(a, b);
+        settings.copySettingsFrom(current);
+        network.configureLink(a, b, linkSettings(settings, spec));
+        return network.getConnection(a, b);
+    }
+
+    private static boolean hasLinkSettings(Map<String, Object> spec) {
+        for (String field : LINK_FIELDS) {
+            if (spec.containsKey(field)) return true;
+        }
+        return false;
+    }
+
+    // Applies the fields present in the request to a template connection
+    private static Connection linkSettings(Connection settings, Map<String, Object> spec) {
+        if (spec.containsKey("bandwidthBps")) settings.setBandwidthBps(optLong(spec, "bandwidthBps", 0));
+        if (spec.containsKey("delayNanos")) settings.setPropagationDelayNanos(optLong(spec, "delayNanos", 0));
+        if (spec.containsKey("lossRate")) settings.setLossRate(optDouble(spec, "lossRate", 0));
+        if (spec.containsKey("mtu")) settings.setMtu((int) optLong(spec, "mtu", 0));
+        QueueDiscipline discipline = settings.getQueueDiscipline();
+        if (spec.containsKey("queue")) {
+            String name = string(spec, "queue");
+            try {
+                discipline = QueueDiscipline.valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown queue discipline '" + name + "', expected one of "
+                    + Arrays.toString(QueueDiscipline.values()));
+            }
+        }
+        settings.setQueue(discipline, (int) optLong(spec, "queueCapacity", settings.getQueueCapacity()));
+        return settings;
+    }
+
+    private void failureSweep(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int samples = intParam(query, "samples", 1000);
+        int size = intParam(query, "size", 2);
+        int limit = intParam(query, "limit", 100);
+        long seed = intParam(query, "seed", 1);
+        CriticalityReport report = new FailureSweep(network.getTopology()).runStandardSweep(samples, size, seed);
+        stream(exchange, json -> {
+            json.beginObject()
+                .field("scenarios", report.getResults().size())
+                .field("harmful", report.countHarmful())
+                .field("baselinePairs", report.getBaselinePairs())
+                .field("elapsedMillis", report.getElapsedNanos() / 1e6)
+                .name("results").beginArray();
+            for (ScenarioResult result : report.getResults().subList(0, Math.min(limit, report.getResults().size()))) {
+                json.beginObject()
+                    .field("failed", result.getScenario().describe(report.getTopology()))
+                    .field("lostPairs", result.getLostPairs())
+                    .field("lostFraction", report.lostFraction(result))
+                    .field("isolatedComputers", result.getIsolatedComputers())
+                    .name("isolatedSample").beginArray();
+                for (int node : result.getIsolatedSample()) json.value(report.getTopology().name(node));
+                json.endArray().endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    // VLANs
+
+    private void vlans(HttpExchange exchange, String sub, Map<String, String> query) throws IOException {
+        BroadcastDomains domains = network.getBroadcastDomains();
+        if (sub == null) {
+            // VLANs on which two devices can reach each other at layer 2
+            String a = query.get("a");
+            String b = query.get("b");
+            if (a == null || b == null) throw new IllegalArgumentException("Missing parameter 'a' or 'b'");
+            String shared = Port.formatVlans(domains.sharedVlans(requireDevice(a), requireDevice(b)));
+            send(exchange, 200, json -> json.beginObject().field("vlans", shared).endObject());
+            return;
+        }
+        int vlan;
+        try {
+            vlan = Integer.parseInt(sub);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("VLAN id must be an integer");
+        }
+        String name = query.get("device");
+        List<Set<Device>> found = name != null ? domains.domainsOf(requireDevice(name), vlan) : domains.domainsFor(vlan);
+        int limit = intParam(query, "limit", DEFAULT_PAGE);
+        send(exchange, 200, json -> {
+            json.beginObject().field("count", found.size()).name("domains").beginArray();
+            for (Set<Device> domain : found.subList(0, Math.min(limit, found.size()))) {
+                json.beginObject().field("size", domain.size()).name("devices").beginArray();
+                for (Device device : domain) json.value(device.getName());
+                json.endArray().endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    // Project files
+
+    private void project(HttpExchange exchange, String action) throws IOException, NetworkException {
+        File file = new File(string(asObject(readJson(exchange)), "path"));
+        if ("save".equals(action)) {
+            ProjectFiles.write(file, network.snapshotProject().toProjectData(), null, null);
+        } else if ("load".equals(action)) {
+            try {
+                network.loadProjectData(ProjectFiles.read(file, null, null));
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IllegalArgumentException("Not a project file: " + file);
+            }
+        } else {
+            throw new HttpError(404, "Unknown project action: " + action);
+        }
+        send(exchange, 200, json -> json.beginObject().field("ok", true).endObject());
+    }
+
+    // History
+
+    private void history(HttpExchange exchange, String method, String action, Map<String, String> query)
+            throws IOException, NetworkException {
+        if (action == null || "diff".equals(action)) {
+            requireMethod(method, "GET");
+            String path = query.get("path");
+            if (path == null) throw new IllegalArgumentException("Missing parameter 'path'");
+            ProjectHistory history = ProjectHistory.open(new File(path));
+            if (action == null) {
+                List<Version> versions = history.getVersions();
+                send(exchange, 200, json -> {
+                    json.beginArray();
+                    for (Version version : versions) writeVersion(json, version);
+                    json.endArray();
+                });
+                return;
+            }
+            Version from = history.getVersion(intParam(query, "from", 0));
+            // Without 'to', against the current project, which is not committed
+            ProjectDiff diff = query.containsKey("to") ? history.diff(from, history.getVersion(intParam(query, "to", 0)))
+                : history.diffWithCurrent(from, network);
+            int limit = intParam(query, "limit", DEFAULT_PAGE);
+            send(exchange, 200, json -> {
+                json.beginObject().field("from", diff.getFrom().getNumber()).field("to", diff.getTo().getNumber())
+                    .field("chunksCompared", diff.getChunksCompared())
+                    .field("changeCount", diff.getChanges().size()).name("changes").beginArray();
+                for (ProjectDiff.Change change : diff.getChanges().subList(0, Math.min(limit, diff.getChanges().size()))) {
+                    json.beginObject().field("kind", change.getKind().name())
+                        .field("element", change.isConnection() ? "connection" : "device")
+                        .field("description", change.getDescription()).endObject();
+                }
+                json.endArray().endObject();
+            });
+            return;
+        }
+        requireMethod(method, "POST");
+        Map<String, Object> spec = asObject(readJson(exchange));
+        ProjectHistory history = ProjectHistory.open(new File(string(spec, "path")));
+        switch (action) {
+            case "commit":
+                Version version = history.commit(network, optString(spec, "message", ""));
+                send(exchange, 200, json -> writeVersion(json, version));
+                break;
+            case "checkout":
+                history.checkout(history.getVersion((int) optLong(spec, "version", 0)), network);
+                send(exchange, 200, json -> json.beginObject().field("ok", true).endObject());
+                break;
+            default:
+                throw new HttpError(404, "Unknown history action: " + action);
+        }
+    }
+
+    private static void writeVersion(JsonWriter json, Version version) throws IOException {
+        json.beginObject().field("version", version.getNumber()).field("root", version.getRoot())
+            .field("time", version.getTimeMillis()).field("devices", version.getDeviceCount())
+            .field("connections", version.getConnectionCount()).field("message", version.getMessage())
+            .endObject();
+    }
+
+    // Simulation
+
+    private void simulation(HttpExchange exchange, String method, String action) throws IOException, NetworkException {
+        if (action == null) {
+            requireMethod(method, "GET");
+            if (!simulation.isRunning()) {
+                send(exchange, 200, json -> json.beginObject().field("running", false).endObject());
+                return;
+            }
+            StringWriter status = new StringWriter();
+            simulation.withSimulator(sim -> {
+                try {
+                    writeSimulation(new JsonWriter(status), sim);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+            sendRaw(exchange, 200, status.toString());
+            return;
+        }
+        requireMethod(method, "POST");
+        switch (action) {
+            case "start":
+                simulation.start(optLong(readObjectOrEmpty(exchange), "seed", 1));
+                break;
+            case "stop":
+                simulation.stop();
+                break;
+            case "traffic":
+                sendBatch(exchange, item -> {
+                    Map<String, Object> spec = asObject(item);
+                    return (long) simulation.addTraffic(string(spec, "from"), string(spec, "to"),
+                        optLong(spec, "intervalNanos", 1_000_000), (int) optLong(spec, "size", 1000),
+                        (int) optLong(spec, "priority", 0));
+                });
+                return;
+            case "advance":
+                simulation.advance(optLong(readObjectOrEmpty(exchange), "nanos", 1_000_000));
+                break;
+            case "link":
+                Map<String, Object> spec = asObject(readJson(exchange));
+                simulation.setLinkDown(string(spec, "a"), string(spec, "b"),
+                    !Boolean.FALSE.equals(spec.get("down")));
+                break;
+            case "checkpoint":
+                simulation.checkpoint(new File(string(asObject(readJson(exchange)), "path")));
+                break;
+            case "restore":
+                simulation.restore(new File(string(asObject(readJson(exchange)), "path")));
+                break;
+            case "capture":
+                startCapture(asObject(readJson(exchange)));
+                break;
+            case "capture-stop":
+                long packets = simulation.stopCapture();
+                send(exchange, 200, json -> json.beginObject().field("packets", packets).endObject());
+                return;
+            default:
+                throw new HttpError(404, "Unknown simulation action: " + action);
+        }
+        send(exchange, 200, json -> json.beginObject().field("ok", true).endObject());
+    }
+
+    private void startCapture(Map<String, Object> spec) throws IOException {
+        PacketCapture.Format format;
+        try {
+            format = PacketCapture.Format.valueOf(optString(spec, "format", "pcapng").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Format must be pcap or pcapng");
+        }
+        List<String> devices = new ArrayList<>();
+        for (Object device : optList(spec, "devices")) devices.add(asString(device, "name"));
+        List<String[]> links = new ArrayList<>();
+        for (Object link : optList(spec, "links")) {
+            Map<String, Object> pair = asObject(link);
+            links.add(new String[] { string(pair, "a"), string(pair, "b") });
+        }
+        simulation.startCapture(new File(string(spec, "path")), format, devices, links);
+    }
+
+    // Batches
+
+    private interface BatchItem {
+        Object apply(Object item) throws NetworkException;
+    }
+
+    /**
+     * Applies an operation to one item or each item of an array. Items
+     * succeed or fail individually; the response lists a result per item.
+     */
+    private void sendBatch(HttpExchange exchange, BatchItem operation) throws IOException {
+        Object body = readJson(exchange);
+        List<?> items = body instanceof List ? (List<?>) body : Collections.singletonList(body);
+        Object[] results = new Object[items.size()];
+        int failed = 0;
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                results[i] = operation.apply(items.get(i));
+            } catch (NetworkException | RuntimeException e) {
+                results[i] = e;
+                failed++;
+            }
+        }
+        int failures = failed;
+        send(exchange, failures == items.size() && failures > 0 ? 400 : 200, json -> {
+            json.beginObject()
+                .field("succeeded", items.size() - failures)
+                .field("failed", failures)
+                .name("results").beginArray();
+            for (Object result : results) {
+                json.beginObject();
+                if (result instanceof Exception) {
+                    json.field("ok", false).field("error", ((Exception) result).getMessage());
+                } else {
+                    json.field("ok", true);
+                    if (result instanceof Device) {
+                        json.name("device");
+                        writeDevice(json, (Device) result);
+                    } else if (result instanceof Connection) {
+                        json.name("connection");
+                        writeConnection(json, (Connection) result);
+                    } else if (result instanceof Long) {
+                        json.field("id", (Long) result);
+                    }
+                }
+                json.endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    // JSON representations
+
+    private static void writeDevice(JsonWriter json, Device device) throws IOException {
+        json.beginObject()
+            .field("id", device.getId())
+            .field("name", device.getName())
+            .field("type", typeName(device))
+            .field("ip", device.getIpAddress())
+            .field("connections", device.getConnectionCount())
+            .field("maxConnections", device.getMaxConnections())
+            .endObject();
+    }
+
+    private static void writePort(JsonWriter json, Port port) throws IOException {
+        json.beginObject()
+            .field("port", port.getIndex() + 1)
+            .field("speed", port.getSpeedMbps())
+            .field("mode", port.getMode().name());
+        if (port.getMode() == Port.Mode.TRUNK) {
+            json.field("trunk", Port.formatVlans(port.getVlans()));
+        } else {
+            json.field("vlan", port.getAccessVlan());
+        }
+        json.field("device", port.isFree() ? null : port.getDevice().getName()).endObject();
+    }
+
+    private static void writeConnection(JsonWriter json, Connection connection) throws IOException {
+        json.beginObject()
+            .field("a", connection.getDevice1().getName())
+            .field("b", connection.getDevice2().getName())
+            .field("bandwidthBps", connection.getBandwidthBps())
+            .field("delayNanos", connection.getPropagationDelayNanos())
+            .field("lossRate", connection.getLossRate())
+            .field("mtu", connection.getMtu())
+            .field("queue", connection.getQueueDiscipline().name())
+            .field("queueCapacity", connection.getQueueCapacity())
+            .endObject();
+    }
+
+    private static void writeReport(JsonWriter json, ValidationReport report) throws IOException {
+        json.beginObject().field("valid", report.isValid()).name("problems").beginArray();
+        for (ValidationReport.Problem problem : report.getProblems()) {
+            json.beginObject()
+                .field("kind", problem.getKind().name())
+                .field("severity", problem.getKind().getSeverity().name())
+                .field("message", problem.getMessage())
+                .endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private static void writeViolations(JsonWriter json, List<Violation> violations) throws IOException {
+        json.beginObject().field("count", violations.size()).name("violations").beginArray();
+        for (Violation violation : violations) {
+            json.beginObject()
+                .field("rule", violation.getRule())
+                .field("message", violation.getMessage())
+                .name("devices").beginArray();
+            for (Device device : violation.getDevices()) json.value(device.getName());
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private static void writeSimulation(JsonWriter json, Simulator sim) throws IOException {
+        json.beginObject()
+            .field("running", true)
+            .field("timeNanos", sim.getTime())
+            .field("pendingEvents", sim.getPendingEvents())
+            .field("packetsInFlight", sim.getPacketsInFlight())
+            .field("generated", sim.getGeneratedCount())
+            .field("delivered", sim.getDeliveredCount())
+            .field("queueDrops", sim.getQueueDropCount())
+            .field("linkLosses", sim.getLinkLossCount())
+            .field("expired", sim.getExpiredCount())
+            .field("unroutable", sim.getUnroutableCount())
+            .field("meanLatencyNanos", sim.getMeanLatencyNanos())
+            .endObject();
+    }
+
+    private static String typeName(Device device) {
+        switch (DeviceStore.typeOf(device)) {
+            case DeviceStore.TYPE_COMPUTER: return "computer";
+            case DeviceStore.TYPE_SWITCH: return "switch";
+            case DeviceStore.TYPE_ROUTER: return "router";
+            default: return "other";
+        }
+    }
+
+    // Request and response plumbing
+
+    private Device requireDevice(String name) {
+        Device device = network.getDeviceByName(name);
+        if (device == null) throw new HttpError(404, "No device named '" + name + "'");
+        return device;
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) throw methodNotAllowed();
+    }
+
+    private static HttpError methodNotAllowed() {
+        return new HttpError(405, "Method not allowed");
+    }
+
+    private static Object readJson(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if (body.length == 0) throw new IllegalArgumentException("Request body is empty");
+        return JsonParser.parse(new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Object> readObjectOrEmpty(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        return body.length == 0 ? Collections.emptyMap()
+            : asObject(JsonParser.parse(new String(body, StandardCharsets.UTF_8)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value) {
+        if (!(value instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) value;
+    }
+
+    private static String asString(Object value, String field) {
+        if (value instanceof String) return (String) value;
+        return string(asObject(value), field);
+    }
+
+    private static String string(Map<String, Object> spec, String field) {
+        Object value = spec.get(field);
+        if (!(value instanceof String)) throw new IllegalArgumentException("Missing string field '" + field + "'");
+        return (String) value;
+    }
+
+    private static String optString(Map<String, Object> spec, String field, String fallback) {
+        Object value = spec.get(field);
+        return value instanceof String ? (String) value : fallback;
+    }
+
+    private static List<?> optList(Map<String, Object> spec, String field) {
+        Object value = spec.get(field);
+        if (value == null) return Collections.emptyList();
+        if (!(value instanceof List)) throw new IllegalArgumentException("Field '" + field + "' must be an array");
+        return (List<?>) value;
+    }
+
+    private static long optLong(Map<String, Object> spec, String field, long fallback) {
+        Object value = spec.get(field);
+        if (value == null) return fallback;
+        if (!(value instanceof Number)) throw new IllegalArgumentException("Field '" + field + "' must be a number");
+        return ((Number) value).longValue();
+    }
+
+    private static double optDouble(Map<String, Object> spec, String field, double fallback) {
+        Object value = spec.get(field);
+        if (value == null) return fallback;
+        if (!(value instanceof Number)) throw new IllegalArgumentException("Field '" + field + "' must be a number");
+        return ((Number) value).doubleValue();
+    }
+
+    private static int intParam(Map<String, String> query, String name, int fallback) {
+        String value = query.get(name);
+        if (value == null) return fallback;
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) throw new NumberFormatException();
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be a non-negative integer");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        if (raw == null || raw.isEmpty()) return Collections.emptyMap();
+        Map<String, String> query = new HashMap<>();
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, Body body) throws IOException {
+        StringWriter buffer = new StringWriter(256);
+        body.write(new JsonWriter(buffer));
+        sendRaw(exchange, status, buffer.toString());
+    }
+
+    private static void sendRaw(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Sends a chunked response written directly to the connection, so large
+     * listings are never held in memory as a whole.
+     */
+    private static void stream(HttpExchange exchange, Body body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        body.write(new JsonWriter(out));
+        out.flush();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, status, json -> json.beginObject().field("error", message).endObject());
+        } catch (IOException ignored) {
+            // Client went away or the response was already started
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser producing maps, lists, strings, longs, doubles,
+ * booleans and nulls.
+ */
+public final class JsonParser {
+    private final String text;
+    private int pos;
+
+    private JsonParser(String text) {
+        this.text = text;
+    }
+
+    public static Object parse(String text) {
+        JsonParser parser = new JsonParser(text);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) throw parser.error("Unexpected trailing data");
+        return value;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (pos >= text.length()) throw error("Unexpected end of input");
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return number();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') throw error("Expected a field name");
+            String name = string();
+            skipWhitespace();
+            expect(':');
+            map.put(name, value());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            list.add(value());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String string() {
+        pos++;
+        StringBuilder sb = null;
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                String s = sb == null ? text.substring(start, pos) : sb.append(text, start, pos).toString();
+                pos++;
+                return s;
+            }
+            if (c == '\\') {
+                if (sb == null) sb = new StringBuilder();
+                sb.append(text, start, pos);
+                if (++pos >= text.length()) break;
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) throw error("Bad unicode escape");
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+                start = pos;
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object number() {
+        int start = pos;
+        boolean integral = true;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            pos++;
+        }
+        String s = text.substring(start, pos);
+        try {
+            return integral ? (Object) Long.parseLong(s) : (Object) Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw error("Bad number '" + s + "'");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos)) throw error("Unexpected token");
+        pos += word.length();
+        return value;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : '\0';
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
@@ -0,0 +1,138 @@
+package api;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer. Commas are inserted automatically; the
+ * caller is responsible for balancing begin/end calls.
+ */
+public class JsonWriter {
+    private final Writer out;
+    // One bit per nesting level: set once the level has a first element
+    private long hasElement;
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        out.write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, double value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void push() {
+        if (++depth >= 64) throw new IllegalStateException("JSON nested too deeply");
+        hasElement &= ~(1L << depth);
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        long bit = 1L << depth;
+        if ((hasElement & bit) != 0) out.write(',');
+        hasElement |= bit;
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            out.write(s, start, i - start);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default: out.write(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,169 @@
+package controllers;
+
+import models.*;
+import java.util.*;
+
+/**
+ * Per-VLAN layer 2 broadcast domains over a snapshot of the network.
+ *
+ * Each link carries the intersection of the VLAN sets of its two ends
+ * (a host end accepts every VLAN). Routers do not forward broadcasts, so
+ * every router link ends in a node of its own and a router may sit in one
+ * domain per interface. Links are bucketed by VLAN once, so computing the
+ * domains of one VLAN only unions the links carrying it.
+ */
+public class BroadcastDomains {
+    // One node per non-router device, plus one per router link end
+    private final List<Device> nodes = new ArrayList<>();
+    private final Map<Device, Integer> index = new HashMap<>();
+    // VLANs on each device's links; a null entry carries every VLAN
+    private final Map<Device, List<BitSet>> linkVlans = new HashMap<>();
+    private final List<int[]> untaggedLinks = new ArrayList<>();
+    private final List<List<int[]>> linksByVlan = new ArrayList<>(Port.MAX_VLAN + 1);
+    private final Map<Integer, List<Set<Device>>> cache = new HashMap<>();
+
+    public BroadcastDomains(List<Device> devices, List<Connection> connections) {
+        for (Device device : devices) {
+            if (!(device instanceof Router)) index.put(device, addNode(device));
+            linkVlans.put(device, new ArrayList<>(2));
+        }
+        for (int v = 0; v <= Port.MAX_VLAN; v++) {
+            linksByVlan.add(null);
+        }
+        for (Connection conn : connections) {
+            Device d1 = conn.getDevice1();
+            Device d2 = conn.getDevice2();
+            if (!linkVlans.containsKey(d1) || !linkVlans.containsKey(d2)) continue;
+            BitSet carried = linkVlans(d1, d2);
+            linkVlans.get(d1).add(carried);
+            linkVlans.get(d2).add(carried);
+            int[] link = {nodeOf(d1), nodeOf(d2)};
+            if (carried == null) {
+                untaggedLinks.add(link);
+                continue;
+            }
+            for (int v = carried.nextSetBit(0); v >= 0; v = carried.nextSetBit(v + 1)) {
+                List<int[]> bucket = linksByVlan.get(v);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    linksByVlan.set(v, bucket);
+                }
+                bucket.add(link);
+            }
+        }
+    }
+
+    private int addNode(Device device) {
+        nodes.add(device);
+        return nodes.size() - 1;
+    }
+
+    private int nodeOf(Device device) {
+        return device instanceof Router ? addNode(device) : index.get(device);
+    }
+
+    /**
+     * VLANs carried by a link, or null if neither end restricts them.
+     */
+    public static BitSet linkVlans(Device a, Device b) {
+        BitSet fromA = a instanceof Switch ? ((Switch) a).getVlansTowards(b) : null;
+        BitSet fromB = b instanceof Switch ? ((Switch) b).getVlansTowards(a) : null;
+        if (fromA == null) return fromB == null ? null : (BitSet) fromB.clone();
+        BitSet carried = (BitSet) fromA.clone();
+        if (fromB != null) carried.and(fromB);
+        return carried;
+    }
+
+    /**
+     * Broadcast domains of a VLAN, largest first. Devices with no link
+     * carrying the VLAN are not part of any domain, and a router is part of
+     * one domain per interface carrying it.
+     */
+    public synchronized List<Set<Device>> domainsFor(int vlan) {
+        if (vlan < Port.MIN_VLAN || vlan > Port.MAX_VLAN) {
+            throw new IllegalArgumentException("VLAN id must be between " + Port.MIN_VLAN + " and " + Port.MAX_VLAN);
+        }
+        return cache.computeIfAbsent(vlan, this::computeDomains);
+    }
+
+    /**
+     * Domains of a VLAN that contain the given device.
+     */
+    public List<Set<Device>> domainsOf(Device device, int vlan) {
+        List<Set<Device>> result = new ArrayList<>();
+        for (Set<Device> domain : domainsFor(vlan)) {
+            if (domain.contains(device)) result.add(domain);
+        }
+        return result;
+    }
+
+    /**
+     * VLANs on which the two devices share a broadcast domain.
+     */
+    public BitSet sharedVlans(Device a, Device b) {
+        BitSet result = new BitSet();
+        if (!linkVlans.containsKey(a) || !linkVlans.containsKey(b)) return result;
+        BitSet candidates = membership(a);
+        candidates.and(membership(b));
+        for (int v = candidates.nextSetBit(0); v >= 0; v = candidates.nextSetBit(v + 1)) {
+            for (Set<Device> domain : domainsFor(v)) {
+                if (domain.contains(a) && domain.contains(b)) {
+                    result.set(v);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // VLANs carried by any link of the device
+    private BitSet membership(Device device) {
+        BitSet all = new BitSet();
+        for (BitSet carried : linkVlans.get(device)) {
+            if (carried == null) return Port.allVlans();
+            all.or(carried);
+        }
+        return all;
+    }
+
+    private List<Set<Device>> computeDomains(int vlan) {
+        int[] parent = new int[nodes.size()];
+        boolean[] member = new boolean[nodes.size()];
+        Arrays.fill(parent, -1);
+        List<int[]> bucket = linksByVlan.get(vlan);
+        if (bucket != null) bucket.forEach(link -> union(parent, member, link));
+        untaggedLinks.forEach(link -> union(parent, member, link));
+
+        Map<Integer, Set<Device>> byRoot = new HashMap<>();
+        for (int i = 0; i < member.length; i++) {
+            if (member[i]) {
+                byRoot.computeIfAbsent(find(parent, i), r -> new LinkedHashSet<>()).add(nodes.get(i));
+            }
+        }
+        List<Set<Device>> domains = new ArrayList<>();
+        for (Set<Device> domain : byRoot.values()) {
+            domains.add(Collections.unmodifiableSet(domain));
+        }
+        domains.sort((d1, d2) -> Integer.compare(d2.size(), d1.size()));
+        return Collections.unmodifiableList(domains);
+    }
+
+    private static void union(int[] parent, boolean[] member, int[] link) {
+        member[link[0]] = true;
+        member[link[1]] = true;
+        int ra = find(parent, link[0]);
+        int rb = find(parent, link[1]);
+        if (ra != rb) parent[ra] = rb;
+    }
+
+    private static int find(int[] parent, int i) {
+        int root = i;
+        while (parent[root] >= 0) root = parent[root];
+        while (parent[i] >= 0) {
+            int next = parent[i];
+            parent[i] = root;
+            i = next;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,31 @@
+package controllers;
+
+import models.Device;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of results from {@link NetworkController#findConnectionCandidates}.
+ */
+public class CandidatePage {
+    private final List<Device> devices;
+    private final int offset;
+    private final boolean hasMore;
+
+    public CandidatePage(List<Device> devices, int offset, boolean hasMore) {
+        this.devices = Collections.unmodifiableList(devices);
+        this.offset = offset;
+        this.hasMore = hasMore;
+    }
+
+    public List<Device> getDevices() { return devices; }
+    public int getOffset() { return offset; }
+    public boolean hasMore() { return hasMore; }
+
+    /**
+     * Offset to request the page after this one.
+     */
+    public int getNextOffset() {
+        return offset + devices.size();
+    }
+}
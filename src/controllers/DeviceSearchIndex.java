@@ -0,0 +1,242 @@
+package controllers;
+
+import models.Device;
+import models.IpAddress;
+import java.util.*;
+
+/**
+ * Search index over device names and IP addresses, kept up to date by
+ * {@link NetworkController} as devices are added, renamed and removed.
+ *
+ * Names are matched by prefix through a sorted map and by substring
+ * through trigram posting lists: the rarest trigram of the query picks the
+ * candidates, which are then checked against the current name. Postings
+ * are only appended to; entries left behind by removed or renamed devices
+ * fail that check and are dropped when enough of them pile up. Addresses
+ * are kept in numeric order so that a CIDR block or a partly typed
+ * address is a handful of range scans.
+ *
+ * Not thread-safe; the controller calls it under its index lock.
+ */
+class DeviceSearchIndex {
+    private static final int MIN_COMPACT_POSTINGS = 1 << 16;
+    // Key of 0.0.0.0 with id 0, and device ids start at 1
+    private static final long NO_ADDRESS = Long.MIN_VALUE;
+
+    private final NavigableMap<String, Device> byName = new TreeMap<>();
+    // Address in the high half (biased so it sorts unsigned), device id in the low half
+    private final NavigableMap<Long, Device> byAddress = new TreeMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private Device[] devices = new Device[1024];
+    private String[] keys = new String[1024];
+    private long[] addressKeys = new long[1024];
+    private long livePostings;
+    private long stalePostings;
+
+    void add(Device device, String key) {
+        int id = device.getId();
+        ensureCapacity(id);
+        devices[id] = device;
+        keys[id] = key;
+        byName.put(key, device);
+        addressKeys[id] = NO_ADDRESS;
+        String ip = device.getIpAddress();
+        if (ip != null && IpAddress.isValid(ip)) {
+            long addressKey = addressKey(IpAddress.parse(ip) & 0xffffffffL, id);
+            addressKeys[id] = addressKey;
+            byAddress.put(addressKey, device);
+        }
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            trigrams.computeIfAbsent(trigram(key, i), k -> new Postings()).add(id);
+        }
+        livePostings += Math.max(0, key.length() - 2);
+    }
+
+    /**
+     * The device with exactly this name key, or null.
+     */
+    Device get(String key) {
+        return byName.get(key);
+    }
+
+    /**
+     * The name key the device is indexed under, or null if it is not.
+     */
+    String keyOf(Device device) {
+        int id = device.getId();
+        return id < devices.length && devices[id] == device ? keys[id] : null;
+    }
+
+    void remove(Device device) {
+        int id = device.getId();
+        if (id >= devices.length || devices[id] != device) return;
+        String key = keys[id];
+        byName.remove(key, device);
+        if (addressKeys[id] != NO_ADDRESS) byAddress.remove(addressKeys[id], device);
+        devices[id] = null;
+        keys[id] = null;
+        long postings = Math.max(0, key.length() - 2);
+        livePostings -= postings;
+        stalePostings += postings;
+        if (stalePostings > Math.max(livePostings, MIN_COMPACT_POSTINGS)) compact();
+    }
+
+    void clear() {
+        byName.clear();
+        byAddress.clear();
+        trigrams.clear();
+        // Start small again, the next network may use far lower ids
+        devices = new Device[1024];
+        keys = new String[1024];
+        addressKeys = new long[1024];
+        livePostings = 0;
+        stalePostings = 0;
+    }
+
+    /**
+     * Up to {@code limit} devices matching the query: for address-like
+     * queries the devices in that range first, then name prefix matches in
+     * name order, then other names containing the query.
+     *
+     * @param key the query, lower case and trimmed
+     */
+    List<Device> search(String key, int limit) {
+        List<Device> result = new ArrayList<>(Math.min(limit, 64));
+        if (key.isEmpty() || limit <= 0) return result;
+        Set<Device> seen = new HashSet<>();
+        long[] ranges = addressRanges(key);
+        for (int i = 0; i < ranges.length && result.size() < limit; i += 2) {
+            Map<Long, Device> block = byAddress.subMap(addressKey(ranges[i], 0), true,
+                addressKey(ranges[i + 1], 0xffffffffL), true);
+            for (Device device : block.values()) {
+                if (result.size() >= limit) break;
+                if (seen.add(device)) result.add(device);
+            }
+        }
+        for (Device device : byName.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            if (result.size() >= limit) break;
+            if (seen.add(device)) result.add(device);
+        }
+        if (key.length() >= 3 && result.size() < limit) searchSubstring(key, limit, seen, result);
+        return result;
+    }
+
+    private void searchSubstring(String key, int limit, Set<Device> seen, List<Device> result) {
+        Postings rarest = null;
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            Postings postings = trigrams.get(trigram(key, i));
+            if (postings == null) return;
+            if (rarest == null || postings.size < rarest.size) rarest = postings;
+        }
+        for (int i = 0; i < rarest.size && result.size() < limit; i++) {
+            int id = rarest.ids[i];
+            Device device = devices[id];
+            if (device != null && keys[id].contains(key) && seen.add(device)) result.add(device);
+        }
+    }
+
+    /**
+     * Address ranges, as inclusive [low, high] pairs of unsigned values,
+     * selected by a CIDR block ("10.1.0.0/16") or by the start of a dotted
+     * address ("10.1.2" covers 10.1.2.x, 10.1.20-29.x and 10.1.200-255.x).
+     * Empty if the query is not address-like.
+     */
+    static long[] addressRanges(String query) {
+        int slash = query.indexOf('/');
+        if (slash >= 0) {
+            try {
+                int length = Integer.parseInt(query.substring(slash + 1));
+                int mask = IpAddress.mask(length);
+                long low = (IpAddress.parse(query.substring(0, slash)) & mask) & 0xffffffffL;
+                return new long[] { low, low | (~mask & 0xffffffffL) };
+            } catch (IllegalArgumentException e) {
+                return new long[0];
+            }
+        }
+        int[] octets = new int[4];
+        int count = 0;
+        int digits = 0;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || count == 3) return new long[0];
+                count++;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                octets[count] = octets[count] * 10 + (c - '0');
+                if (octets[count] > 255) return new long[0];
+                digits++;
+            } else {
+                return new long[0];
+            }
+        }
+        // A bare number is more likely part of a name
+        if (count == 0) return new long[0];
+        long prefix = 0;
+        for (int i = 0; i < count; i++) prefix = (prefix << 8) | octets[i];
+        int hostBits = 8 * (3 - count);
+        if (digits == 0) {
+            // Ends with a dot, every complete octet is fixed
+            hostBits += 8;
+            return new long[] { prefix << hostBits, ((prefix + 1) << hostBits) - 1 };
+        }
+        // The last octet may still be typed: v, v0-v9, v00-v99 within 0-255
+        long[] ranges = new long[6];
+        int n = 0;
+        int low = octets[count];
+        int high = octets[count];
+        for (int extra = digits; extra <= 3 && low <= 255; extra++) {
+            if (low > 0 || extra == digits) {
+                long first = (prefix << 8 | low) << hostBits;
+                long last = ((prefix << 8 | Math.min(high, 255)) + 1 << hostBits) - 1;
+                ranges[n++] = first;
+                ranges[n++] = last;
+            }
+            low *= 10;
+            high = high * 10 + 9;
+        }
+        return Arrays.copyOf(ranges, n);
+    }
+
+    // Rebuilds the postings from the current names
+    private void compact() {
+        trigrams.clear();
+        livePostings = 0;
+        stalePostings = 0;
+        for (int id = 0; id < devices.length; id++) {
+            String key = keys[id];
+            if (key == null) continue;
+            for (int i = 0; i + 3 <= key.length(); i++) {
+                trigrams.computeIfAbsent(trigram(key, i), k -> new Postings()).add(id);
+            }
+            livePostings += Math.max(0, key.length() - 2);
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < devices.length) return;
+        int capacity = Math.max(id + 1, devices.length * 2);
+        devices = Arrays.copyOf(devices, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        addressKeys = Arrays.copyOf(addressKeys, capacity);
+    }
+
+    private static long addressKey(long address, long low) {
+        return ((address - 0x80000000L) << 32) | low;
+    }
+
+    private static long trigram(String key, int i) {
+        return ((long) key.charAt(i) << 32) | ((long) key.charAt(i + 1) << 16) | key.charAt(i + 2);
+    }
+
+    // Append-only list of device ids
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package controllers;
+
+import models.Connection;
+import models.Device;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One change made to a {@link NetworkController}'s network, as delivered to
+ * a {@link NetworkListener}.
+ */
+public final class NetworkChange {
+    public enum Kind {
+        DEVICE_ADDED,
+        DEVICE_REMOVED,
+        // Name, address, ports or interfaces of a device in the network changed
+        DEVICE_UPDATED,
+        CONNECTED,
+        DISCONNECTED,
+        // Bandwidth, delay, loss, MTU or queue of a connection changed
+        CONNECTION_UPDATED,
+        // The whole network was replaced, for example by loading a file
+        RESET
+    }
+
+    private final Kind kind;
+    private final Device device;
+    private final Connection connection;
+    private final String previousName;
+    private final String previousIp;
+    private final List<Device> devices;
+    private final List<Connection> connections;
+
+    private NetworkChange(Kind kind, Device device, Connection connection, String previousName, String previousIp,
+            List<Device> devices, List<Connection> connections) {
+        this.kind = kind;
+        this.device = device;
+        this.connection = connection;
+        this.previousName = previousName;
+        this.previousIp = previousIp;
+        this.devices = devices;
+        this.connections = connections;
+    }
+
+    public static NetworkChange deviceAdded(Device device) {
+        return new NetworkChange(Kind.DEVICE_ADDED, device, null, null, null, null, null);
+    }
+
+    public static NetworkChange deviceRemoved(Device device) {
+        return new NetworkChange(Kind.DEVICE_REMOVED, device, null, null, null, null, null);
+    }
+
+    public static NetworkChange deviceUpdated(Device device, String previousName, String previousIp) {
+        return new NetworkChange(Kind.DEVICE_UPDATED, device, null, previousName, previousIp, null, null);
+    }
+
+    public static NetworkChange connected(Connection connection) {
+        return new NetworkChange(Kind.CONNECTED, null, connection, null, null, null, null);
+    }
+
+    public static NetworkChange disconnected(Connection connection) {
+        return new NetworkChange(Kind.DISCONNECTED, null, connection, null, null, null, null);
+    }
+
+    public static NetworkChange connectionUpdated(Connection connection) {
+        return new NetworkChange(Kind.CONNECTION_UPDATED, null, connection, null, null, null, null);
+    }
+
+    public static NetworkChange reset(List<Device> devices, List<Connection> connections) {
+        return new NetworkChange(Kind.RESET, null, null, null, null,
+            Collections.unmodifiableList(devices), Collections.unmodifiableList(connections));
+    }
+
+    public Kind getKind() { return kind; }
+
+    /**
+     * The device added, removed or updated; null for connection changes and resets.
+     */
+    public Device getDevice() { return device; }
+
+    /**
+     * The connection made, broken or updated; null for device changes and resets.
+     */
+    public Connection getConnection() { return connection; }
+
+    /** Name and IP before an update. */
+    public String getPreviousName() { return previousName; }
+    public String getPreviousIp() { return previousIp; }
+
+    /** The complete new network of a reset. */
+    public List<Device> getDevices() { return devices; }
+    public List<Connection> getConnections() { return connections; }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CONNECTED:
+            case DISCONNECTED:
+            case CONNECTION_UPDATED:
+                return kind + " " + connection.getDevice1().getName() + " - " + connection.getDevice2().getName();
+            case RESET:
+                return kind + " " + devices.size() + " devices, " + connections.size() + " connections";
+            default:
+                return kind + " " + device.getName();
+        }
+    }
+}
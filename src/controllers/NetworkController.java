@@ -1,19 +1,44 @@
 package controllers;
 
 import models.*;
+import simulation.Topology;
+import java.awt.Point;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class NetworkController {
     private final List<Device> devices;
     private final List<Connection> connections;
+    private final DeviceStore deviceStore;
+
+    // Lookup indexes and the device store are guarded by indexLock,
+    // which is always the last lock taken
+    private final Object indexLock = new Object();
+    // Adjacency comes from the devices themselves and connectionsByPair;
+    // lookups by name go through the search index's name map
+    private final Map<Long, Connection> connectionsByPair = new HashMap<>();
+    private final DeviceSearchIndex searchIndex = new DeviceSearchIndex();
+    // Devices with a free port, by DeviceStore type and lower case name
+    private final List<NavigableMap<String, Device>> freeByType = new ArrayList<>();
+    // Notified under indexLock, see fire()
+    private final List<NetworkListener> listeners = new CopyOnWriteArrayList<>();
+    // Built on the first query after a change and dropped by fire()
+    private volatile BroadcastDomains broadcastDomains;
+    private static final byte[] CANDIDATE_ORDER = {
+        DeviceStore.TYPE_SWITCH, DeviceStore.TYPE_ROUTER, DeviceStore.TYPE_COMPUTER, DeviceStore.TYPE_OTHER
+    };
     private static final int VERSION = 1;
     private static final int MAX_RECONNECTION_ATTEMPTS = 3;
 
     public NetworkController() {
         this.devices = Collections.synchronizedList(new ArrayList<>());
         this.connections = Collections.synchronizedList(new ArrayList<>());
+        this.deviceStore = new DeviceStore(Boolean.getBoolean("netsim.offHeapStore"));
+        for (int type = 0; type <= DeviceStore.TYPE_OTHER; type++) {
+            freeByType.add(new TreeMap<>());
+        }
     }
 
     // Device Management
@@ -21,24 +46,30 @@ public class NetworkController {
         Objects.requireNonNull(device, "Device cannot be null");
         
         synchronized(devices) {
-            if (devices.stream().anyMatch(d -> d.getName().equalsIgnoreCase(device.getName()))) {
-                throw new IllegalArgumentException(
-                    String.format("Device name '%s' already exists", device.getName()));
+            synchronized(indexLock) {
+                if (searchIndex.get(nameKey(device.getName())) != null) {
+                    throw new IllegalArgumentException(
+                        String.format("Device name '%s' already exists", device.getName()));
+                }
+                devices.add(device);
+                indexDevice(device);
+                fire(NetworkChange.deviceAdded(device));
             }
-            devices.add(device);
         }
     }
 
-    public void removeDevice(Device device) {
+    // Holds the same lock as connectDevices, so a device cannot gain a link while it is removed
+    public synchronized void removeDevice(Device device) {
         Objects.requireNonNull(device, "Device cannot be null");
         
         synchronized(devices) {
             if (devices.remove(device)) {
-                synchronized(connections) {
-                    // Disconnect all connections for this device
-                    new ArrayList<>(connections).stream()
-                        .filter(conn -> conn.involvesDevice(device))
-                        .forEach(conn -> disconnectDevices(conn.getDevice1(), conn.getDevice2()));
+                // Disconnect all connections for this device; its links only
+                // change under this lock, so the device's own list is current
+                connectedTo(device).forEach(other -> disconnectDevices(device, other));
+                synchronized(indexLock) {
+                    unindexDevice(device);
+                    fire(NetworkChange.deviceRemoved(device));
                 }
             }
         }
@@ -56,12 +87,24 @@ public class NetworkController {
         if (isConnected(device1, device2)) {
             throw new NetworkException("These devices are already connected");
         }
+
+        synchronized(indexLock) {
+            if (searchIndex.get(nameKey(device1.getName())) != device1
+                    || searchIndex.get(nameKey(device2.getName())) != device2) {
+                throw new NetworkException("Device is not part of this network");
+            }
+        }
         
         // Let the devices themselves validate if they can connect
         try {
             device1.connectTo(device2);
             device2.connectTo(device1);
-            connections.add(new Connection(device1, device2));
+            Connection connection = new Connection(device1, device2);
+            connections.add(connection);
+            synchronized(indexLock) {
+                indexConnection(connection);
+                fire(NetworkChange.connected(connection));
+            }
         } catch (IllegalStateException e) {
             // Rollback if either connection fails
             device1.disconnectFrom(device2);
@@ -70,7 +113,8 @@ public class NetworkController {
         }
     }
 
-    public void disconnectDevices(Device device1, Device device2) {
+    // Changes the same device state as connectDevices, so holds the same lock
+    public synchronized void disconnectDevices(Device device1, Device device2) {
         Objects.requireNonNull(device1, "First device cannot be null");
         Objects.requireNonNull(device2, "Second device cannot be null");
         
@@ -80,10 +124,38 @@ public class NetworkController {
                 device1.disconnectFrom(device2);
                 device2.disconnectFrom(device1);
                 connections.remove(connection);
+                synchronized(indexLock) {
+                    unindexConnection(connection);
+                    fire(NetworkChange.disconnected(connection));
+                }
             }
         }
     }
 
+    /**
+     * Gives the link between two devices the bandwidth, delay, loss rate, MTU
+     * and queue of {@code settings}, a connection used only as a template.
+     * Simulations started afterwards use the new values.
+     */
+    public synchronized void configureLink(Device device1, Device device2, Connection settings)
+            throws NetworkException {
+        synchronized(connections) {
+            Connection connection = requireConnection(device1, device2);
+            connection.copySettingsFrom(settings);
+            synchronized(indexLock) {
+                fire(NetworkChange.connectionUpdated(connection));
+            }
+        }
+    }
+
+    private Connection requireConnection(Device device1, Device device2) throws NetworkException {
+        Connection connection = findConnection(device1, device2);
+        if (connection == null) {
+            throw new NetworkException(device1.getName() + " and " + device2.getName() + " are not connected");
+        }
+        return connection;
+    }
+
     private void validateConnection(Device device1, Device device2) throws NetworkException {
         if (device1.equals(device2)) {
             throw new NetworkException("Cannot connect a device to itself");
@@ -112,7 +184,7 @@ public class NetworkController {
     }
 
     @SuppressWarnings("unchecked")
-    public void loadFromFile(String path) throws IOException, ClassNotFoundException, NetworkException {
+    public synchronized void loadFromFile(String path) throws IOException, ClassNotFoundException, NetworkException {
         synchronized(devices) {
             synchronized(connections) {
                 try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path))) {
@@ -132,63 +204,357 @@ public class NetworkController {
                     
                     devices.addAll(loadedDevices);
                     connections.addAll(loadedConnections);
+                    rebuildIndexes();
                 }
             }
         }
     }
 
     private void validateLoadedData(List<Device> devices, List<Connection> connections) throws NetworkException {
-        // Check for duplicate device names
-        Set<String> names = new HashSet<>();
-        for (Device device : devices) {
-            if (!names.add(device.getName())) {
-                throw new NetworkException("Duplicate device name found: " + device.getName());
-            }
-        }
-        
-        // Validate connections
-        for (Connection conn : connections) {
-            if (!devices.contains(conn.getDevice1()) || !devices.contains(conn.getDevice2())) {
-                throw new NetworkException("Connection references missing device");
-            }
+        ValidationReport report = NetworkValidator.validate(devices, connections);
+        if (report.hasErrors()) {
+            throw new NetworkException("Invalid network data: " + report.summary(10));
         }
     }
 
+    /**
+     * Validates the network currently held by this controller.
+     */
+    public ValidationReport validateNetwork() {
+        return NetworkValidator.validate(getDevices(), getConnections());
+    }
+
     // Helper Methods
     public boolean isConnected(Device d1, Device d2) {
-        synchronized(connections) {
-            return connections.stream()
-                .anyMatch(conn -> conn.involvesDevice(d1) && conn.involvesDevice(d2));
-        }
+        return findConnection(d1, d2) != null;
     }
 
     private Connection findConnection(Device d1, Device d2) {
-        synchronized(connections) {
-            return connections.stream()
-                .filter(conn -> conn.involvesDevice(d1) && conn.involvesDevice(d2))
-                .findFirst()
-                .orElse(null);
+        synchronized(indexLock) {
+            return findConnectionLocked(d1, d2);
+        }
+    }
+
+    private Connection findConnectionLocked(Device d1, Device d2) {
+        Connection connection = connectionsByPair.get(pairKey(d1, d2));
+        // Ids are only unique within one network, and Device.equals compares
+        // ids: check that the ends are the very same objects
+        if (connection == null) return null;
+        Device end1 = connection.getDevice1();
+        Device end2 = connection.getDevice2();
+        return (end1 == d1 && end2 == d2) || (end1 == d2 && end2 == d1) ? connection : null;
+    }
+
+    private static List<Device> connectedTo(Device device) {
+        if (device instanceof Switch) return ((Switch) device).getConnectedDevices();
+        if (device instanceof Router) return ((Router) device).getConnectedDevices();
+        if (device instanceof Computer && ((Computer) device).getConnectedDevice() != null) {
+            return Collections.singletonList(((Computer) device).getConnectedDevice());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Devices that the source could be connected to: they have a free port,
+     * are not the source and are not already connected to it. Results are
+     * ordered switches, routers, then computers, by name within each type.
+     *
+     * @param namePrefix case-insensitive name prefix, or null/empty for all
+     * @param offset number of matching devices to skip
+     * @param limit maximum number of devices to return
+     */
+    public CandidatePage findConnectionCandidates(Device source, String namePrefix, int offset, int limit) {
+        Objects.requireNonNull(source, "Device cannot be null");
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("Offset and limit cannot be negative");
+        List<Device> page = new ArrayList<>(Math.min(limit, 256));
+        synchronized(indexLock) {
+            if (source.getConnectionCount() >= source.getMaxConnections()) {
+                return new CandidatePage(page, offset, false);
+            }
+            String prefix = namePrefix == null ? "" : nameKey(namePrefix);
+            int skipped = 0;
+            for (byte type : CANDIDATE_ORDER) {
+                NavigableMap<String, Device> free = freeByType.get(type);
+                Map<String, Device> matching = prefix.isEmpty() ? free
+                    : free.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+                for (Device candidate : matching.values()) {
+                    if (candidate == source || findConnectionLocked(source, candidate) != null) continue;
+                    if (!source.canConnectTo(candidate) || !candidate.canConnectTo(source)) continue;
+                    if (skipped < offset) {
+                        skipped++;
+                    } else if (page.size() < limit) {
+                        page.add(candidate);
+                    } else {
+                        return new CandidatePage(page, offset, true);
+                    }
+                }
+            }
         }
+        return new CandidatePage(page, offset, false);
+    }
+
+    /**
+     * The connection between two devices, or null if they are not connected.
+     */
+    public Connection getConnection(Device d1, Device d2) {
+        return findConnection(d1, d2);
     }
 
     public Device getDeviceByName(String name) {
-        synchronized(devices) {
-            return devices.stream()
-                .filter(d -> d.getName().equalsIgnoreCase(name))
-                .findFirst()
-                .orElse(null);
+        synchronized(indexLock) {
+            return searchIndex.get(nameKey(name));
         }
     }
 
-    public synchronized boolean isDeviceNameUnique(String name, Device excludeDevice) {
-        return devices.stream()
-            .filter(d -> !d.equals(excludeDevice))
-            .noneMatch(d -> d.getName().equalsIgnoreCase(name));
+    /**
+     * Devices whose name starts with or contains the query, ignoring case,
+     * and for queries such as "10.1." or "10.0.0.0/8" devices whose IP
+     * address falls in that range. Address matches come first, then name
+     * prefix matches in name order, then other substring matches.
+     * Substring matching starts at three characters.
+     */
+    public List<Device> searchDevices(String query, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Limit cannot be negative");
+        String key = query == null ? "" : nameKey(query.trim());
+        synchronized(indexLock) {
+            return searchIndex.search(key, limit);
+        }
+    }
+
+    public boolean isDeviceNameUnique(String name, Device excludeDevice) {
+        synchronized(indexLock) {
+            Device existing = searchIndex.get(nameKey(name));
+            return existing == null || existing.equals(excludeDevice);
+        }
     }
 
+    /**
+     * Renames and readdresses a device.
+     * @throws IllegalArgumentException if another device already has the name
+     */
     public synchronized void updateDevice(Device device, String newName, String newIp) {
-        device.setName(newName);
-        device.setIpAddress(newIp);
+        synchronized(indexLock) {
+            // The name is the key of the name indexes, re-key around the change;
+            // links are keyed by device and stay as they are
+            boolean indexed = deviceStore.contains(device.getId());
+            Device existing = searchIndex.get(nameKey(newName));
+            if (indexed && existing != null && existing != device) {
+                throw new IllegalArgumentException(
+                    String.format("Device name '%s' already exists", newName));
+            }
+            String oldName = device.getName();
+            String oldIp = device.getIpAddress();
+            if (indexed) unindexName(device);
+            device.setName(newName);
+            device.setIpAddress(newIp);
+            if (indexed) {
+                indexName(device);
+                deviceStore.put(device);
+                fire(NetworkChange.deviceUpdated(device, oldName, oldIp));
+            }
+        }
+    }
+
+    public synchronized void setPortCount(Switch device, int portCount) {
+        device.setPortCount(portCount);
+        refreshIndexes(device);
+        fireUpdated(device);
+    }
+
+    public synchronized void configureInterface(Router router, int index, String cidr) {
+        router.configureInterface(index, cidr);
+        fireUpdated(router);
+    }
+
+    /**
+     * Sets a switch port's speed and VLANs: a trunk carrying {@code trunkVlans},
+     * or an access port on {@code accessVlan} if that is null.
+     */
+    public synchronized void configurePort(Switch device, int portIndex, int speedMbps, int accessVlan, BitSet trunkVlans) {
+        device.getPort(portIndex).configure(speedMbps, accessVlan, trunkVlans);
+        fireUpdated(device);
+    }
+
+    /**
+     * Imports static routes into a router from a route file.
+     * @return the number of routes imported
+     */
+    public synchronized int importStaticRoutes(Router router, File file) throws IOException {
+        int count;
+        try (Reader reader = new BufferedReader(new FileReader(file))) {
+            count = router.importStaticRoutes(reader);
+        }
+        fireUpdated(router);
+        return count;
+    }
+
+    /**
+     * Per-VLAN broadcast domains for the current network, rebuilt only
+     * after the network has changed. Every change fires while holding this
+     * controller's lock or the device or connection list's, so a build under
+     * all three cannot miss one.
+     */
+    public BroadcastDomains getBroadcastDomains() {
+        BroadcastDomains domains = broadcastDomains;
+        if (domains != null) return domains;
+        synchronized(this) {
+            synchronized(devices) {
+                synchronized(connections) {
+                    domains = broadcastDomains;
+                    if (domains == null) {
+                        domains = new BroadcastDomains(devices, connections);
+                        broadcastDomains = domains;
+                    }
+                    return domains;
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable snapshot of the current network for simulation.
+     */
+    public Topology getTopology() {
+        synchronized(devices) {
+            synchronized(connections) {
+                return Topology.of(devices, connections);
+            }
+        }
+    }
+
+    public void moveDevice(Device device, int x, int y) {
+        synchronized(indexLock) {
+            deviceStore.setPosition(device, x, y);
+        }
+    }
+
+    /**
+     * Columnar view of device attributes and canvas positions, indexed by device id.
+     */
+    public DeviceStore getDeviceStore() {
+        return deviceStore;
+    }
+
+    /**
+     * Registers a listener for changes to the network. Its first change is
+     * a RESET describing the current network, delivered atomically with the
+     * registration so no later change can be missed or seen twice.
+     */
+    public void addNetworkListener(NetworkListener listener) {
+        Objects.requireNonNull(listener, "Listener cannot be null");
+        synchronized(devices) {
+            synchronized(connections) {
+                synchronized(indexLock) {
+                    listener.networkChanged(NetworkChange.reset(new ArrayList<>(devices), new ArrayList<>(connections)));
+                    listeners.add(listener);
+                }
+            }
+        }
+    }
+
+    public void removeNetworkListener(NetworkListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Callers hold indexLock, which every change passes through, so listeners
+    // see changes in the order they were made
+    private void fire(NetworkChange change) {
+        broadcastDomains = null;
+        for (NetworkListener listener : listeners) {
+            try {
+                listener.networkChanged(change);
+            } catch (RuntimeException e) {
+                System.err.println("Network listener failed on " + change + ": " + e);
+            }
+        }
+    }
+
+    private void fireUpdated(Device device) {
+        synchronized(indexLock) {
+            if (deviceStore.contains(device.getId())) {
+                fire(NetworkChange.deviceUpdated(device, device.getName(), device.getIpAddress()));
+            }
+        }
+    }
+
+    private void refreshIndexes(Device... changed) {
+        synchronized(indexLock) {
+            for (Device device : changed) {
+                if (deviceStore.contains(device.getId())) {
+                    deviceStore.put(device);
+                    updateFreePorts(device);
+                }
+            }
+        }
+    }
+
+    // Index maintenance, callers hold indexLock
+
+    private void indexDevice(Device device) {
+        deviceStore.put(device);
+        indexName(device);
+    }
+
+    private void unindexDevice(Device device) {
+        unindexName(device);
+        deviceStore.remove(device);
+    }
+
+    // Entries keyed by the device's name
+    private void indexName(Device device) {
+        searchIndex.add(device, nameKey(device.getName()));
+        updateFreePorts(device);
+    }
+
+    private void unindexName(Device device) {
+        freeByType.get(DeviceStore.typeOf(device)).remove(nameKey(device.getName()), device);
+        searchIndex.remove(device);
+    }
+
+    private void indexConnection(Connection connection) {
+        Device d1 = connection.getDevice1();
+        Device d2 = connection.getDevice2();
+        connectionsByPair.put(pairKey(d1, d2), connection);
+        for (Device device : new Device[] {d1, d2}) {
+            if (deviceStore.contains(device.getId())) {
+                deviceStore.put(device);
+                updateFreePorts(device);
+            }
+        }
+    }
+
+    private void unindexConnection(Connection connection) {
+        Device d1 = connection.getDevice1();
+        Device d2 = connection.getDevice2();
+        connectionsByPair.remove(pairKey(d1, d2), connection);
+        for (Device device : new Device[] {d1, d2}) {
+            if (deviceStore.contains(device.getId())) {
+                deviceStore.put(device);
+                updateFreePorts(device);
+            }
+        }
+    }
+
+    private void updateFreePorts(Device device) {
+        NavigableMap<String, Device> free = freeByType.get(DeviceStore.typeOf(device));
+        // Shares the search index's key string rather than holding a copy
+        String key = searchIndex.keyOf(device);
+        if (key == null) return;
+        if (device.getConnectionCount() < device.getMaxConnections()) {
+            free.put(key, device);
+        } else {
+            free.remove(key, device);
+        }
+    }
+
+    private static String nameKey(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private static long pairKey(Device d1, Device d2) {
+        int a = Math.min(d1.getId(), d2.getId());
+        int b = Math.max(d1.getId(), d2.getId());
+        return ((long) a << 32) | (b & 0xffffffffL);
     }
     
     // Getters with defensive copies
@@ -216,26 +582,111 @@ public class NetworkController {
         return (Serializable) data;
     }
 
-    public void loadNetworkData(Object data) {
+    public void loadNetworkData(Object data) throws NetworkException {
+        loadNetworkData(data, null);
+    }
+
+    private void loadNetworkData(Object data, Map<Device, Point> positions) throws NetworkException {
         @SuppressWarnings("unchecked")
         Map<String, Object> networkData = (Map<String, Object>) data;
+        @SuppressWarnings("unchecked")
+        List<Device> loadedDevices = (List<Device>) networkData.get("devices");
+        @SuppressWarnings("unchecked")
+        List<Connection> loadedConnections = (List<Connection>) networkData.get("connections");
+        if (loadedDevices == null) loadedDevices = Collections.emptyList();
+        if (loadedConnections == null) loadedConnections = Collections.emptyList();
         
-        // Clear current network
+        // Reject broken files before touching the current network
+        validateLoadedData(loadedDevices, loadedConnections);
+        
+        // One swap under every lock, so nobody sees new devices with old links or indexes
+        synchronized(this) {
+            synchronized(devices) {
+                synchronized(connections) {
+                    devices.clear();
+                    devices.addAll(loadedDevices);
+                    connections.clear();
+                    connections.addAll(loadedConnections);
+                    rebuildIndexes();
+                    if (positions != null) {
+                        synchronized(indexLock) {
+                            positions.forEach((device, p) -> deviceStore.setPosition(device, p.x, p.y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Project contents as saved by the view: the network plus canvas positions.
+     * Positions are written as a device-to-point map to stay readable by older versions.
+     */
+    public Serializable getProjectData() {
+        HashMap<Device, Point> positions = new HashMap<>();
+        HashMap<String, Object> project = new HashMap<>();
         synchronized(devices) {
-            devices.clear();
-            @SuppressWarnings("unchecked")
-            List<Device> loadedDevices = (List<Device>) networkData.get("devices");
-            if (loadedDevices != null) {
-                devices.addAll(loadedDevices);
+            synchronized(indexLock) {
+                for (Device device : devices) {
+                    int id = device.getId();
+                    if (deviceStore.hasPosition(id)) {
+                        positions.put(device, new Point(deviceStore.getX(id), deviceStore.getY(id)));
+                    }
+                }
             }
+            project.put("network", getNetworkData());
         }
-        
-        synchronized(connections) {
-            connections.clear();
-            @SuppressWarnings("unchecked")
-            List<Connection> loadedConnections = (List<Connection>) networkData.get("connections");
-            if (loadedConnections != null) {
-                connections.addAll(loadedConnections);
+        project.put("positions", positions);
+        return project;
+    }
+
+    /**
+     * Deep copy of the project for saving on another thread. Device objects
+     * are only changed under this controller's locks, so unlike
+     * {@link #getProjectData()} the copy stays consistent while editing goes on.
+     */
+    public synchronized ProjectSnapshot snapshotProject() {
+        synchronized(devices) {
+            synchronized(connections) {
+                synchronized(indexLock) {
+                    HashMap<Device, Point> positions = new HashMap<>();
+                    for (Device device : devices) {
+                        int id = device.getId();
+                        if (deviceStore.hasPosition(id)) {
+                            positions.put(device, new Point(deviceStore.getX(id), deviceStore.getY(id)));
+                        }
+                    }
+                    return new ProjectSnapshot(ProjectSnapshot.encode(devices, positions, connections),
+                        devices.size(), connections.size());
+                }
+            }
+        }
+    }
+
+    public void loadProjectData(Object data) throws NetworkException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> project = (Map<String, Object>) data;
+        @SuppressWarnings("unchecked")
+        Map<Device, Point> positions = (Map<Device, Point>) project.get("positions");
+        loadNetworkData(project.get("network"), positions);
+    }
+
+    private void rebuildIndexes() {
+        synchronized(devices) {
+            synchronized(connections) {
+                synchronized(indexLock) {
+                    connectionsByPair.clear();
+                    searchIndex.clear();
+                    freeByType.forEach(Map::clear);
+                    deviceStore.clear();
+                    for (Device device : devices) {
+                        indexDevice(device);
+                    }
+                    for (Connection connection : connections) {
+                        indexConnection(connection);
+                    }
+                    fire(NetworkChange.reset(new ArrayList<>(devices), new ArrayList<>(connections)));
+                }
             }
         }
     }
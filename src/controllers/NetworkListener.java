@@ -0,0 +1,13 @@
+package controllers;
+
+/**
+ * Receives every change made to a {@link NetworkController}'s network.
+ *
+ * Changes are delivered one at a time, in the order they were made, while
+ * the controller is still locked, so a listener sees a consistent sequence
+ * even when several threads edit the network. Listeners must therefore be
+ * quick and must not call back into the controller.
+ */
+public interface NetworkListener {
+    void networkChanged(NetworkChange change);
+}
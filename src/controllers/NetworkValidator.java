@@ -0,0 +1,184 @@
+package controllers;
+
+import models.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Checks a set of devices and connections for structural problems.
+ * Devices are indexed by id once, then connections are checked in
+ * parallel against that index, so the cost is linear in the network size.
+ */
+public final class NetworkValidator {
+
+    private NetworkValidator() {
+    }
+
+    public static ValidationReport validate(List<Device> devices, List<Connection> connections) {
+        Queue<ValidationReport.Problem> problems = new ConcurrentLinkedQueue<>();
+        Device[] deviceArray = devices.toArray(new Device[0]);
+        Connection[] connectionArray = connections.toArray(new Connection[0]);
+
+        // Ids come from the file and may be sparse or out of range, so no array indexed by id
+        IdIndex index = new IdIndex(deviceArray.length);
+        Map<String, Device> names = new HashMap<>(deviceArray.length * 2);
+        Map<String, Device> ips = new HashMap<>(deviceArray.length * 2);
+        for (int i = 0; i < deviceArray.length; i++) {
+            Device device = deviceArray[i];
+            if (!index.put(device.getId(), i)) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.DUPLICATE_ID,
+                    "Device id " + device.getId() + " used more than once: " + device.getName()));
+            }
+            Device clash = names.putIfAbsent(device.getName().toLowerCase(Locale.ROOT), device);
+            if (clash != null) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.DUPLICATE_NAME,
+                    "Duplicate device name found: " + device.getName()));
+            }
+            if (device.getIpAddress() != null) {
+                clash = ips.putIfAbsent(device.getIpAddress(), device);
+                if (clash != null) {
+                    problems.add(new ValidationReport.Problem(ValidationReport.Kind.DUPLICATE_IP,
+                        "IP " + device.getIpAddress() + " used by both " + clash.getName()
+                            + " and " + device.getName()));
+                }
+            }
+        }
+
+        // Per-device link counts taken from the connection list
+        AtomicIntegerArray degree = new AtomicIntegerArray(deviceArray.length);
+        PairSet seenPairs = new PairSet(connectionArray.length);
+
+        IntStream.range(0, connectionArray.length).parallel().forEach(i -> {
+            Connection conn = connectionArray[i];
+            Device d1 = conn.getDevice1();
+            Device d2 = conn.getDevice2();
+            int i1 = indexOf(index, deviceArray, d1);
+            int i2 = indexOf(index, deviceArray, d2);
+            if (i1 < 0 || i2 < 0) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.DANGLING_ENDPOINT,
+                    "Connection references missing device: " + conn));
+                return;
+            }
+            if (i1 == i2) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.SELF_CONNECTION,
+                    "Device connected to itself: " + d1.getName()));
+                return;
+            }
+            long key = Math.min(i1, i2) * (long) deviceArray.length + Math.max(i1, i2);
+            if (!seenPairs.add(key)) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.DUPLICATE_CONNECTION,
+                    "Duplicate connection: " + conn));
+                return;
+            }
+            degree.incrementAndGet(i1);
+            degree.incrementAndGet(i2);
+            if (!d1.isConnectedTo(d2) || !d2.isConnectedTo(d1)) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.INCONSISTENT_LINK,
+                    "Devices do not record connection: " + conn));
+            }
+        });
+
+        IntStream.range(0, deviceArray.length).parallel().forEach(i -> {
+            Device device = deviceArray[i];
+            int linked = degree.get(i);
+            if (linked > device.getMaxConnections()) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.PORT_LIMIT,
+                    String.format("%s has %d connections but only %d port(s)",
+                        device.getName(), linked, device.getMaxConnections())));
+            }
+            if (device.getConnectionCount() != linked) {
+                problems.add(new ValidationReport.Problem(ValidationReport.Kind.INCONSISTENT_LINK,
+                    String.format("%s records %d connection(s) but %d exist",
+                        device.getName(), device.getConnectionCount(), linked)));
+            }
+        });
+
+        return new ValidationReport(problems);
+    }
+
+    private static int indexOf(IdIndex index, Device[] deviceArray, Device device) {
+        int i = index.get(device.getId());
+        // Same id but a different object means the endpoint is not in the list
+        return i >= 0 && deviceArray[i] == device ? i : -1;
+    }
+
+    /**
+     * Open addressing map from device id to position in the device array,
+     * sized up front. Filled by one thread, then only read.
+     */
+    private static final class IdIndex {
+        private final int[] ids;
+        private final int[] positions;  // position + 1, 0 marks an empty slot
+        private final int mask;
+
+        IdIndex(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+            ids = new int[capacity];
+            positions = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * Records the first position for an id.
+         * @return false if the id was already present
+         */
+        boolean put(int id, int position) {
+            int i = mix(id) & mask;
+            while (positions[i] != 0) {
+                if (ids[i] == id) return false;
+                i = (i + 1) & mask;
+            }
+            ids[i] = id;
+            positions[i] = position + 1;
+            return true;
+        }
+
+        int get(int id) {
+            for (int i = mix(id) & mask; positions[i] != 0; i = (i + 1) & mask) {
+                if (ids[i] == id) return positions[i] - 1;
+            }
+            return -1;
+        }
+
+        private static int mix(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Lock-free open addressing set of non-negative longs, sized up front.
+     */
+    private static final class PairSet {
+        private final AtomicLongArray slots;
+        private final int mask;
+
+        PairSet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+            slots = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        boolean add(long key) {
+            long stored = key + 1;  // 0 marks an empty slot
+            int i = (int) (mix(key) & mask);
+            while (true) {
+                long current = slots.get(i);
+                if (current == stored) return false;
+                if (current == 0) {
+                    if (slots.compareAndSet(i, 0, stored)) return true;
+                    continue;  // Lost the race for this slot, re-read it
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        private static long mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return key ^ (key >>> 32);
+        }
+    }
+}
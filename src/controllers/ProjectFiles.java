@@ -0,0 +1,161 @@
+package controllers;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming, cancellable reader/writer for project files.
+ * Projects are written gzip-compressed through a buffered file channel;
+ * uncompressed files from older versions are still readable.
+ */
+public final class ProjectFiles {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long PROGRESS_STEP = 1 << 20;
+
+    /**
+     * Receives byte counts as a file is written or read.
+     * The total is -1 when it is not known in advance (saving).
+     */
+    public interface Progress {
+        void update(long bytesDone, long bytesTotal);
+    }
+
+    private ProjectFiles() {
+    }
+
+    public static void write(File file, Serializable data, Progress progress, BooleanSupplier cancelled)
+            throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        // Write next to the target and move into place so a cancelled or
+        // failed save never leaves a truncated project behind
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        boolean done = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                 ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(new CountingOutputStream(
+                                Channels.newOutputStream(channel), progress, cancelled), BUFFER_SIZE),
+                        BUFFER_SIZE))) {
+                oos.writeObject(data);
+            }
+            // Only complete once closed: closing writes the gzip trailer,
+            // which can still fail or be cancelled
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    public static Object read(File file, Progress progress, BooleanSupplier cancelled)
+            throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            InputStream in = new BufferedInputStream(new CountingInputStream(
+                    Channels.newInputStream(channel), channel.size(), progress, cancelled), BUFFER_SIZE);
+            if (isGzip(in)) {
+                in = new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            }
+            try (ObjectInputStream ois = new ObjectInputStream(in)) {
+                return ois.readObject();
+            }
+        }
+    }
+
+    private static boolean isGzip(InputStream in) throws IOException {
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        return b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b2 == (GZIPInputStream.GZIP_MAGIC >>> 8);
+    }
+
+    private static void checkCancelled(BooleanSupplier cancelled) throws InterruptedIOException {
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            throw new InterruptedIOException("Operation cancelled");
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final Progress progress;
+        private final BooleanSupplier cancelled;
+        private long count;
+        private long nextReport = PROGRESS_STEP;
+
+        CountingOutputStream(OutputStream out, Progress progress, BooleanSupplier cancelled) {
+            super(out);
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            advance(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            advance(len);
+        }
+
+        private void advance(int n) throws IOException {
+            count += n;
+            if (count >= nextReport) {
+                nextReport = count + PROGRESS_STEP;
+                checkCancelled(cancelled);
+                if (progress != null) progress.update(count, -1);
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final long total;
+        private final Progress progress;
+        private final BooleanSupplier cancelled;
+        private long count;
+        private long nextReport;
+
+        CountingInputStream(InputStream in, long total, Progress progress, BooleanSupplier cancelled) {
+            super(in);
+            this.total = total;
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) advance(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) advance(n);
+            return n;
+        }
+
+        private void advance(int n) throws IOException {
+            count += n;
+            if (count >= nextReport) {
+                nextReport = count + PROGRESS_STEP;
+                checkCancelled(cancelled);
+                if (progress != null) progress.update(count, total);
+            }
+        }
+    }
+}
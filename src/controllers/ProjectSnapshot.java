@@ -0,0 +1,93 @@
+package controllers;
+
+import models.Connection;
+import models.Device;
+import models.ProjectRecords;
+import java.awt.Point;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deep copy of a project, encoded as {@link ProjectRecords} while the
+ * controller's locks are held. Encoding is much cheaper than serializing
+ * the devices, and the copy can be turned back into project data on any
+ * thread while the network keeps changing.
+ */
+public final class ProjectSnapshot {
+    private final byte[] records;
+    private final int deviceCount;
+    private final int connectionCount;
+
+    ProjectSnapshot(byte[] records, int deviceCount, int connectionCount) {
+        this.records = records;
+        this.deviceCount = deviceCount;
+        this.connectionCount = connectionCount;
+    }
+
+    public int getDeviceCount() { return deviceCount; }
+    public int getConnectionCount() { return connectionCount; }
+
+    // Per device: id, position flag and position, record;
+    // then per connection: both end ids and the record
+    static byte[] encode(Iterable<Device> devices, Map<Device, Point> positions,
+            Iterable<Connection> connections) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Device device : devices) {
+                out.writeInt(device.getId());
+                Point position = positions.get(device);
+                out.writeBoolean(position != null);
+                if (position != null) {
+                    out.writeInt(position.x);
+                    out.writeInt(position.y);
+                }
+                ProjectRecords.writeDevice(out, device);
+            }
+            for (Connection connection : connections) {
+                out.writeInt(connection.getDevice1().getId());
+                out.writeInt(connection.getDevice2().getId());
+                ProjectRecords.writeConnection(out, connection);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rebuilds new device and connection objects, in the form returned by
+     * {@link NetworkController#getProjectData()}.
+     */
+    public Serializable toProjectData() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(records));
+        Map<Integer, Device> byId = new HashMap<>();
+        ArrayList<Device> devices = new ArrayList<>(deviceCount);
+        HashMap<Device, Point> positions = new HashMap<>();
+        for (int i = 0; i < deviceCount; i++) {
+            int id = in.readInt();
+            Point position = in.readBoolean() ? new Point(in.readInt(), in.readInt()) : null;
+            Device device = ProjectRecords.readDevice(id, in);
+            byId.put(id, device);
+            devices.add(device);
+            if (position != null) positions.put(device, position);
+        }
+        ArrayList<Connection> connections = new ArrayList<>(connectionCount);
+        for (int i = 0; i < connectionCount; i++) {
+            Device device1 = byId.get(in.readInt());
+            Device device2 = byId.get(in.readInt());
+            if (device1 == null || device2 == null) throw new IOException("Connection to a missing device");
+            connections.add(ProjectRecords.readConnection(device1, device2, in));
+        }
+        HashMap<String, Object> network = new HashMap<>();
+        network.put("devices", devices);
+        network.put("connections", connections);
+        HashMap<String, Object> project = new HashMap<>();
+        project.put("network", network);
+        project.put("positions", positions);
+        return project;
+    }
+}
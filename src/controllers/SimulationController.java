@@ -0,0 +1,319 @@
+package controllers;
+
+import simulation.PacketCapture;
+import simulation.Simulator;
+import simulation.Topology;
+import simulation.TrafficSnapshot;
+import stats.StatsCollector;
+import stats.StatsSnapshot;
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.Collection;
+
+/**
+ * Owns the current simulation run, if any, and serializes access to it so
+ * that the view and other clients can drive the same simulator.
+ */
+public class SimulationController {
+    private final NetworkController networkController;
+    private Simulator simulator;
+    private volatile StatsCollector stats;
+    private volatile int watchedDevice = -1;
+    // Published after every advance while someone is drawing the traffic
+    private volatile TrafficSnapshot traffic;
+    private volatile boolean trafficEnabled;
+    // Advances the simulation in real time while the view is playing it
+    private volatile Thread clock;
+    private volatile double clockSpeed;
+    private static final long CLOCK_TICK_MILLIS = 50;
+
+    public SimulationController(NetworkController networkController) {
+        this.networkController = networkController;
+    }
+
+    /**
+     * Starts a new simulation on a snapshot of the current network,
+     * discarding any previous run.
+     */
+    public synchronized Simulator start(long seed) {
+        closeCapture();
+        closeSimulator();
+        simulator = new Simulator(networkController.getTopology(), seed);
+        limitEventMemory(simulator);
+        attachStats();
+        return simulator;
+    }
+
+    public synchronized void stop() {
+        pause();
+        closeCapture();
+        closeSimulator();
+        simulator = null;
+        stats = null;
+        traffic = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return simulator != null;
+    }
+
+    /**
+     * Adds a constant-rate flow between two devices by name.
+     * @return the source index
+     */
+    public synchronized int addTraffic(String from, String to, long intervalNanos, int sizeBytes, int priority) {
+        Simulator sim = current();
+        int fromNode = sim.getTopology().nodeByName(from);
+        int toNode = sim.getTopology().nodeByName(to);
+        if (fromNode < 0 || toNode < 0) {
+            throw new IllegalArgumentException("Unknown device: " + (fromNode < 0 ? from : to));
+        }
+        return sim.addTrafficSource(fromNode, toNode, intervalNanos, sizeBytes, priority);
+    }
+
+    /**
+     * Advances the simulation clock by the given amount.
+     */
+    public synchronized void advance(long nanos) {
+        Simulator sim = current();
+        stats.runSampled(sim, sim.getTime() + nanos);
+        if (trafficEnabled) traffic = sim.snapshotTraffic(traffic);
+    }
+
+    /**
+     * Keeps advancing the simulation in the background at the given
+     * multiple of real time until {@link #pause()}.
+     */
+    public synchronized void play(double speed) {
+        if (speed <= 0) throw new IllegalArgumentException("Speed must be positive");
+        current();
+        clockSpeed = speed;
+        if (clock != null) return;
+        clock = new Thread(this::runClock, "simulation-clock");
+        clock.setDaemon(true);
+        clock.start();
+    }
+
+    public synchronized void pause() {
+        if (clock == null) return;
+        clock.interrupt();
+        clock = null;
+    }
+
+    public synchronized boolean isPlaying() {
+        return clock != null;
+    }
+
+    /**
+     * Multiple of real time the clock runs at, or 0 while paused. Does not lock.
+     */
+    public double getPlaySpeed() {
+        return clock != null ? clockSpeed : 0;
+    }
+
+    private void runClock() {
+        Thread self = Thread.currentThread();
+        try {
+            while (!self.isInterrupted()) {
+                Thread.sleep(CLOCK_TICK_MILLIS);
+                synchronized (this) {
+                    if (clock != self || simulator == null) return;
+                    advance((long) (CLOCK_TICK_MILLIS * 1_000_000L * clockSpeed));
+                }
+            }
+        } catch (InterruptedException e) {
+            // Paused
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (clock == self) clock = null;
+            }
+            System.err.println("Simulation stopped: " + e);
+        }
+    }
+
+    /**
+     * Selects the device whose statistics are published in snapshots, or
+     * -1 for none.
+     */
+    public void watch(int deviceId) {
+        watchedDevice = deviceId;
+        StatsCollector current = stats;
+        if (current == null) return;
+        current.watch(deviceId);
+        // While playing the clock publishes on its next tick; don't wait for it
+        if (clock == null) {
+            synchronized (this) {
+                if (stats != null) stats.publish();
+            }
+        }
+    }
+
+    /**
+     * Latest statistics of the watched device, or null. Does not lock, so
+     * it is cheap to poll from the event dispatch thread.
+     */
+    public StatsSnapshot getStatsSnapshot() {
+        StatsCollector current = stats;
+        return current != null ? current.getSnapshot() : null;
+    }
+
+    /**
+     * Turns publishing of {@link TrafficSnapshot}s on or off. Taking one
+     * costs a pass over the pending events, so it is only done while a
+     * live view is open. Does not lock, so the event dispatch thread never
+     * waits for the clock.
+     */
+    public void setTrafficSnapshots(boolean enabled) {
+        trafficEnabled = enabled;
+        if (!enabled) {
+            traffic = null;
+            return;
+        }
+        // While playing the clock publishes on its next tick; otherwise take
+        // the first snapshot on a thread of its own
+        if (clock == null) {
+            Thread snapshot = new Thread(() -> {
+                synchronized (this) {
+                    if (trafficEnabled && simulator != null) traffic = simulator.snapshotTraffic(null);
+                }
+            }, "traffic-snapshot");
+            snapshot.setDaemon(true);
+            snapshot.start();
+        }
+    }
+
+    /**
+     * Latest published traffic picture, or null. Does not lock.
+     */
+    public TrafficSnapshot getTrafficSnapshot() {
+        return traffic;
+    }
+
+    public synchronized StatsCollector getStats() {
+        return stats;
+    }
+
+    private void attachStats() {
+        traffic = trafficEnabled ? simulator.snapshotTraffic(null) : null;
+        StatsCollector collector = new StatsCollector(simulator);
+        collector.watch(watchedDevice);
+        collector.publish();
+        stats = collector;
+    }
+
+    public synchronized void setLinkDown(String device1, String device2, boolean down) {
+        Simulator sim = current();
+        int link = findLink(sim.getTopology(), device1, device2);
+        if (link < 0) throw new IllegalArgumentException("No link between " + device1 + " and " + device2);
+        sim.setLinkDown(link, down);
+    }
+
+    public synchronized void checkpoint(File file) throws IOException {
+        Simulator sim = current();
+        try (OutputStream out = new FileOutputStream(file)) {
+            sim.checkpoint(out);
+        }
+    }
+
+    public synchronized void restore(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            Simulator restored = Simulator.restore(in);
+            closeCapture();
+            closeSimulator();
+            limitEventMemory(restored);
+            simulator = restored;
+            attachStats();
+        }
+    }
+
+    // Deletes the spill files of the run being replaced
+    private void closeSimulator() {
+        if (simulator != null) simulator.close();
+    }
+
+    // With -Dnetsim.eventMemoryLimit=<events>, far-future events go to disk
+    // under -Dnetsim.eventSpillDir (default the temp directory)
+    private static void limitEventMemory(Simulator sim) {
+        Integer limit = Integer.getInteger("netsim.eventMemoryLimit");
+        if (limit == null) return;
+        String dir = System.getProperty("netsim.eventSpillDir", System.getProperty("java.io.tmpdir"));
+        try {
+            sim.spillEvents(Paths.get(dir), limit);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring netsim.eventMemoryLimit: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts writing packets on the given devices' links and on the given
+     * links (pairs of device names) to a capture file. With no devices and
+     * no links, every link is captured. Replaces any running capture.
+     */
+    public synchronized PacketCapture startCapture(File file, PacketCapture.Format format,
+            Collection<String> devices, Collection<String[]> links) throws IOException {
+        Simulator sim = current();
+        Topology topology = sim.getTopology();
+        // Resolve names first so a typo does not leave an empty file behind
+        int[] nodes = new int[devices.size()];
+        int i = 0;
+        for (String name : devices) {
+            nodes[i] = topology.nodeByName(name);
+            if (nodes[i++] < 0) throw new IllegalArgumentException("Unknown device: " + name);
+        }
+        int[] linkIds = new int[links.size()];
+        i = 0;
+        for (String[] pair : links) {
+            linkIds[i] = findLink(topology, pair[0], pair[1]);
+            if (linkIds[i++] < 0) throw new IllegalArgumentException("No link between " + pair[0] + " and " + pair[1]);
+        }
+        closeCapture();
+        PacketCapture capture = new PacketCapture(file, format, topology);
+        if (nodes.length == 0 && linkIds.length == 0) capture.captureAll();
+        for (int node : nodes) capture.captureDevice(node);
+        for (int link : linkIds) capture.captureLink(link);
+        sim.setCapture(capture);
+        return capture;
+    }
+
+    /**
+     * Stops the running capture and closes its file.
+     * @return the number of packets written, or -1 if none was running
+     */
+    public synchronized long stopCapture() throws IOException {
+        PacketCapture capture = simulator != null ? simulator.getCapture() : null;
+        if (capture == null) return -1;
+        simulator.setCapture(null);
+        capture.close();
+        return capture.getCapturedCount();
+    }
+
+    private void closeCapture() {
+        try {
+            stopCapture();
+        } catch (IOException e) {
+            System.err.println("Error closing capture: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a task against the current simulator while holding its lock.
+     */
+    public synchronized <T> T withSimulator(java.util.function.Function<Simulator, T> task) {
+        return task.apply(current());
+    }
+
+    private Simulator current() {
+        if (simulator == null) throw new IllegalStateException("No simulation is running");
+        return simulator;
+    }
+
+    private static int findLink(Topology topology, String device1, String device2) {
+        int a = topology.nodeByName(device1);
+        int b = topology.nodeByName(device2);
+        if (a < 0 || b < 0) return -1;
+        for (int s = topology.adjStart(a); s < topology.adjEnd(a); s++) {
+            if (topology.adjNode(s) == b) return topology.adjLink(s);
+        }
+        return -1;
+    }
+}
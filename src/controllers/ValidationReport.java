@@ -0,0 +1,96 @@
+package controllers;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Result of validating a network: every problem found, not just the first.
+ */
+public class ValidationReport {
+    public enum Severity { ERROR, WARNING }
+
+    public enum Kind {
+        DANGLING_ENDPOINT(Severity.ERROR),
+        SELF_CONNECTION(Severity.ERROR),
+        DUPLICATE_CONNECTION(Severity.ERROR),
+        PORT_LIMIT(Severity.ERROR),
+        INCONSISTENT_LINK(Severity.ERROR),
+        DUPLICATE_ID(Severity.ERROR),
+        DUPLICATE_NAME(Severity.ERROR),
+        DUPLICATE_IP(Severity.WARNING);
+
+        private final Severity severity;
+
+        Kind(Severity severity) {
+            this.severity = severity;
+        }
+
+        public Severity getSeverity() {
+            return severity;
+        }
+    }
+
+    public static class Problem {
+        private final Kind kind;
+        private final String message;
+
+        public Problem(Kind kind, String message) {
+            this.kind = kind;
+            this.message = message;
+        }
+
+        public Kind getKind() { return kind; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return kind.getSeverity() + " " + kind + ": " + message;
+        }
+    }
+
+    private final List<Problem> problems;
+
+    public ValidationReport(Collection<Problem> problems) {
+        // Stable order regardless of how the parallel checks interleaved
+        List<Problem> sorted = new ArrayList<>(problems);
+        sorted.sort(Comparator.comparing(Problem::getKind).thenComparing(Problem::getMessage));
+        this.problems = Collections.unmodifiableList(sorted);
+    }
+
+    public List<Problem> getProblems() {
+        return problems;
+    }
+
+    public List<Problem> getErrors() {
+        return problems.stream()
+            .filter(p -> p.getKind().getSeverity() == Severity.ERROR)
+            .collect(Collectors.toList());
+    }
+
+    public boolean hasErrors() {
+        return problems.stream().anyMatch(p -> p.getKind().getSeverity() == Severity.ERROR);
+    }
+
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * Human readable summary listing at most {@code maxLines} problems.
+     */
+    public String summary(int maxLines) {
+        if (problems.isEmpty()) return "No problems found";
+        StringBuilder sb = new StringBuilder();
+        sb.append(problems.size()).append(" problem(s) found");
+        problems.stream().limit(maxLines).forEach(p -> sb.append("\n").append(p));
+        if (problems.size() > maxLines) {
+            sb.append("\n... and ").append(problems.size() - maxLines).append(" more");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary(Integer.MAX_VALUE);
+    }
+}
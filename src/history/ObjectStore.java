@@ -0,0 +1,90 @@
+package history;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable blobs stored once under the SHA-256 of their kind and content,
+ * compressed, in a two-level directory fan-out like objects/ab/cdef...
+ */
+class ObjectStore {
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path root;
+    // Hashes known to be on disk, saves a file check per unchanged object
+    private final Set<String> known = new HashSet<>();
+
+    ObjectStore(Path root) throws IOException {
+        this.root = Files.createDirectories(root);
+    }
+
+    /**
+     * Stores the content unless an identical object exists.
+     * @return the object's hash
+     */
+    String put(byte kind, byte[] content) throws IOException {
+        String hash = hash(kind, content);
+        if (known.contains(hash)) return hash;
+        Path file = path(hash);
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), hash, ".part");
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(temp))) {
+                out.write(kind);
+                out.write(content);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        known.add(hash);
+        return hash;
+    }
+
+    byte[] get(byte kind, String hash) throws IOException {
+        byte[] stored;
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(path(hash)))) {
+            stored = in.readAllBytes();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Missing history object " + hash);
+        }
+        if (stored.length == 0 || stored[0] != kind) throw new IOException("Corrupt history object " + hash);
+        byte[] content = new byte[stored.length - 1];
+        System.arraycopy(stored, 1, content, 0, content.length);
+        return content;
+    }
+
+    static String hash(byte kind, byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind);
+            return HEX.formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] toBytes(String hash) {
+        return HEX.parseHex(hash);
+    }
+
+    static String toHash(byte[] bytes) {
+        return HEX.formatHex(bytes);
+    }
+
+    private Path path(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+}
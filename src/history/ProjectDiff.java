@@ -0,0 +1,87 @@
+package history;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Differences between two versions of a project.
+ */
+public class ProjectDiff {
+    public enum Kind { ADDED, REMOVED, CHANGED, MOVED }
+
+    /**
+     * One device or connection that differs. Devices whose only change is
+     * their canvas position are MOVED.
+     */
+    public static final class Change {
+        private final Kind kind;
+        private final boolean connection;
+        private final String description;
+
+        Change(Kind kind, boolean connection, String description) {
+            this.kind = kind;
+            this.connection = connection;
+            this.description = description;
+        }
+
+        public Kind getKind() { return kind; }
+        public boolean isConnection() { return connection; }
+        public String getDescription() { return description; }
+
+        @Override
+        public String toString() {
+            return kind + " " + (connection ? "connection " : "device ") + description;
+        }
+    }
+
+    private final Version from;
+    private final Version to;
+    private final List<Change> changes;
+    private final int chunksCompared;
+    private final long elapsedNanos;
+
+    ProjectDiff(Version from, Version to, List<Change> changes, int chunksCompared, long elapsedNanos) {
+        this.from = from;
+        this.to = to;
+        this.changes = Collections.unmodifiableList(changes);
+        this.chunksCompared = chunksCompared;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Version getFrom() { return from; }
+    public Version getTo() { return to; }
+    public List<Change> getChanges() { return changes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * Number of chunks whose contents had to be compared; identical
+     * subtrees are skipped without reading them.
+     */
+    public int getChunksCompared() { return chunksCompared; }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int count(Kind kind, boolean connection) {
+        int count = 0;
+        for (Change change : changes) {
+            if (change.kind == kind && change.connection == connection) count++;
+        }
+        return count;
+    }
+
+    public String summary(int maxLines) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(from.label()).append(" -> ").append(to.label()).append(": ");
+        if (changes.isEmpty()) return sb.append("no changes").toString();
+        sb.append(String.format("devices +%d -%d ~%d moved %d, connections +%d -%d ~%d",
+            count(Kind.ADDED, false), count(Kind.REMOVED, false), count(Kind.CHANGED, false),
+            count(Kind.MOVED, false), count(Kind.ADDED, true), count(Kind.REMOVED, true),
+            count(Kind.CHANGED, true)));
+        int shown = Math.min(maxLines, changes.size());
+        for (int i = 0; i < shown; i++) sb.append("\n  ").append(changes.get(i));
+        if (changes.size() > shown) sb.append("\n  ... and ").append(changes.size() - shown).append(" more");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,485 @@
+package history;
+
+import controllers.NetworkController;
+import controllers.NetworkController.NetworkException;
+import models.Connection;
+import models.Device;
+import models.ProjectRecords;
+import java.awt.Point;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Versioned, content-addressed store of project states.
+ *
+ * A version is split into chunks by device id range; a chunk holds the
+ * devices in its range, their positions, and the connections whose lower
+ * device id falls in the range. Chunks are stored once per distinct
+ * content, so committing a new version only writes the chunks that
+ * changed. A fixed-depth Merkle tree with a fan-out of 16 sits over the
+ * chunks, and a diff descends only into subtrees whose hashes differ, so
+ * its cost follows the size of the change rather than of the network.
+ *
+ * Layout: {@code objects/} holds chunks and tree nodes, {@code versions}
+ * lists the committed versions one per line.
+ */
+public class ProjectHistory {
+    /** Device ids per chunk. */
+    static final int CHUNK_IDS = 256;
+    private static final int FANOUT_BITS = 4;
+    private static final int FANOUT = 1 << FANOUT_BITS;
+    // 16^6 chunks of 256 ids cover every non-negative int id
+    private static final int DEPTH = 6;
+    private static final byte CHUNK = 'C';
+    private static final byte NODE = 'N';
+    private static final int CACHE_SIZE = 512;
+    // One instance per directory, so version numbers are never handed out twice
+    private static final Map<Path, ProjectHistory> OPEN = new HashMap<>();
+
+    private final ObjectStore objects;
+    private final Path versionsFile;
+    private final List<Version> versions = new ArrayList<>();
+    // Objects of the tree being compared by diff(Version, Object)
+    private Map<String, byte[]> uncommitted = Collections.emptyMap();
+    // Decoded chunks and nodes, most recently used last
+    private final Map<String, Object> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The history stored in the directory, created if needed. Callers in
+     * the same process share one instance per directory.
+     */
+    public static ProjectHistory open(File directory) throws IOException {
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            ProjectHistory history = OPEN.get(path);
+            if (history == null) {
+                history = new ProjectHistory(path.toFile());
+                OPEN.put(path, history);
+            }
+            return history;
+        }
+    }
+
+    private ProjectHistory(File directory) throws IOException {
+        Path root = Files.createDirectories(directory.toPath());
+        objects = new ObjectStore(root.resolve("objects"));
+        versionsFile = root.resolve("versions");
+        if (Files.exists(versionsFile)) {
+            for (String line : Files.readAllLines(versionsFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) versions.add(Version.parse(line));
+            }
+        }
+    }
+
+    public synchronized List<Version> getVersions() {
+        return new ArrayList<>(versions);
+    }
+
+    public synchronized Version getVersion(int number) {
+        for (Version version : versions) {
+            if (version.getNumber() == number) return version;
+        }
+        throw new IllegalArgumentException("No version " + number);
+    }
+
+    public Version commit(NetworkController controller, String message) throws IOException {
+        // Encoding reads the devices, so work on a copy the controller can't change
+        return commit(controller.snapshotProject().toProjectData(), message);
+    }
+
+    /**
+     * Records project data, as returned by
+     * {@link NetworkController#getProjectData()}, as a new version.
+     */
+    public synchronized Version commit(Object projectData, String message) throws IOException {
+        Tree tree = buildTree(projectData, null);
+        int number = versions.isEmpty() ? 1 : versions.get(versions.size() - 1).getNumber() + 1;
+        Version version = new Version(number, tree.root, System.currentTimeMillis(),
+            tree.deviceCount, tree.connectionCount, message == null ? "" : message);
+        Files.writeString(versionsFile, version.toLine() + "\n", StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        versions.add(version);
+        return version;
+    }
+
+    /**
+     * Compares a version with the controller's current project without
+     * committing it: the project's tree is only built in memory.
+     */
+    public ProjectDiff diffWithCurrent(Version from, NetworkController controller) throws IOException {
+        return diff(from, controller.snapshotProject().toProjectData());
+    }
+
+    /**
+     * Compares a version with project data that is not committed. The
+     * diff's target is an uncommitted version numbered 0.
+     */
+    public synchronized ProjectDiff diff(Version from, Object projectData) throws IOException {
+        Map<String, byte[]> pending = new HashMap<>();
+        Tree tree = buildTree(projectData, pending);
+        Version current = new Version(0, tree.root, System.currentTimeMillis(),
+            tree.deviceCount, tree.connectionCount, "current project");
+        uncommitted = pending;
+        try {
+            return diff(from, current);
+        } finally {
+            uncommitted = Collections.emptyMap();
+        }
+    }
+
+    // Builds the chunks and Merkle tree of project data, writing new objects
+    // to the store, or to {@code pending} when it is not null
+    private Tree buildTree(Object projectData, Map<String, byte[]> pending) throws IOException {
+        Map<?, ?> project = (Map<?, ?>) projectData;
+        Map<?, ?> network = (Map<?, ?>) project.get("network");
+        Map<?, ?> positions = (Map<?, ?>) project.get("positions");
+        if (positions == null) positions = Collections.emptyMap();
+        List<Device> devices = new ArrayList<>();
+        for (Object device : (List<?>) network.get("devices")) devices.add((Device) device);
+        List<Connection> connections = new ArrayList<>();
+        Object storedConnections = network.get("connections");
+        if (storedConnections != null) {
+            for (Object connection : (List<?>) storedConnections) connections.add((Connection) connection);
+        }
+        devices.sort(Comparator.comparingInt(Device::getId));
+        connections.sort(Comparator.comparingLong(ProjectHistory::pairKey));
+
+        // Chunks, in chunk order
+        TreeMap<Integer, String> level = new TreeMap<>();
+        int d = 0;
+        int c = 0;
+        while (d < devices.size() || c < connections.size()) {
+            int chunk = Math.min(
+                d < devices.size() ? devices.get(d).getId() / CHUNK_IDS : Integer.MAX_VALUE,
+                c < connections.size() ? lowerId(connections.get(c)) / CHUNK_IDS : Integer.MAX_VALUE);
+            int deviceEnd = d;
+            while (deviceEnd < devices.size() && devices.get(deviceEnd).getId() / CHUNK_IDS == chunk) deviceEnd++;
+            int connectionEnd = c;
+            while (connectionEnd < connections.size() && lowerId(connections.get(connectionEnd)) / CHUNK_IDS == chunk) {
+                connectionEnd++;
+            }
+            byte[] content = encodeChunk(devices.subList(d, deviceEnd), positions,
+                connections.subList(c, connectionEnd));
+            level.put(chunk, store(CHUNK, content, pending));
+            d = deviceEnd;
+            c = connectionEnd;
+        }
+        // Tree levels up to the single root
+        for (int depth = 1; depth <= DEPTH; depth++) {
+            TreeMap<Integer, String> parents = new TreeMap<>();
+            Iterator<Map.Entry<Integer, String>> it = level.entrySet().iterator();
+            Map.Entry<Integer, String> next = it.hasNext() ? it.next() : null;
+            while (next != null) {
+                int parent = next.getKey() >>> FANOUT_BITS;
+                ByteArrayOutputStream node = new ByteArrayOutputStream();
+                node.write(0);
+                int children = 0;
+                while (next != null && next.getKey() >>> FANOUT_BITS == parent) {
+                    node.write(next.getKey() & (FANOUT - 1));
+                    node.writeBytes(ObjectStore.toBytes(next.getValue()));
+                    children++;
+                    next = it.hasNext() ? it.next() : null;
+                }
+                byte[] content = node.toByteArray();
+                content[0] = (byte) children;
+                parents.put(parent, store(NODE, content, pending));
+            }
+            level = parents;
+        }
+        String root = level.isEmpty() ? store(NODE, new byte[1], pending) : level.get(0);
+        return new Tree(root, devices.size(), connections.size());
+    }
+
+    private String store(byte kind, byte[] content, Map<String, byte[]> pending) throws IOException {
+        if (pending == null) return objects.put(kind, content);
+        String hash = ObjectStore.hash(kind, content);
+        pending.put(hash, content);
+        return hash;
+    }
+
+    // Objects of an uncommitted tree are looked up here before the store
+    private byte[] load(byte kind, String hash) throws IOException {
+        byte[] content = uncommitted.get(hash);
+        return content != null ? content : objects.get(kind, hash);
+    }
+
+    private static byte[] encodeChunk(List<Device> devices, Map<?, ?> positions, List<Connection> connections)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        out.writeInt(devices.size());
+        for (Device device : devices) {
+            Point position = (Point) positions.get(device);
+            out.writeInt(device.getId());
+            out.writeBoolean(position != null);
+            out.writeInt(position != null ? position.x : 0);
+            out.writeInt(position != null ? position.y : 0);
+            record.reset();
+            ProjectRecords.writeDevice(recordOut, device);
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        out.writeInt(connections.size());
+        for (Connection connection : connections) {
+            out.writeInt(connection.getDevice1().getId());
+            out.writeInt(connection.getDevice2().getId());
+            record.reset();
+            ProjectRecords.writeConnection(recordOut, connection);
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compares two versions. Subtrees with equal hashes are skipped.
+     */
+    public synchronized ProjectDiff diff(Version from, Version to) throws IOException {
+        long start = System.nanoTime();
+        List<ProjectDiff.Change> changes = new ArrayList<>();
+        int compared = compareNodes(from, to, from.getRoot(), to.getRoot(), DEPTH, changes);
+        return new ProjectDiff(from, to, changes, compared, System.nanoTime() - start);
+    }
+
+    private int compareNodes(Version from, Version to, String a, String b, int depth,
+            List<ProjectDiff.Change> changes) throws IOException {
+        if (Objects.equals(a, b)) return 0;
+        if (depth == 0) {
+            compareChunks(from, to, chunk(a), chunk(b), changes);
+            return 1;
+        }
+        String[] left = node(a);
+        String[] right = node(b);
+        int compared = 0;
+        for (int slot = 0; slot < FANOUT; slot++) {
+            compared += compareNodes(from, to, left[slot], right[slot], depth - 1, changes);
+        }
+        return compared;
+    }
+
+    private void compareChunks(Version from, Version to, Chunk a, Chunk b, List<ProjectDiff.Change> changes)
+            throws IOException {
+        int i = 0;
+        int j = 0;
+        while (i < a.ids.length || j < b.ids.length) {
+            int idA = i < a.ids.length ? a.ids[i] : Integer.MAX_VALUE;
+            int idB = j < b.ids.length ? b.ids[j] : Integer.MAX_VALUE;
+            if (idA < idB) {
+                changes.add(new ProjectDiff.Change(ProjectDiff.Kind.REMOVED, false, a.name(i++)));
+            } else if (idB < idA) {
+                changes.add(new ProjectDiff.Change(ProjectDiff.Kind.ADDED, false, b.name(j++)));
+            } else {
+                if (!Arrays.equals(a.records[i], b.records[j])) {
+                    String before = a.name(i);
+                    String after = b.name(j);
+                    changes.add(new ProjectDiff.Change(ProjectDiff.Kind.CHANGED, false,
+                        before.equals(after) ? after : before + " -> " + after));
+                } else if (a.placed[i] != b.placed[j] || a.positions[i] != b.positions[j]) {
+                    changes.add(new ProjectDiff.Change(ProjectDiff.Kind.MOVED, false, b.name(j)));
+                }
+                i++;
+                j++;
+            }
+        }
+        i = 0;
+        j = 0;
+        while (i < a.pairs.length || j < b.pairs.length) {
+            long keyA = i < a.pairs.length ? a.pairs[i] : Long.MAX_VALUE;
+            long keyB = j < b.pairs.length ? b.pairs[j] : Long.MAX_VALUE;
+            if (keyA < keyB) {
+                changes.add(new ProjectDiff.Change(ProjectDiff.Kind.REMOVED, true, describe(from, a, i++)));
+            } else if (keyB < keyA) {
+                changes.add(new ProjectDiff.Change(ProjectDiff.Kind.ADDED, true, describe(to, b, j++)));
+            } else {
+                if (!Arrays.equals(a.connections[i], b.connections[j])) {
+                    changes.add(new ProjectDiff.Change(ProjectDiff.Kind.CHANGED, true, describe(to, b, j)));
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private String describe(Version version, Chunk chunk, int index) throws IOException {
+        return deviceName(version, chunk.ends1[index]) + " <-> " + deviceName(version, chunk.ends2[index]);
+    }
+
+    // Looks the device up along its path from the root
+    private String deviceName(Version version, int id) throws IOException {
+        int chunkIndex = id / CHUNK_IDS;
+        String hash = version.getRoot();
+        for (int depth = DEPTH; depth > 0 && hash != null; depth--) {
+            hash = node(hash)[(chunkIndex >>> (FANOUT_BITS * (depth - 1))) & (FANOUT - 1)];
+        }
+        Chunk chunk = chunk(hash);
+        int i = Arrays.binarySearch(chunk.ids, id);
+        return i >= 0 ? chunk.name(i) : "#" + id;
+    }
+
+    /**
+     * Rebuilds the project data of a version, in the form accepted by
+     * {@link NetworkController#loadProjectData(Object)}.
+     */
+    public synchronized Serializable checkout(Version version) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        collectChunks(version.getRoot(), DEPTH, chunks);
+        Map<Integer, Device> byId = new HashMap<>();
+        ArrayList<Device> devices = new ArrayList<>();
+        HashMap<Device, Point> positions = new HashMap<>();
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.ids.length; i++) {
+                Device device = ProjectRecords.readDevice(chunk.ids[i], chunk.record(i));
+                byId.put(device.getId(), device);
+                devices.add(device);
+                if (chunk.placed[i]) {
+                    positions.put(device, new Point((int) (chunk.positions[i] >> 32), (int) chunk.positions[i]));
+                }
+            }
+        }
+        ArrayList<Connection> connections = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.pairs.length; i++) {
+                Device device1 = byId.get(chunk.ends1[i]);
+                Device device2 = byId.get(chunk.ends2[i]);
+                if (device1 == null || device2 == null) throw new IOException("Connection to a missing device");
+                connections.add(ProjectRecords.readConnection(device1, device2,
+                    new DataInputStream(new ByteArrayInputStream(chunk.connections[i]))));
+            }
+        }
+        HashMap<String, Object> network = new HashMap<>();
+        network.put("devices", devices);
+        network.put("connections", connections);
+        HashMap<String, Object> project = new HashMap<>();
+        project.put("network", network);
+        project.put("positions", positions);
+        return project;
+    }
+
+    /**
+     * Replaces the controller's network with the given version.
+     */
+    public void checkout(Version version, NetworkController controller) throws IOException, NetworkException {
+        controller.loadProjectData(checkout(version));
+    }
+
+    private void collectChunks(String hash, int depth, List<Chunk> chunks) throws IOException {
+        if (hash == null) return;
+        if (depth == 0) {
+            chunks.add(decodeChunk(load(CHUNK, hash)));
+            return;
+        }
+        for (String child : node(hash)) collectChunks(child, depth - 1, chunks);
+    }
+
+    private String[] node(String hash) throws IOException {
+        if (hash == null) return new String[FANOUT];
+        String[] children = (String[]) cache.get(NODE + hash);
+        if (children != null) return children;
+        byte[] content = load(NODE, hash);
+        children = new String[FANOUT];
+        byte[] child = new byte[32];
+        for (int i = 0, at = 1; i < (content[0] & 0xff); i++, at += 33) {
+            System.arraycopy(content, at + 1, child, 0, child.length);
+            children[content[at]] = ObjectStore.toHash(child);
+        }
+        cache.put(NODE + hash, children);
+        return children;
+    }
+
+    private Chunk chunk(String hash) throws IOException {
+        if (hash == null) return Chunk.EMPTY;
+        Chunk chunk = (Chunk) cache.get(CHUNK + hash);
+        if (chunk == null) {
+            chunk = decodeChunk(load(CHUNK, hash));
+            cache.put(CHUNK + hash, chunk);
+        }
+        return chunk;
+    }
+
+    private static Chunk decodeChunk(byte[] content) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        int devices = in.readInt();
+        Chunk chunk = new Chunk(devices);
+        for (int i = 0; i < devices; i++) {
+            chunk.ids[i] = in.readInt();
+            chunk.placed[i] = in.readBoolean();
+            chunk.positions[i] = ((long) in.readInt() << 32) | (in.readInt() & 0xffffffffL);
+            chunk.records[i] = in.readNBytes(in.readInt());
+        }
+        int connections = in.readInt();
+        chunk.ends1 = new int[connections];
+        chunk.ends2 = new int[connections];
+        chunk.pairs = new long[connections];
+        chunk.connections = new byte[connections][];
+        for (int i = 0; i < connections; i++) {
+            chunk.ends1[i] = in.readInt();
+            chunk.ends2[i] = in.readInt();
+            chunk.pairs[i] = pairKey(chunk.ends1[i], chunk.ends2[i]);
+            chunk.connections[i] = in.readNBytes(in.readInt());
+        }
+        return chunk;
+    }
+
+    private static int lowerId(Connection connection) {
+        return Math.min(connection.getDevice1().getId(), connection.getDevice2().getId());
+    }
+
+    private static long pairKey(Connection connection) {
+        return pairKey(connection.getDevice1().getId(), connection.getDevice2().getId());
+    }
+
+    private static long pairKey(int id1, int id2) {
+        return ((long) Math.min(id1, id2) << 32) | Math.max(id1, id2);
+    }
+
+    private static final class Tree {
+        final String root;
+        final int deviceCount;
+        final int connectionCount;
+
+        Tree(String root, int deviceCount, int connectionCount) {
+            this.root = root;
+            this.deviceCount = deviceCount;
+            this.connectionCount = connectionCount;
+        }
+    }
+
+    // Decoded chunk, records kept as bytes so they compare without parsing
+    private static final class Chunk {
+        static final Chunk EMPTY = new Chunk(0);
+
+        final int[] ids;
+        final boolean[] placed;
+        final long[] positions;
+        final byte[][] records;
+        int[] ends1 = new int[0];
+        int[] ends2 = new int[0];
+        long[] pairs = new long[0];
+        byte[][] connections = new byte[0][];
+
+        Chunk(int devices) {
+            ids = new int[devices];
+            placed = new boolean[devices];
+            positions = new long[devices];
+            records = new byte[devices][];
+        }
+
+        DataInputStream record(int i) {
+            return new DataInputStream(new ByteArrayInputStream(records[i]));
+        }
+
+        String name(int i) throws IOException {
+            return ProjectRecords.readDeviceName(record(i));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package history;
+
+/**
+ * One committed state of a project in a {@link ProjectHistory}.
+ */
+public final class Version {
+    private final int number;
+    private final String root;
+    private final long timeMillis;
+    private final int deviceCount;
+    private final int connectionCount;
+    private final String message;
+
+    Version(int number, String root, long timeMillis, int deviceCount, int connectionCount, String message) {
+        this.number = number;
+        this.root = root;
+        this.timeMillis = timeMillis;
+        this.deviceCount = deviceCount;
+        this.connectionCount = connectionCount;
+        this.message = message;
+    }
+
+    public int getNumber() { return number; }
+    public long getTimeMillis() { return timeMillis; }
+    public int getDeviceCount() { return deviceCount; }
+    public int getConnectionCount() { return connectionCount; }
+    public String getMessage() { return message; }
+
+    /**
+     * Merkle root hash; versions with equal roots have identical contents.
+     */
+    public String getRoot() { return root; }
+
+    /**
+     * False for the uncommitted version a project is compared as.
+     */
+    public boolean isCommitted() { return number > 0; }
+
+    String label() {
+        return isCommitted() ? "v" + number : "current";
+    }
+
+    String toLine() {
+        return number + "\t" + root + "\t" + timeMillis + "\t" + deviceCount + "\t" + connectionCount
+            + "\t" + message.replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    static Version parse(String line) {
+        String[] parts = line.split("\t", 6);
+        return new Version(Integer.parseInt(parts[0]), parts[1], Long.parseLong(parts[2]),
+            Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), parts.length > 5 ? parts[5] : "");
+    }
+
+    @Override
+    public String toString() {
+        return label() + " " + message + " (" + deviceCount + " devices, " + connectionCount + " connections)";
+    }
+}
@@ -4,12 +4,17 @@ package models;
 import java.io.Serializable;
 
 public class Computer extends Device implements Serializable{
+    private static final long serialVersionUID = -7575659692127474141L;
     private Device connectedDevice;
 
     public Computer(String name, String ipAddress) {
         super(name, ipAddress);
     }
 
+    Computer(int id, String name, String ipAddress) {
+        super(id, name, ipAddress);
+    }
+
     @Override
     public boolean canConnectTo(Device other) {
         // Can connect to one switch or one computer
@@ -42,6 +47,16 @@ public class Computer extends Device implements Serializable{
         return getName(); // Or any other string representation you prefer
     }
 
+    @Override
+    public int getConnectionCount() {
+        return connectedDevice != null ? 1 : 0;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return 1;
+    }
+
     public Device getConnectedDevice() {
         return connectedDevice;
     }
@@ -1,5 +1,7 @@
 package models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 /**
@@ -7,9 +9,22 @@ import java.io.Serializable;
  */
 public class Connection implements Serializable{
 	private static final long serialVersionUID = 1L;
+    public static final long DEFAULT_BANDWIDTH_BPS = 1_000_000_000L;
+    public static final long DEFAULT_DELAY_NANOS = 5_000L;
+    public static final int DEFAULT_MTU = 1500;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
     private final Device device1;
     private final Device device2;
 
+    // Link characteristics used by the simulation
+    private long bandwidthBps = DEFAULT_BANDWIDTH_BPS;
+    private long propagationDelayNanos = DEFAULT_DELAY_NANOS;
+    private double lossRate;
+    private int mtu = DEFAULT_MTU;
+    private QueueDiscipline queueDiscipline = QueueDiscipline.DROP_TAIL;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
     public Connection(Device device1, Device device2) {
         if (device1 == null || device2 == null) {
             throw new IllegalArgumentException("Devices cannot be null");
@@ -18,6 +33,16 @@ public class Connection implements Serializable{
         this.device2 = device2;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // Connections saved before links had characteristics
+        if (bandwidthBps <= 0) bandwidthBps = DEFAULT_BANDWIDTH_BPS;
+        if (propagationDelayNanos <= 0) propagationDelayNanos = DEFAULT_DELAY_NANOS;
+        if (mtu <= 0) mtu = DEFAULT_MTU;
+        if (queueDiscipline == null) queueDiscipline = QueueDiscipline.DROP_TAIL;
+        if (queueCapacity <= 0) queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    }
+
     public Device getDevice1() {
         return device1;
     }
@@ -26,6 +51,67 @@ public class Connection implements Serializable{
         return device2;
     }
 
+    public long getBandwidthBps() { return bandwidthBps; }
+    public long getPropagationDelayNanos() { return propagationDelayNanos; }
+    public double getLossRate() { return lossRate; }
+    public int getMtu() { return mtu; }
+    public QueueDiscipline getQueueDiscipline() { return queueDiscipline; }
+    public int getQueueCapacity() { return queueCapacity; }
+
+    public void setBandwidthBps(long bandwidthBps) {
+        if (bandwidthBps <= 0) throw new IllegalArgumentException("Bandwidth must be positive");
+        this.bandwidthBps = bandwidthBps;
+    }
+
+    public void setPropagationDelayNanos(long propagationDelayNanos) {
+        if (propagationDelayNanos < 0) throw new IllegalArgumentException("Delay cannot be negative");
+        this.propagationDelayNanos = propagationDelayNanos;
+    }
+
+    public void setLossRate(double lossRate) {
+        if (lossRate < 0 || lossRate > 1) throw new IllegalArgumentException("Loss rate must be between 0 and 1");
+        this.lossRate = lossRate;
+    }
+
+    public void setMtu(int mtu) {
+        if (mtu < 68) throw new IllegalArgumentException("MTU must be at least 68 bytes");
+        this.mtu = mtu;
+    }
+
+    /**
+     * Sets the discipline and size of the output queue the simulator
+     * builds for each direction of the link.
+     */
+    public void setQueue(QueueDiscipline discipline, int capacity) {
+        if (discipline == null) throw new IllegalArgumentException("Discipline cannot be null");
+        if (capacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive");
+        this.queueDiscipline = discipline;
+        this.queueCapacity = capacity;
+    }
+
+    /**
+     * Copies the link characteristics and queue settings of another connection.
+     */
+    public void copySettingsFrom(Connection other) {
+        this.bandwidthBps = other.bandwidthBps;
+        this.propagationDelayNanos = other.propagationDelayNanos;
+        this.lossRate = other.lossRate;
+        this.mtu = other.mtu;
+        this.queueDiscipline = other.queueDiscipline;
+        this.queueCapacity = other.queueCapacity;
+    }
+
+    /**
+     * Time to serialize a frame of the given size onto the link.
+     */
+    public long transmissionNanos(int sizeBytes) {
+        return sizeBytes * 8L * 1_000_000_000L / bandwidthBps;
+    }
+
+    public Device getOtherEnd(Device device) {
+        return device.equals(device1) ? device2 : device1;
+    }
+
     /**
      * Checks if this connection involves the given device
      */
@@ -1,17 +1,49 @@
 // Device.java (Abstract base class)
 package models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class Device implements Serializable {
+    private static final long serialVersionUID = 3940701730450437969L;
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    // Stable identity; unlike the name it never changes after creation
+    private int id;
     protected String name;
     protected String ipAddress;
 
     public Device(String name, String ipAddress) {
+        this(newId(), name, ipAddress);
+    }
+
+    // Rebuilds a device from a stored record with its original identity,
+    // without using up a new id
+    Device(int id, String name, String ipAddress) {
+        this.id = id;
         this.name = name;
         this.ipAddress = ipAddress;
+        NEXT_ID.accumulateAndGet(id + 1, Math::max);
+    }
+
+    static int newId() {
+        return NEXT_ID.getAndIncrement();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (id <= 0) {
+            // Saved before devices had ids
+            id = NEXT_ID.getAndIncrement();
+        } else {
+            NEXT_ID.accumulateAndGet(id + 1, Math::max);
+        }
     }
 
+    public int getId() { return id; }
+
     // Getters and setters
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
@@ -23,4 +55,18 @@ public abstract class Device implements Serializable {
     public abstract void connectTo(Device other) throws IllegalStateException;
     public abstract void disconnectFrom(Device other);
     public abstract boolean isConnectedTo(Device other);
+    public abstract int getConnectionCount();
+    public abstract int getMaxConnections();
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return id == ((Device) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
 }
\ No newline at end of file
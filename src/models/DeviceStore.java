@@ -0,0 +1,289 @@
+package models;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Columnar storage for per-device attributes, looked up by {@link Device#getId()}.
+ * Each attribute lives in its own primitive column so that scans over a
+ * single attribute (positions when painting, IPs when searching) stay
+ * compact and no per-device wrapper objects are needed. The numeric
+ * columns can optionally be kept off-heap in direct buffers.
+ *
+ * The store sits next to the {@link Device} objects rather than replacing
+ * them, so it makes scans cheap but does not by itself shrink a network:
+ * a connected host costs about 1 KB in all, most of it in the device and
+ * connection objects. Ids are never reused, so they map to rows through an
+ * open-addressing table and rows freed by removals are handed out again;
+ * the columns are sized by the number of devices, not by the largest id.
+ *
+ * Writers are expected to hold the owning controller's lock. Readers such
+ * as the painting code take no lock: the columns and the id table are
+ * published together through one volatile reference and replaced as a
+ * whole when they grow or are cleared, so a reader may see a slightly
+ * stale row but never columns of mismatched size.
+ */
+public class DeviceStore {
+    public static final byte TYPE_NONE = 0;
+    public static final byte TYPE_COMPUTER = 1;
+    public static final byte TYPE_SWITCH = 2;
+    public static final byte TYPE_ROUTER = 3;
+    public static final byte TYPE_OTHER = 4;
+
+    private static final int FLAG_POSITION = 1 << 8;
+    private static final int TYPE_MASK = 0xff;
+    private static final int PORTS_SHIFT = 16;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int EMPTY = -1;
+    private static final int REMOVED = -2;
+
+    private final boolean offHeap;
+    private volatile Columns columns;
+    // Writer side only
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    private int rowCount;
+    private int removedSlots;
+    private int size;
+
+    public DeviceStore() {
+        this(false);
+    }
+
+    public DeviceStore(boolean offHeap) {
+        this.offHeap = offHeap;
+        columns = new Columns(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds or refreshes the row for the given device, keeping any position.
+     */
+    public void put(Device device) {
+        int id = device.getId();
+        if (id < 0) throw new IllegalArgumentException("Negative device id " + id);
+        Columns c = columns;
+        int slot = c.slot(id);
+        int row;
+        int flags = 0;
+        if (slot >= 0) {
+            row = c.rows[slot];
+            flags = c.info.get(row) & FLAG_POSITION;
+        } else {
+            c = ensureCapacity();
+            row = freeCount > 0 ? freeRows[--freeCount] : rowCount++;
+            c.xs.put(row, 0);
+            c.ys.put(row, 0);
+        }
+        c.info.put(row, (device.getConnectionCount() << PORTS_SHIFT) | flags | typeOf(device));
+        c.ips.put(row, IpAddress.parseOrDefault(device.getIpAddress(), 0));
+        c.names[row] = device.getName() != null ? device.getName().intern() : null;
+        if (slot < 0) {
+            // Row first, then the key that makes it visible
+            if (c.insert(id, row)) removedSlots--;
+            size++;
+        }
+    }
+
+    public void remove(Device device) {
+        Columns c = columns;
+        int slot = c.slot(device.getId());
+        if (slot < 0) return;
+        int row = c.rows[slot];
+        c.keys[slot] = REMOVED;
+        removedSlots++;
+        c.info.put(row, 0);
+        c.ips.put(row, 0);
+        c.xs.put(row, 0);
+        c.ys.put(row, 0);
+        c.names[row] = null;
+        if (freeCount == freeRows.length) freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        freeRows[freeCount++] = row;
+        size--;
+    }
+
+    // Starts small again, the next network may be far smaller
+    public void clear() {
+        columns = new Columns(INITIAL_CAPACITY);
+        freeRows = new int[16];
+        freeCount = 0;
+        rowCount = 0;
+        removedSlots = 0;
+        size = 0;
+    }
+
+    public void setPosition(Device device, int x, int y) {
+        Columns c = columns;
+        int row = c.row(device.getId());
+        if (row < 0) return;
+        c.xs.put(row, x);
+        c.ys.put(row, y);
+        c.info.put(row, c.info.get(row) | FLAG_POSITION);
+    }
+
+    public boolean contains(int id) {
+        return columns.row(id) >= 0;
+    }
+
+    public boolean hasPosition(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 && (c.info.get(row) & FLAG_POSITION) != 0;
+    }
+
+    // Devices not in the store read as zero, TYPE_NONE or null
+    public byte getType(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 ? (byte) (c.info.get(row) & TYPE_MASK) : TYPE_NONE;
+    }
+
+    public int getPortsUsed(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 ? c.info.get(row) >>> PORTS_SHIFT : 0;
+    }
+
+    public int getIp(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 ? c.ips.get(row) : 0;
+    }
+
+    public int getX(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 ? c.xs.get(row) : 0;
+    }
+
+    public int getY(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 ? c.ys.get(row) : 0;
+    }
+
+    public String getName(int id) {
+        Columns c = columns;
+        int row = c.row(id);
+        return row >= 0 ? c.names[row] : null;
+    }
+
+    /**
+     * Number of devices in the store.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of devices the columns can currently hold.
+     */
+    public int capacity() {
+        return columns.names.length;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public static byte typeOf(Device device) {
+        if (device instanceof Computer) return TYPE_COMPUTER;
+        if (device instanceof Switch) return TYPE_SWITCH;
+        if (device instanceof Router) return TYPE_ROUTER;
+        return TYPE_OTHER;
+    }
+
+    // Makes room for one more device, replacing the columns if they are
+    // full or the id table is half taken up by keys and removed slots
+    private Columns ensureCapacity() {
+        Columns c = columns;
+        boolean rowsFull = freeCount == 0 && rowCount == c.names.length;
+        boolean tableFull = (size + removedSlots + 1) * 2 > c.keys.length;
+        if (!rowsFull && !tableFull) return c;
+        int capacity = rowsFull ? c.names.length * 2 : c.names.length;
+        Columns grown = new Columns(capacity);
+        copy(c.info, grown.info);
+        copy(c.ips, grown.ips);
+        copy(c.xs, grown.xs);
+        copy(c.ys, grown.ys);
+        System.arraycopy(c.names, 0, grown.names, 0, c.names.length);
+        for (int i = 0; i < c.keys.length; i++) {
+            if (c.keys[i] >= 0) grown.insert(c.keys[i], c.rows[i]);
+        }
+        removedSlots = 0;
+        columns = grown;
+        return grown;
+    }
+
+    private static void copy(IntBuffer from, IntBuffer to) {
+        IntBuffer source = from.duplicate();
+        source.rewind();
+        to.duplicate().put(source);
+    }
+
+    private final class Columns {
+        // Id table: device id (or EMPTY / REMOVED) -> row, at most half full
+        final int[] keys;
+        final int[] rows;
+        // Packed as ports used (16 bits) | flags (8 bits) | type (8 bits)
+        final IntBuffer info;
+        final IntBuffer ips;
+        final IntBuffer xs;
+        final IntBuffer ys;
+        final String[] names;
+
+        Columns(int capacity) {
+            keys = new int[capacity * 4];
+            rows = new int[capacity * 4];
+            Arrays.fill(keys, EMPTY);
+            info = allocate(capacity);
+            ips = allocate(capacity);
+            xs = allocate(capacity);
+            ys = allocate(capacity);
+            names = new String[capacity];
+        }
+
+        int row(int id) {
+            int slot = slot(id);
+            return slot >= 0 ? rows[slot] : -1;
+        }
+
+        int slot(int id) {
+            if (id < 0) return -1;
+            int mask = keys.length - 1;
+            for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+                int key = keys[i];
+                if (key == id) return i;
+                if (key == EMPTY) return -1;
+            }
+        }
+
+        // Returns whether a removed slot was taken over
+        boolean insert(int id, int row) {
+            int mask = keys.length - 1;
+            for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] < 0) {
+                    boolean reused = keys[i] == REMOVED;
+                    rows[i] = row;
+                    keys[i] = id;
+                    return reused;
+                }
+            }
+        }
+
+        private int mix(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private IntBuffer allocate(int capacity) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(capacity * Integer.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        }
+        return IntBuffer.allocate(capacity);
+    }
+}
@@ -0,0 +1,243 @@
+package models;
+
+import java.util.*;
+
+/**
+ * IPv4 forwarding table with longest-prefix-match lookups.
+ *
+ * Routes are compiled into a three level multibit trie with strides of
+ * 16, 8 and 8 bits (a DIR-16-8-8 layout). Each slot holds either a route
+ * or a pointer to a 256-entry chunk of the next level, so a lookup costs
+ * at most three array reads. Shorter prefixes are expanded into every slot
+ * they cover; a per-slot prefix length keeps longer routes from being
+ * overwritten on insert. Removing a route rebuilds the trie on the next
+ * lookup. Lookups are not synchronized with concurrent changes to the table.
+ *
+ * A connected and a static route may exist for the same prefix; the
+ * connected route is preferred while it exists.
+ */
+public class ForwardingTable {
+    private static final int POINTER = 0x80000000;
+    private static final int CHUNK = 256;
+
+    /**
+     * A route entry. A gateway of 0 means the destination is directly connected.
+     */
+    public static final class Route implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public enum Type { CONNECTED, STATIC }
+
+        private final int prefix;
+        private final int length;
+        private final int gateway;
+        private final int interfaceIndex;
+        private final Type type;
+
+        public Route(int prefix, int length, int gateway, int interfaceIndex, Type type) {
+            this.length = length;
+            this.prefix = prefix & IpAddress.mask(length);
+            this.gateway = gateway;
+            this.interfaceIndex = interfaceIndex;
+            this.type = type;
+        }
+
+        public int getPrefix() { return prefix; }
+        public int getLength() { return length; }
+        public int getGateway() { return gateway; }
+        public int getInterfaceIndex() { return interfaceIndex; }
+        public Type getType() { return type; }
+
+        // Prefix, then type, then length (0 to 32)
+        long key() {
+            return ((prefix & 0xffffffffL) << 7) | ((long) type.ordinal() << 6) | length;
+        }
+
+        @Override
+        public String toString() {
+            return IpAddress.format(prefix) + "/" + length
+                + (gateway != 0 ? " via " + IpAddress.format(gateway) : " connected")
+                + " if " + interfaceIndex + " (" + type + ")";
+        }
+    }
+
+    private final Map<Long, Route> routes = new HashMap<>();
+    private final List<Route> compiled = new ArrayList<>();
+    private volatile boolean dirty;
+
+    private final int[] level1 = new int[1 << 16];
+    private final byte[] level1Lengths = new byte[1 << 16];
+    private int[] level2 = new int[CHUNK * 16];
+    private byte[] level2Lengths = new byte[CHUNK * 16];
+    private int level2Chunks;
+    private int[] level3 = new int[CHUNK * 16];
+    private byte[] level3Lengths = new byte[CHUNK * 16];
+    private int level3Chunks;
+
+    /**
+     * Adds a route, replacing any route of the same type for the same
+     * prefix and length.
+     */
+    public synchronized void add(Route route) {
+        Route previous = routes.put(route.key(), route);
+        // A static route must not overwrite the connected one it shadows
+        boolean shadowed = route.getType() == Route.Type.STATIC && routes.containsKey(
+            new Route(route.getPrefix(), route.getLength(), 0, 0, Route.Type.CONNECTED).key());
+        if (previous != null || shadowed || dirty) {
+            dirty = true;
+            return;
+        }
+        compiled.add(route);
+        insert(route.getPrefix(), route.getLength(), compiled.size());
+    }
+
+    public synchronized boolean remove(int prefix, int length, Route.Type type) {
+        Route removed = routes.remove(new Route(prefix, length, 0, 0, type).key());
+        if (removed != null) dirty = true;
+        return removed != null;
+    }
+
+    /**
+     * Removes every route matching the filter.
+     */
+    public synchronized void removeIf(java.util.function.Predicate<Route> filter) {
+        if (routes.values().removeIf(filter)) dirty = true;
+    }
+
+    public synchronized List<Route> getRoutes() {
+        List<Route> sorted = new ArrayList<>(routes.values());
+        sorted.sort(Comparator.comparingInt(Route::getLength).reversed()
+            .thenComparingLong(r -> r.getPrefix() & 0xffffffffL));
+        return sorted;
+    }
+
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * Longest-prefix match for a destination address.
+     * @return the matching route, or null if there is none
+     */
+    public Route lookup(int address) {
+        int index = lookupIndex(address);
+        return index > 0 ? compiled.get(index - 1) : null;
+    }
+
+    /**
+     * Longest-prefix match returning the outgoing interface, or -1.
+     */
+    public int lookupInterface(int address) {
+        Route route = lookup(address);
+        return route != null ? route.getInterfaceIndex() : -1;
+    }
+
+    // Lookups take no lock; only a pending rebuild after a removal does
+    private int lookupIndex(int address) {
+        if (dirty) rebuildIfDirty();
+        int entry = level1[address >>> 16];
+        if (entry < 0) {
+            entry = level2[((entry & ~POINTER) << 8) | ((address >>> 8) & 0xff)];
+            if (entry < 0) {
+                entry = level3[((entry & ~POINTER) << 8) | (address & 0xff)];
+            }
+        }
+        return entry;
+    }
+
+    private synchronized void rebuildIfDirty() {
+        if (!dirty) return;
+        Arrays.fill(level1, 0);
+        Arrays.fill(level1Lengths, (byte) 0);
+        level2Chunks = 0;
+        level3Chunks = 0;
+        compiled.clear();
+        compiled.addAll(routes.values());
+        // Shorter prefixes first so longer ones overwrite them, and connected
+        // routes after static ones of the same length
+        compiled.sort(Comparator.comparingInt(Route::getLength)
+            .thenComparing(Route::getType, Comparator.reverseOrder()));
+        for (int i = 0; i < compiled.size(); i++) {
+            Route route = compiled.get(i);
+            insert(route.getPrefix(), route.getLength(), i + 1);
+        }
+        dirty = false;
+    }
+
+    private void insert(int prefix, int length, int value) {
+        if (length <= 16) {
+            int first = prefix >>> 16;
+            int count = 1 << (16 - length);
+            for (int slot = first; slot < first + count; slot++) {
+                int entry = level1[slot];
+                if (entry < 0) {
+                    fillLevel2(entry & ~POINTER, 0, CHUNK, length, value);
+                } else if (level1Lengths[slot] <= length) {
+                    level1[slot] = value;
+                    level1Lengths[slot] = (byte) length;
+                }
+            }
+            return;
+        }
+        int chunk2 = level2ChunkFor(prefix >>> 16);
+        if (length <= 24) {
+            fillLevel2(chunk2, (prefix >>> 8) & 0xff, 1 << (24 - length), length, value);
+            return;
+        }
+        int chunk3 = level3ChunkFor(chunk2, (prefix >>> 8) & 0xff);
+        fillLevel3(chunk3, prefix & 0xff, 1 << (32 - length), length, value);
+    }
+
+    private void fillLevel2(int chunk, int first, int count, int length, int value) {
+        int base = chunk << 8;
+        for (int i = base + first; i < base + first + count; i++) {
+            int entry = level2[i];
+            if (entry < 0) {
+                fillLevel3(entry & ~POINTER, 0, CHUNK, length, value);
+            } else if (level2Lengths[i] <= length) {
+                level2[i] = value;
+                level2Lengths[i] = (byte) length;
+            }
+        }
+    }
+
+    private void fillLevel3(int chunk, int first, int count, int length, int value) {
+        int base = chunk << 8;
+        for (int i = base + first; i < base + first + count; i++) {
+            if (level3Lengths[i] <= length) {
+                level3[i] = value;
+                level3Lengths[i] = (byte) length;
+            }
+        }
+    }
+
+    private int level2ChunkFor(int slot) {
+        int entry = level1[slot];
+        if (entry < 0) return entry & ~POINTER;
+        int chunk = level2Chunks++;
+        if ((chunk + 1) * CHUNK > level2.length) {
+            level2 = Arrays.copyOf(level2, level2.length * 2);
+            level2Lengths = Arrays.copyOf(level2Lengths, level2Lengths.length * 2);
+        }
+        // The new chunk inherits the route the slot covered until now
+        Arrays.fill(level2, chunk << 8, (chunk + 1) << 8, entry);
+        Arrays.fill(level2Lengths, chunk << 8, (chunk + 1) << 8, level1Lengths[slot]);
+        level1[slot] = POINTER | chunk;
+        return chunk;
+    }
+
+    private int level3ChunkFor(int chunk2, int offset) {
+        int i = (chunk2 << 8) | offset;
+        int entry = level2[i];
+        if (entry < 0) return entry & ~POINTER;
+        int chunk = level3Chunks++;
+        if ((chunk + 1) * CHUNK > level3.length) {
+            level3 = Arrays.copyOf(level3, level3.length * 2);
+            level3Lengths = Arrays.copyOf(level3Lengths, level3Lengths.length * 2);
+        }
+        Arrays.fill(level3, chunk << 8, (chunk + 1) << 8, entry);
+        Arrays.fill(level3Lengths, chunk << 8, (chunk + 1) << 8, level2Lengths[i]);
+        level2[i] = POINTER | chunk;
+        return chunk;
+    }
+}
@@ -0,0 +1,75 @@
+package models;
+
+/**
+ * Helpers for handling IPv4 addresses as packed ints.
+ */
+public final class IpAddress {
+
+    private IpAddress() {
+    }
+
+    /**
+     * Parses a dotted quad such as "192.168.1.10".
+     * @throws IllegalArgumentException if the text is not a valid IPv4 address
+     */
+    public static int parse(String text) {
+        if (text == null) throw new IllegalArgumentException("IP address cannot be null");
+        int result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (octet < 0 || ++dots > 3) throw invalid(text);
+                result = (result << 8) | octet;
+                octet = -1;
+            } else if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) throw invalid(text);
+            } else {
+                throw invalid(text);
+            }
+        }
+        if (dots != 3 || octet < 0) throw invalid(text);
+        return (result << 8) | octet;
+    }
+
+    /**
+     * Like {@link #parse(String)} but returns {@code fallback} for invalid input.
+     */
+    public static int parseOrDefault(String text, int fallback) {
+        try {
+            return parse(text);
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    public static boolean isValid(String text) {
+        try {
+            parse(text);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static String format(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "."
+            + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+    }
+
+    /**
+     * Network mask for a prefix length between 0 and 32.
+     */
+    public static int mask(int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 32) {
+            throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+        }
+        return prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+    }
+
+    private static IllegalArgumentException invalid(String text) {
+        return new IllegalArgumentException("Invalid IP address: " + text);
+    }
+}
@@ -0,0 +1,254 @@
+package models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Output queue for one direction of a link.
+ *
+ * Entries are packet ids with their size, priority and enqueue time, held
+ * in ring buffers allocated up front, so enqueue and dequeue never
+ * allocate. The fields of the entry most recently dequeued are available
+ * through the {@code last*} getters.
+ */
+public class LinkQueue {
+    public static final int PRIORITY_CLASSES = 4;
+
+    // RED parameters, thresholds are fractions of the capacity
+    private static final double RED_WEIGHT = 0.002;
+    private static final double RED_MIN_THRESHOLD = 0.25;
+    private static final double RED_MAX_THRESHOLD = 0.75;
+    private static final double RED_MAX_PROBABILITY = 0.1;
+
+    private final QueueDiscipline discipline;
+    private final int capacity;
+
+    // One ring per class; DROP_TAIL and RED use only class 0
+    private final long[][] ids;
+    private final int[][] sizes;
+    private final long[][] times;
+    private final int[] heads;
+    private final int[] counts;
+
+    private int size;
+    private long bytes;
+    private double averageSize;
+    private int sinceLastDrop;
+    private long randomState;
+
+    private long enqueued;
+    private long dequeued;
+    private long dropped;
+    private long droppedBytes;
+
+    private long lastId;
+    private int lastSize;
+    private int lastPriority;
+    private long lastEnqueueTime;
+
+    public LinkQueue(QueueDiscipline discipline, int capacity) {
+        this(discipline, capacity, 0x2545F4914F6CDD1DL);
+    }
+
+    public LinkQueue(QueueDiscipline discipline, int capacity, long seed) {
+        if (capacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive");
+        this.discipline = discipline;
+        this.capacity = capacity;
+        int classes = discipline == QueueDiscipline.PRIORITY ? PRIORITY_CLASSES : 1;
+        this.ids = new long[classes][capacity];
+        this.sizes = new int[classes][capacity];
+        this.times = new long[classes][capacity];
+        this.heads = new int[classes];
+        this.counts = new int[classes];
+        this.randomState = seed != 0 ? seed : 1;
+    }
+
+    /**
+     * Queues a packet. Priority 0 is the highest and is only used by
+     * {@link QueueDiscipline#PRIORITY}.
+     * @return false if the packet was dropped
+     */
+    public boolean enqueue(long packetId, int sizeBytes, int priority, long now) {
+        int cls = 0;
+        switch (discipline) {
+            case DROP_TAIL:
+                if (size >= capacity) return drop(sizeBytes);
+                break;
+            case RED:
+                if (redDrop()) return drop(sizeBytes);
+                break;
+            case PRIORITY:
+                cls = Math.max(0, Math.min(PRIORITY_CLASSES - 1, priority));
+                if (counts[cls] >= capacity) return drop(sizeBytes);
+                break;
+        }
+        int tail = (heads[cls] + counts[cls]) % capacity;
+        ids[cls][tail] = packetId;
+        sizes[cls][tail] = sizeBytes;
+        times[cls][tail] = now;
+        counts[cls]++;
+        size++;
+        bytes += sizeBytes;
+        enqueued++;
+        return true;
+    }
+
+    /**
+     * Removes the next packet to transmit.
+     * @return the packet id, or -1 if the queue is empty
+     */
+    public long dequeue() {
+        for (int cls = 0; cls < counts.length; cls++) {
+            if (counts[cls] == 0) continue;
+            int head = heads[cls];
+            lastId = ids[cls][head];
+            lastSize = sizes[cls][head];
+            lastEnqueueTime = times[cls][head];
+            lastPriority = cls;
+            heads[cls] = (head + 1) % capacity;
+            counts[cls]--;
+            size--;
+            bytes -= lastSize;
+            dequeued++;
+            return lastId;
+        }
+        return -1;
+    }
+
+    private boolean redDrop() {
+        averageSize = (1 - RED_WEIGHT) * averageSize + RED_WEIGHT * size;
+        double minTh = capacity * RED_MIN_THRESHOLD;
+        double maxTh = capacity * RED_MAX_THRESHOLD;
+        if (size >= capacity || averageSize >= maxTh) {
+            sinceLastDrop = 0;
+            return true;
+        }
+        if (averageSize < minTh) {
+            sinceLastDrop = -1;
+            return false;
+        }
+        sinceLastDrop++;
+        // Spread drops out evenly as in the original RED paper
+        double pb = RED_MAX_PROBABILITY * (averageSize - minTh) / (maxTh - minTh);
+        double pa = pb / Math.max(1e-9, 1 - sinceLastDrop * pb);
+        if (pa >= 1 || nextDouble() < pa) {
+            sinceLastDrop = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean drop(int sizeBytes) {
+        dropped++;
+        droppedBytes += sizeBytes;
+        return false;
+    }
+
+    private double nextDouble() {
+        // xorshift64*, no allocation and the state can be checkpointed
+        randomState ^= randomState >>> 12;
+        randomState ^= randomState << 25;
+        randomState ^= randomState >>> 27;
+        return ((randomState * 0x2545F4914F6CDD1DL) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Independent copy including queued packets, counters and RED state.
+     */
+    public LinkQueue copy() {
+        LinkQueue copy = new LinkQueue(discipline, capacity, randomState);
+        for (int cls = 0; cls < ids.length; cls++) {
+            System.arraycopy(ids[cls], 0, copy.ids[cls], 0, capacity);
+            System.arraycopy(sizes[cls], 0, copy.sizes[cls], 0, capacity);
+            System.arraycopy(times[cls], 0, copy.times[cls], 0, capacity);
+        }
+        System.arraycopy(heads, 0, copy.heads, 0, heads.length);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.copyStateFrom(this);
+        return copy;
+    }
+
+    private void copyStateFrom(LinkQueue other) {
+        size = other.size;
+        bytes = other.bytes;
+        averageSize = other.averageSize;
+        sinceLastDrop = other.sinceLastDrop;
+        enqueued = other.enqueued;
+        dequeued = other.dequeued;
+        dropped = other.dropped;
+        droppedBytes = other.droppedBytes;
+    }
+
+    /**
+     * Writes the queue in a compact binary form; only queued entries are stored.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(discipline.ordinal());
+        out.writeInt(capacity);
+        out.writeLong(randomState);
+        out.writeDouble(averageSize);
+        out.writeInt(sinceLastDrop);
+        out.writeLong(enqueued);
+        out.writeLong(dequeued);
+        out.writeLong(dropped);
+        out.writeLong(droppedBytes);
+        for (int cls = 0; cls < ids.length; cls++) {
+            out.writeInt(counts[cls]);
+            for (int i = 0; i < counts[cls]; i++) {
+                int slot = (heads[cls] + i) % capacity;
+                out.writeLong(ids[cls][slot]);
+                out.writeInt(sizes[cls][slot]);
+                out.writeLong(times[cls][slot]);
+            }
+        }
+    }
+
+    public static LinkQueue readFrom(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= QueueDiscipline.values().length) {
+            throw new IOException("Corrupt queue: unknown discipline " + ordinal);
+        }
+        QueueDiscipline discipline = QueueDiscipline.values()[ordinal];
+        int capacity = in.readInt();
+        if (capacity <= 0) throw new IOException("Corrupt queue: capacity " + capacity);
+        LinkQueue queue = new LinkQueue(discipline, capacity, in.readLong());
+        queue.averageSize = in.readDouble();
+        queue.sinceLastDrop = in.readInt();
+        queue.enqueued = in.readLong();
+        queue.dequeued = in.readLong();
+        queue.dropped = in.readLong();
+        queue.droppedBytes = in.readLong();
+        for (int cls = 0; cls < queue.ids.length; cls++) {
+            int count = in.readInt();
+            if (count < 0 || count > capacity) {
+                throw new IOException("Corrupt queue: " + count + " entries in a queue of " + capacity);
+            }
+            for (int i = 0; i < count; i++) {
+                queue.ids[cls][i] = in.readLong();
+                queue.sizes[cls][i] = in.readInt();
+                queue.times[cls][i] = in.readLong();
+                queue.bytes += queue.sizes[cls][i];
+            }
+            queue.counts[cls] = count;
+            queue.size += count;
+        }
+        return queue;
+    }
+
+    public QueueDiscipline getDiscipline() { return discipline; }
+    public int getCapacity() { return capacity; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public long getQueuedBytes() { return bytes; }
+
+    public long getEnqueuedCount() { return enqueued; }
+    public long getDequeuedCount() { return dequeued; }
+    public long getDroppedCount() { return dropped; }
+    public long getDroppedBytes() { return droppedBytes; }
+
+    public long getLastId() { return lastId; }
+    public int getLastSize() { return lastSize; }
+    public int getLastPriority() { return lastPriority; }
+    public long getLastEnqueueTime() { return lastEnqueueTime; }
+}
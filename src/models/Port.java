@@ -0,0 +1,170 @@
+package models;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * A single switch port: its speed, VLAN membership and attached device.
+ * Access ports carry one untagged VLAN, trunk ports carry a set of VLANs.
+ */
+public class Port implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int MIN_VLAN = 1;
+    public static final int MAX_VLAN = 4094;
+    public static final int DEFAULT_VLAN = 1;
+    public static final int DEFAULT_SPEED_MBPS = 1000;
+
+    public enum Mode { ACCESS, TRUNK }
+
+    private final int index;
+    private int speedMbps = DEFAULT_SPEED_MBPS;
+    private Mode mode = Mode.ACCESS;
+    private int accessVlan = DEFAULT_VLAN;
+    private BitSet trunkVlans = allVlans();
+    private Device device;
+    // VLANs actually carried, derived from mode; cached for bitset queries
+    private transient BitSet vlans;
+
+    public Port(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() { return index; }
+    public int getSpeedMbps() { return speedMbps; }
+    public Mode getMode() { return mode; }
+    public int getAccessVlan() { return accessVlan; }
+    public Device getDevice() { return device; }
+    public boolean isFree() { return device == null; }
+
+    public void setSpeedMbps(int speedMbps) {
+        if (speedMbps <= 0) throw new IllegalArgumentException("Port speed must be positive");
+        this.speedMbps = speedMbps;
+    }
+
+    public void setAccess(int vlan) {
+        checkVlan(vlan);
+        this.mode = Mode.ACCESS;
+        this.accessVlan = vlan;
+        this.vlans = null;
+    }
+
+    public void setTrunk(BitSet allowedVlans) {
+        BitSet allowed = (BitSet) allowedVlans.clone();
+        checkVlans(allowed);
+        this.mode = Mode.TRUNK;
+        this.trunkVlans = allowed;
+        this.vlans = null;
+    }
+
+    /**
+     * Sets speed and membership together, changing nothing if either is
+     * invalid: a trunk carrying {@code trunkVlans}, or an access port on
+     * {@code accessVlan} if that is null.
+     */
+    public void configure(int speedMbps, int accessVlan, BitSet trunkVlans) {
+        if (speedMbps <= 0) throw new IllegalArgumentException("Port speed must be positive");
+        if (trunkVlans != null) {
+            setTrunk(trunkVlans);
+        } else {
+            setAccess(accessVlan);
+        }
+        this.speedMbps = speedMbps;
+    }
+
+    /**
+     * VLANs carried by this port. The returned set must not be modified.
+     */
+    public BitSet getVlans() {
+        BitSet result = vlans;
+        if (result == null) {
+            if (mode == Mode.TRUNK) {
+                result = trunkVlans;
+            } else {
+                result = new BitSet(accessVlan + 1);
+                result.set(accessVlan);
+            }
+            vlans = result;
+        }
+        return result;
+    }
+
+    public boolean carries(int vlan) {
+        return mode == Mode.TRUNK ? trunkVlans.get(vlan) : accessVlan == vlan;
+    }
+
+    void attach(Device device) {
+        this.device = device;
+    }
+
+    void detach() {
+        this.device = null;
+    }
+
+    public static BitSet allVlans() {
+        BitSet all = new BitSet(MAX_VLAN + 1);
+        all.set(MIN_VLAN, MAX_VLAN + 1);
+        return all;
+    }
+
+    /**
+     * Parses a VLAN list such as "10,20-29". "all" carries every VLAN.
+     */
+    public static BitSet parseVlans(String text) {
+        if (text.trim().equalsIgnoreCase("all")) return allVlans();
+        BitSet result = new BitSet();
+        for (String part : text.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int dash = part.indexOf('-');
+            try {
+                int from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash).trim());
+                int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+                checkVlan(from);
+                checkVlan(to);
+                if (to < from) throw new IllegalArgumentException("Invalid VLAN range: " + part);
+                result.set(from, to + 1);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid VLAN: " + part);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Formats a VLAN set in the form read by {@link #parseVlans}.
+     */
+    public static String formatVlans(BitSet vlans) {
+        if (vlans.equals(allVlans())) return "all";
+        StringBuilder text = new StringBuilder();
+        for (int from = vlans.nextSetBit(0); from >= 0; from = vlans.nextSetBit(from + 1)) {
+            int to = vlans.nextClearBit(from) - 1;
+            if (text.length() > 0) text.append(',');
+            text.append(from);
+            if (to > from) text.append('-').append(to);
+            from = to;
+        }
+        return text.toString();
+    }
+
+    private static void checkVlans(BitSet vlans) {
+        if (vlans.nextSetBit(0) >= 0 && (vlans.nextSetBit(0) < MIN_VLAN || vlans.length() - 1 > MAX_VLAN)) {
+            throw new IllegalArgumentException("VLAN ids must be between " + MIN_VLAN + " and " + MAX_VLAN);
+        }
+    }
+
+    private static void checkVlan(int vlan) {
+        if (vlan < MIN_VLAN || vlan > MAX_VLAN) {
+            throw new IllegalArgumentException("VLAN id must be between " + MIN_VLAN + " and " + MAX_VLAN);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String membership = mode == Mode.ACCESS ? "access vlan " + accessVlan
+            : "trunk " + (trunkVlans.cardinality() == MAX_VLAN ? "all vlans"
+                : trunkVlans.cardinality() + " vlans");
+        return "Port " + (index + 1) + " (" + speedMbps + " Mbps, " + membership + ")"
+            + (device != null ? " -> " + device.getName() : "");
+    }
+}
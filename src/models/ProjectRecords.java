@@ -0,0 +1,175 @@
+package models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact, deterministic binary records of devices and connections. Equal
+ * configurations always give equal bytes, so records can be hashed and
+ * compared directly. Identity, position and attachments are not part of a
+ * device record: the caller stores the id and position next to it, and a
+ * connection record holds the port or interface used at each end.
+ */
+public final class ProjectRecords {
+
+    private ProjectRecords() {
+    }
+
+    public static void writeDevice(DataOutput out, Device device) throws IOException {
+        byte type = DeviceStore.typeOf(device);
+        if (type == DeviceStore.TYPE_OTHER) {
+            throw new IllegalArgumentException("Cannot record device type " + device.getClass().getSimpleName());
+        }
+        out.writeByte(type);
+        out.writeUTF(device.getName());
+        out.writeBoolean(device.getIpAddress() != null);
+        if (device.getIpAddress() != null) out.writeUTF(device.getIpAddress());
+        if (device instanceof Switch) {
+            Switch sw = (Switch) device;
+            out.writeInt(sw.getPortCount());
+            for (Port port : sw.getPorts()) {
+                out.writeInt(port.getSpeedMbps());
+                out.writeBoolean(port.getMode() == Port.Mode.TRUNK);
+                if (port.getMode() == Port.Mode.TRUNK) {
+                    long[] words = port.getVlans().toLongArray();
+                    out.writeShort(words.length);
+                    for (long word : words) out.writeLong(word);
+                } else {
+                    out.writeShort(port.getAccessVlan());
+                }
+            }
+        } else if (device instanceof Router) {
+            Router router = (Router) device;
+            out.writeInt(router.getMaxConnections());
+            for (RouterInterface iface : router.getInterfaces()) {
+                out.writeInt(iface.getAddress());
+                // 0 has always meant unconfigured, so a configured /0 is written as -1
+                int length = iface.getPrefixLength();
+                out.writeByte(!iface.isConfigured() ? 0 : length == 0 ? -1 : length);
+            }
+            List<ForwardingTable.Route> routes = router.getStaticRoutes();
+            routes.sort(Comparator.comparingLong(ForwardingTable.Route::key));
+            out.writeInt(routes.size());
+            for (ForwardingTable.Route route : routes) {
+                out.writeInt(route.getPrefix());
+                out.writeByte(route.getLength());
+                out.writeInt(route.getGateway());
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a device, unconnected, with the given id.
+     */
+    public static Device readDevice(int id, DataInput in) throws IOException {
+        byte type = in.readByte();
+        String name = in.readUTF();
+        String ip = in.readBoolean() ? in.readUTF() : null;
+        Device device;
+        switch (type) {
+            case DeviceStore.TYPE_COMPUTER:
+                device = new Computer(id, name, ip);
+                break;
+            case DeviceStore.TYPE_SWITCH:
+                Switch sw = new Switch(id, name, ip, in.readInt());
+                for (Port port : sw.getPorts()) {
+                    port.setSpeedMbps(in.readInt());
+                    if (in.readBoolean()) {
+                        long[] words = new long[in.readUnsignedShort()];
+                        for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+                        port.setTrunk(BitSet.valueOf(words));
+                    } else {
+                        port.setAccess(in.readUnsignedShort());
+                    }
+                }
+                device = sw;
+                break;
+            case DeviceStore.TYPE_ROUTER:
+                Router router = new Router(id, name, ip, in.readInt());
+                for (RouterInterface iface : router.getInterfaces()) {
+                    int address = in.readInt();
+                    int length = in.readByte();
+                    if (length != 0) {
+                        router.configureInterface(iface.getIndex(),
+                            IpAddress.format(address) + "/" + Math.max(length, 0));
+                    }
+                }
+                int routes = in.readInt();
+                for (int i = 0; i < routes; i++) {
+                    int prefix = in.readInt();
+                    int length = in.readByte();
+                    router.addStaticRoute(IpAddress.format(prefix) + "/" + length, IpAddress.format(in.readInt()));
+                }
+                device = router;
+                break;
+            default:
+                throw new IOException("Unknown device type " + type);
+        }
+        return device;
+    }
+
+    /**
+     * Name of the device in a record written by {@link #writeDevice}.
+     */
+    public static String readDeviceName(DataInput in) throws IOException {
+        in.readByte();
+        return in.readUTF();
+    }
+
+    public static void writeConnection(DataOutput out, Connection connection) throws IOException {
+        out.writeShort(attachment(connection.getDevice1(), connection.getDevice2()));
+        out.writeShort(attachment(connection.getDevice2(), connection.getDevice1()));
+        out.writeLong(connection.getBandwidthBps());
+        out.writeLong(connection.getPropagationDelayNanos());
+        out.writeDouble(connection.getLossRate());
+        out.writeInt(connection.getMtu());
+        out.writeByte(connection.getQueueDiscipline().ordinal());
+        out.writeInt(connection.getQueueCapacity());
+    }
+
+    /**
+     * Connects the two devices through the recorded ports or interfaces and
+     * returns the connection with its recorded link parameters.
+     */
+    public static Connection readConnection(Device device1, Device device2, DataInput in) throws IOException {
+        int at1 = in.readShort();
+        int at2 = in.readShort();
+        attach(device1, device2, at1);
+        attach(device2, device1, at2);
+        Connection connection = new Connection(device1, device2);
+        connection.setBandwidthBps(in.readLong());
+        connection.setPropagationDelayNanos(in.readLong());
+        connection.setLossRate(in.readDouble());
+        connection.setMtu(in.readInt());
+        QueueDiscipline discipline = QueueDiscipline.values()[in.readByte()];
+        connection.setQueue(discipline, in.readInt());
+        return connection;
+    }
+
+    // Port or interface of the device that leads to the other end, -1 for computers
+    private static int attachment(Device device, Device other) {
+        if (device instanceof Switch) {
+            Port port = ((Switch) device).getPortOf(other);
+            return port != null ? port.getIndex() : -1;
+        }
+        if (device instanceof Router) {
+            RouterInterface iface = ((Router) device).getInterfaceTo(other);
+            return iface != null ? iface.getIndex() : -1;
+        }
+        return -1;
+    }
+
+    private static void attach(Device device, Device other, int index) {
+        if (index >= 0 && device instanceof Switch) {
+            ((Switch) device).connectTo(other, index);
+        } else if (index >= 0 && device instanceof Router) {
+            ((Router) device).connectTo(other, index);
+        } else {
+            device.connectTo(other);
+        }
+    }
+}
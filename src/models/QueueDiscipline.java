@@ -0,0 +1,13 @@
+package models;
+
+/**
+ * How a link output queue decides what to drop and what to send next.
+ */
+public enum QueueDiscipline {
+    /** FIFO, arrivals are dropped when the queue is full. */
+    DROP_TAIL,
+    /** FIFO with Random Early Detection drops based on the average queue length. */
+    RED,
+    /** Strict priority between classes, each class is a drop-tail FIFO of the full capacity. */
+    PRIORITY
+}
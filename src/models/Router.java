@@ -0,0 +1,276 @@
+// Router.java
+package models;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A layer 3 device with several routed interfaces and a forwarding table.
+ * Connected routes are derived from the interface addresses; static routes
+ * are added explicitly or imported from a route file.
+ */
+public class Router extends Device implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_INTERFACE_COUNT = 4;
+
+    private final RouterInterface[] interfaces;
+    private final ArrayList<ForwardingTable.Route> staticRoutes = new ArrayList<>();
+    private transient ForwardingTable forwardingTable;
+
+    public Router(String name, String ipAddress) {
+        this(name, ipAddress, DEFAULT_INTERFACE_COUNT);
+    }
+
+    public Router(String name, String ipAddress, int interfaceCount) {
+        this(newId(), name, ipAddress, interfaceCount);
+    }
+
+    Router(int id, String name, String ipAddress, int interfaceCount) {
+        super(id, name, ipAddress);
+        if (interfaceCount <= 0) {
+            throw new IllegalArgumentException("A router needs at least one interface");
+        }
+        this.interfaces = new RouterInterface[interfaceCount];
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces[i] = new RouterInterface(i);
+        }
+        this.forwardingTable = new ForwardingTable();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // The compiled table is not saved, rebuild it from the configuration
+        forwardingTable = new ForwardingTable();
+        for (RouterInterface iface : interfaces) {
+            addConnectedRoute(iface);
+        }
+        staticRoutes.forEach(forwardingTable::add);
+    }
+
+    @Override
+    public boolean canConnectTo(Device other) {
+        return getConnectionCount() < interfaces.length;
+    }
+
+    @Override
+    public void connectTo(Device other) throws IllegalStateException {
+        if (!canConnectTo(other)) {
+            throw new IllegalStateException("Router has no free interfaces");
+        }
+        for (RouterInterface iface : interfaces) {
+            if (iface.isFree()) {
+                iface.attach(other);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Connects a device to a specific interface (zero based).
+     */
+    public void connectTo(Device other, int interfaceIndex) throws IllegalStateException {
+        RouterInterface iface = getInterface(interfaceIndex);
+        if (!iface.isFree()) {
+            throw new IllegalStateException("Interface " + iface.getName() + " is already in use");
+        }
+        iface.attach(other);
+    }
+
+    @Override
+    public void disconnectFrom(Device other) {
+        RouterInterface iface = getInterfaceTo(other);
+        if (iface != null) iface.detach();
+    }
+
+    @Override
+    public boolean isConnectedTo(Device other) {
+        return getInterfaceTo(other) != null;
+    }
+
+    @Override
+    public int getConnectionCount() {
+        int count = 0;
+        for (RouterInterface iface : interfaces) {
+            if (!iface.isFree()) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return interfaces.length;
+    }
+
+    public List<Device> getConnectedDevices() {
+        List<Device> connected = new ArrayList<>();
+        for (RouterInterface iface : interfaces) {
+            if (!iface.isFree()) connected.add(iface.getDevice());
+        }
+        return connected;
+    }
+
+    public List<RouterInterface> getInterfaces() {
+        return List.of(interfaces);
+    }
+
+    public RouterInterface getInterface(int index) {
+        if (index < 0 || index >= interfaces.length) {
+            throw new IllegalArgumentException("No interface " + index + " on " + getName());
+        }
+        return interfaces[index];
+    }
+
+    /**
+     * Interface whose link leads to the given device, or null.
+     */
+    public RouterInterface getInterfaceTo(Device device) {
+        for (RouterInterface iface : interfaces) {
+            if (device.equals(iface.getDevice())) return iface;
+        }
+        return null;
+    }
+
+    /**
+     * Sets an interface address in CIDR form, e.g. "10.0.1.1/24", and
+     * replaces its connected route. Static routes are resolved again, and
+     * those whose gateway is no longer on a connected subnet are removed.
+     */
+    public synchronized void configureInterface(int index, String cidr) {
+        int slash = cidr.indexOf('/');
+        if (slash < 0) throw new IllegalArgumentException("Expected address/prefix: " + cidr);
+        int address = IpAddress.parse(cidr.substring(0, slash).trim());
+        int length = parsePrefixLength(cidr.substring(slash + 1).trim());
+        RouterInterface iface = getInterface(index);
+        forwardingTable.removeIf(r -> r.getType() == ForwardingTable.Route.Type.CONNECTED
+            && r.getInterfaceIndex() == index);
+        iface.configure(address, length);
+        addConnectedRoute(iface);
+        for (ForwardingTable.Route route : new ArrayList<>(staticRoutes)) {
+            int resolved = connectedInterfaceFor(route.getGateway());
+            if (resolved == route.getInterfaceIndex()) continue;
+            staticRoutes.remove(route);
+            forwardingTable.remove(route.getPrefix(), route.getLength(), ForwardingTable.Route.Type.STATIC);
+            if (resolved >= 0) {
+                putStaticRoute(new ForwardingTable.Route(route.getPrefix(), route.getLength(),
+                    route.getGateway(), resolved, ForwardingTable.Route.Type.STATIC));
+            }
+        }
+    }
+
+    /**
+     * Adds a static route. The outgoing interface is resolved from the
+     * connected routes, so the gateway must be on a configured subnet.
+     */
+    public synchronized void addStaticRoute(String cidr, String gateway) {
+        putStaticRoute(staticRoute(cidr, gateway));
+    }
+
+    public synchronized boolean removeStaticRoute(String cidr) {
+        int slash = cidr.indexOf('/');
+        if (slash < 0) throw new IllegalArgumentException("Expected prefix/length: " + cidr);
+        int length = parsePrefixLength(cidr.substring(slash + 1).trim());
+        int prefix = IpAddress.parse(cidr.substring(0, slash).trim()) & IpAddress.mask(length);
+        staticRoutes.removeIf(r -> r.getPrefix() == prefix && r.getLength() == length);
+        return forwardingTable.remove(prefix, length, ForwardingTable.Route.Type.STATIC);
+    }
+
+    /**
+     * Imports static routes, one per line as "prefix/length gateway" or
+     * "prefix/length via gateway". Blank lines and lines starting with '#'
+     * are ignored. Every line is checked before any route is added, so a
+     * bad file changes nothing.
+     * @return the number of routes imported
+     */
+    public synchronized int importStaticRoutes(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        List<ForwardingTable.Route> imported = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            String gateway = parts.length == 3 && parts[1].equalsIgnoreCase("via") ? parts[2]
+                : parts.length == 2 ? parts[1] : null;
+            if (gateway == null) {
+                throw new IOException("Line " + lineNumber + ": expected 'prefix/length [via] gateway'");
+            }
+            try {
+                imported.add(staticRoute(parts[0], gateway));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        imported.forEach(this::putStaticRoute);
+        return imported.size();
+    }
+
+    public synchronized List<ForwardingTable.Route> getStaticRoutes() {
+        return new ArrayList<>(staticRoutes);
+    }
+
+    public ForwardingTable getForwardingTable() {
+        return forwardingTable;
+    }
+
+    /**
+     * Longest-prefix match for a destination, or null if unroutable.
+     */
+    public ForwardingTable.Route route(int destination) {
+        return forwardingTable.lookup(destination);
+    }
+
+    // Parses and resolves a static route without adding it
+    private ForwardingTable.Route staticRoute(String cidr, String gateway) {
+        int slash = cidr.indexOf('/');
+        if (slash < 0) throw new IllegalArgumentException("Expected prefix/length: " + cidr);
+        int prefix = IpAddress.parse(cidr.substring(0, slash).trim());
+        int length = parsePrefixLength(cidr.substring(slash + 1).trim());
+        int nextHop = IpAddress.parse(gateway.trim());
+        int iface = connectedInterfaceFor(nextHop);
+        if (iface < 0) {
+            throw new IllegalArgumentException("Gateway " + gateway + " is not on a connected subnet");
+        }
+        return new ForwardingTable.Route(prefix, length, nextHop, iface, ForwardingTable.Route.Type.STATIC);
+    }
+
+    private void putStaticRoute(ForwardingTable.Route route) {
+        staticRoutes.removeIf(r -> r.getPrefix() == route.getPrefix() && r.getLength() == route.getLength());
+        staticRoutes.add(route);
+        forwardingTable.add(route);
+    }
+
+    private void addConnectedRoute(RouterInterface iface) {
+        if (iface.isConfigured()) {
+            forwardingTable.add(new ForwardingTable.Route(iface.getNetwork(), iface.getPrefixLength(),
+                0, iface.getIndex(), ForwardingTable.Route.Type.CONNECTED));
+        }
+    }
+
+    private int connectedInterfaceFor(int address) {
+        for (RouterInterface iface : interfaces) {
+            if (iface.isConfigured()
+                    && (address & IpAddress.mask(iface.getPrefixLength())) == iface.getNetwork()) {
+                return iface.getIndex();
+            }
+        }
+        return -1;
+    }
+
+    private static int parsePrefixLength(String text) {
+        try {
+            int length = Integer.parseInt(text);
+            IpAddress.mask(length);
+            return length;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid prefix length: " + text);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,67 @@
+package models;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * A routed interface on a {@link Router}: an address, a prefix length and
+ * the device on the other end of its link.
+ */
+public class RouterInterface implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private int address;
+    private int prefixLength;
+    // Separate from the length so that a /0 interface counts as configured
+    private boolean configured;
+    private Device device;
+
+    public RouterInterface(int index) {
+        this.index = index;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // Saved before the flag existed, when /0 meant unconfigured
+        if (prefixLength > 0) configured = true;
+    }
+
+    public int getIndex() { return index; }
+    public String getName() { return "eth" + index; }
+    public int getAddress() { return address; }
+    public int getPrefixLength() { return prefixLength; }
+    public Device getDevice() { return device; }
+    public boolean isFree() { return device == null; }
+    public boolean isConfigured() { return configured; }
+
+    /**
+     * Network address of the subnet this interface is on.
+     */
+    public int getNetwork() {
+        return address & IpAddress.mask(prefixLength);
+    }
+
+    void configure(int address, int prefixLength) {
+        IpAddress.mask(prefixLength);  // Validates the length
+        this.address = address;
+        this.prefixLength = prefixLength;
+        this.configured = true;
+    }
+
+    void attach(Device device) {
+        this.device = device;
+    }
+
+    void detach() {
+        this.device = null;
+    }
+
+    @Override
+    public String toString() {
+        return getName()
+            + (isConfigured() ? " " + IpAddress.format(address) + "/" + prefixLength : " unconfigured")
+            + (device != null ? " -> " + device.getName() : "");
+    }
+}
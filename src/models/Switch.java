@@ -1,22 +1,60 @@
 // Switch.java
 package models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class Switch extends Device implements Serializable{
+    private static final long serialVersionUID = 1201944515731960396L;
+    public static final int DEFAULT_PORT_COUNT = 8;
+
+    // Attached devices in connection order; kept in step with the ports
     private final List<Device> connectedDevices;
-    private static final int MAX_PORTS = 8;
+    private Port[] ports;
 
     public Switch(String name, String ipAddress) {
-        super(name, ipAddress);
+        this(name, ipAddress, DEFAULT_PORT_COUNT);
+    }
+
+    public Switch(String name, String ipAddress, int portCount) {
+        this(newId(), name, ipAddress, portCount);
+    }
+
+    Switch(int id, String name, String ipAddress, int portCount) {
+        super(id, name, ipAddress);
+        if (portCount <= 0) {
+            throw new IllegalArgumentException("A switch needs at least one port");
+        }
         this.connectedDevices = new ArrayList<>();
+        this.ports = createPorts(portCount);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (ports == null) {
+            // Saved before switches had ports: attach devices to the first ports in order
+            ports = createPorts(Math.max(DEFAULT_PORT_COUNT, connectedDevices.size()));
+            for (int i = 0; i < connectedDevices.size(); i++) {
+                ports[i].attach(connectedDevices.get(i));
+            }
+        }
+    }
+
+    private static Port[] createPorts(int count) {
+        Port[] created = new Port[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = new Port(i);
+        }
+        return created;
     }
 
     @Override
     public boolean canConnectTo(Device other) {
-        return connectedDevices.size() < MAX_PORTS;
+        return connectedDevices.size() < ports.length;
     }
 
     @Override
@@ -24,12 +62,32 @@ public class Switch extends Device implements Serializable{
         if (!canConnectTo(other)) {
             throw new IllegalStateException("Switch has no available ports");
         }
+        for (Port port : ports) {
+            if (port.isFree()) {
+                connectTo(other, port.getIndex());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Connects a device to a specific port (zero based).
+     */
+    public void connectTo(Device other, int portIndex) throws IllegalStateException {
+        Port port = getPort(portIndex);
+        if (!port.isFree()) {
+            throw new IllegalStateException("Port " + (portIndex + 1) + " is already in use");
+        }
+        port.attach(other);
         connectedDevices.add(other);
     }
 
     @Override
     public void disconnectFrom(Device other) {
-        connectedDevices.remove(other);
+        if (connectedDevices.remove(other)) {
+            Port port = getPortOf(other);
+            if (port != null) port.detach();
+        }
     }
 
     
@@ -47,7 +105,69 @@ public class Switch extends Device implements Serializable{
         return new ArrayList<>(connectedDevices);
     }
 
+    @Override
+    public int getConnectionCount() {
+        return connectedDevices.size();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return ports.length;
+    }
+
     public int getAvailablePorts() {
-        return MAX_PORTS - connectedDevices.size();
+        return ports.length - connectedDevices.size();
+    }
+
+    public int getPortCount() {
+        return ports.length;
+    }
+
+    /**
+     * Changes the number of ports. Ports that are in use cannot be removed.
+     */
+    public void setPortCount(int portCount) {
+        if (portCount <= 0) {
+            throw new IllegalArgumentException("A switch needs at least one port");
+        }
+        for (int i = portCount; i < ports.length; i++) {
+            if (!ports[i].isFree()) {
+                throw new IllegalStateException("Port " + (i + 1) + " is in use");
+            }
+        }
+        Port[] resized = new Port[portCount];
+        for (int i = 0; i < portCount; i++) {
+            resized[i] = i < ports.length ? ports[i] : new Port(i);
+        }
+        ports = resized;
+    }
+
+    public Port getPort(int portIndex) {
+        if (portIndex < 0 || portIndex >= ports.length) {
+            throw new IllegalArgumentException("No port " + (portIndex + 1) + " on " + getName());
+        }
+        return ports[portIndex];
+    }
+
+    public List<Port> getPorts() {
+        return List.of(ports);
+    }
+
+    /**
+     * Port the given device is attached to, or null if it is not connected.
+     */
+    public Port getPortOf(Device device) {
+        for (Port port : ports) {
+            if (device.equals(port.getDevice())) return port;
+        }
+        return null;
+    }
+
+    /**
+     * VLANs carried towards the given neighbour, or an empty set if not connected.
+     */
+    public BitSet getVlansTowards(Device device) {
+        Port port = getPortOf(device);
+        return port != null ? port.getVlans() : new BitSet();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package rules;
+
+import controllers.NetworkChange;
+import models.Device;
+import java.util.*;
+
+/**
+ * Two or more devices share an IP address. Devices without an address or
+ * with 0.0.0.0 are left out. Each change only counts the devices on its
+ * address; the message and device list are built when violations are read.
+ */
+public class DuplicateIpRule implements TopologyRule {
+    private static final int NAMES_SHOWN = 5;
+    private static final String UNSET_IP = "0.0.0.0";
+
+    private final Map<String, Set<Device>> devicesByIp = new HashMap<>();
+    // Address each device was indexed under, updates only carry the new one
+    private final Map<Device, String> ipOf = new HashMap<>();
+
+    @Override
+    public String getName() {
+        return "duplicate-ip";
+    }
+
+    @Override
+    public void apply(NetworkChange change, RuleContext context) {
+        Device device = change.getDevice();
+        switch (change.getKind()) {
+            case DEVICE_ADDED:
+                add(device, context);
+                break;
+            case DEVICE_REMOVED:
+                remove(device, context);
+                break;
+            case DEVICE_UPDATED:
+                // Re-checked even when the address is unchanged, the names may be
+                remove(device, context);
+                add(device, context);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void clear() {
+        devicesByIp.clear();
+        ipOf.clear();
+    }
+
+    private void add(Device device, RuleContext context) {
+        String ip = device.getIpAddress();
+        if (ip == null || ip.isBlank() || ip.equals(UNSET_IP)) return;
+        ipOf.put(device, ip);
+        devicesByIp.computeIfAbsent(ip, k -> new LinkedHashSet<>()).add(device);
+        check(ip, context);
+    }
+
+    private void remove(Device device, RuleContext context) {
+        String ip = ipOf.remove(device);
+        if (ip == null) return;
+        Set<Device> sharing = devicesByIp.get(ip);
+        sharing.remove(device);
+        if (sharing.isEmpty()) devicesByIp.remove(ip);
+        check(ip, context);
+    }
+
+    private void check(String ip, RuleContext context) {
+        Set<Device> sharing = devicesByIp.get(ip);
+        if (sharing == null || sharing.size() < 2) {
+            context.resolve(ip);
+            return;
+        }
+        context.reportLazily(ip, () -> message(ip, sharing), () -> List.copyOf(sharing));
+    }
+
+    private static String message(String ip, Set<Device> sharing) {
+        StringJoiner names = new StringJoiner(", ");
+        int shown = 0;
+        for (Device device : sharing) {
+            if (shown++ == NAMES_SHOWN) {
+                names.add("and " + (sharing.size() - NAMES_SHOWN) + " more");
+                break;
+            }
+            names.add(device.getName());
+        }
+        return "IP " + ip + " used by " + names;
+    }
+}
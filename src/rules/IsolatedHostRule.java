@@ -0,0 +1,39 @@
+package rules;
+
+import controllers.NetworkChange;
+import models.Computer;
+import models.Connection;
+import models.Device;
+
+/**
+ * A computer with no link at all.
+ */
+public class IsolatedHostRule implements TopologyRule {
+
+    @Override
+    public String getName() {
+        return "isolated-host";
+    }
+
+    @Override
+    public void apply(NetworkChange change, RuleContext context) {
+        switch (change.getKind()) {
+            case CONNECTED:
+            case DISCONNECTED:
+                Connection connection = change.getConnection();
+                check(connection.getDevice1(), context);
+                check(connection.getDevice2(), context);
+                break;
+            default:
+                check(change.getDevice(), context);
+        }
+    }
+
+    private static void check(Device device, RuleContext context) {
+        if (device instanceof Computer && context.contains(device) && context.connectionsOf(device).isEmpty()) {
+            context.report(device, device.getName() + " is not connected to anything", device);
+        } else {
+            context.resolve(device);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package rules;
+
+import controllers.NetworkChange;
+import models.Connection;
+import models.Device;
+
+/**
+ * A device has more connections than ports or interfaces.
+ */
+public class PortLimitRule implements TopologyRule {
+
+    @Override
+    public String getName() {
+        return "port-limit";
+    }
+
+    @Override
+    public void apply(NetworkChange change, RuleContext context) {
+        switch (change.getKind()) {
+            case CONNECTED:
+            case DISCONNECTED:
+                Connection connection = change.getConnection();
+                check(connection.getDevice1(), context);
+                check(connection.getDevice2(), context);
+                break;
+            case DEVICE_REMOVED:
+                context.resolve(change.getDevice());
+                break;
+            default:
+                // Added, or its port count changed
+                check(change.getDevice(), context);
+        }
+    }
+
+    private static void check(Device device, RuleContext context) {
+        int used = context.connectionsOf(device).size();
+        if (context.contains(device) && used > device.getMaxConnections()) {
+            context.report(device, String.format("%s has %d connections but only %d port(s)",
+                device.getName(), used, device.getMaxConnections()), device);
+        } else {
+            context.resolve(device);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package rules;
+
+import models.Connection;
+import models.Device;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * A rule's view of the network tracked by its engine, and the place it
+ * records its violations. Each rule has its own context, so keys only have
+ * to be unique within one rule.
+ */
+public final class RuleContext {
+    private final RuleEngine engine;
+    private final String rule;
+    private final Map<Object, Supplier<Violation>> violations = new LinkedHashMap<>();
+
+    RuleContext(RuleEngine engine, String rule) {
+        this.engine = engine;
+        this.rule = rule;
+    }
+
+    public boolean contains(Device device) {
+        return engine.links(device) != null;
+    }
+
+    /**
+     * Connections of a device in the network, empty if it is not part of it.
+     */
+    public Collection<Connection> connectionsOf(Device device) {
+        Map<Device, Connection> links = engine.links(device);
+        return links != null ? Collections.unmodifiableCollection(links.values()) : Collections.emptyList();
+    }
+
+    /**
+     * Records a violation, replacing any earlier one with the same key.
+     */
+    public void report(Object key, String message, Device... devices) {
+        Violation violation = new Violation(rule, message, List.of(devices));
+        violations.put(key, () -> violation);
+        engine.violationsChanged();
+    }
+
+    /**
+     * Records a violation that is only built when the violations are read,
+     * for rules where building it costs more than the change itself. The
+     * suppliers run under the engine's lock, so they may read rule state.
+     */
+    public void reportLazily(Object key, Supplier<String> message, Supplier<List<Device>> devices) {
+        violations.put(key, new LazyViolation(message, devices));
+        engine.violationsChanged();
+    }
+
+    /**
+     * Removes the violation with the given key, if there is one.
+     */
+    public void resolve(Object key) {
+        if (violations.remove(key) != null) engine.violationsChanged();
+    }
+
+    List<Violation> violations() {
+        List<Violation> result = new ArrayList<>(violations.size());
+        for (Supplier<Violation> violation : violations.values()) result.add(violation.get());
+        return result;
+    }
+
+    int size() {
+        return violations.size();
+    }
+
+    void clear() {
+        if (violations.isEmpty()) return;
+        violations.clear();
+        engine.violationsChanged();
+    }
+
+    // Built on first read and kept until the rule reports the key again
+    private final class LazyViolation implements Supplier<Violation> {
+        private Supplier<String> message;
+        private Supplier<List<Device>> devices;
+        private Violation violation;
+
+        LazyViolation(Supplier<String> message, Supplier<List<Device>> devices) {
+            this.message = message;
+            this.devices = devices;
+        }
+
+        @Override
+        public Violation get() {
+            if (violation == null) {
+                violation = new Violation(rule, message.get(), List.copyOf(devices.get()));
+                message = null;
+                devices = null;
+            }
+            return violation;
+        }
+    }
+}
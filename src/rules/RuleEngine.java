@@ -0,0 +1,153 @@
+package rules;
+
+import controllers.NetworkChange;
+import controllers.NetworkController;
+import controllers.NetworkListener;
+import models.Connection;
+import models.Device;
+import java.util.*;
+
+/**
+ * Keeps a live set of rule violations for a network by feeding every change
+ * the controller makes to a list of {@link TopologyRule}s.
+ *
+ * The engine tracks its own copy of the device graph from the changes, so
+ * rules never lock or scan the controller. A rule only revisits what a
+ * change touches, so checking costs per change instead of a rescan of the
+ * whole network. Reads are synchronized with the updates and may come from
+ * any thread.
+ */
+public class RuleEngine implements NetworkListener {
+    private static final Map<NetworkController, RuleEngine> SHARED = new WeakHashMap<>();
+
+    private final List<TopologyRule> rules;
+    private final List<RuleContext> contexts = new ArrayList<>();
+    // Device -> its neighbours and the connection to each
+    private final Map<Device, Map<Device, Connection>> links = new HashMap<>();
+    private volatile long version;
+    private long changes;
+    private long applyNanos;
+
+    public RuleEngine(Collection<? extends TopologyRule> rules) {
+        this.rules = new ArrayList<>(rules);
+        for (TopologyRule rule : this.rules) contexts.add(new RuleContext(this, rule.getName()));
+    }
+
+    public static List<TopologyRule> standardRules() {
+        return List.of(new PortLimitRule(), new DuplicateIpRule(), new SubnetMismatchRule(),
+            new SwitchingLoopRule(), new IsolatedHostRule());
+    }
+
+    /**
+     * The engine with the standard rules that follows the given controller,
+     * created and attached on first use.
+     */
+    public static synchronized RuleEngine attachedTo(NetworkController controller) {
+        RuleEngine engine = SHARED.get(controller);
+        if (engine == null) {
+            engine = new RuleEngine(standardRules());
+            controller.addNetworkListener(engine);
+            SHARED.put(controller, engine);
+        }
+        return engine;
+    }
+
+    @Override
+    public synchronized void networkChanged(NetworkChange change) {
+        long start = System.nanoTime();
+        switch (change.getKind()) {
+            case RESET:
+                links.clear();
+                for (int i = 0; i < rules.size(); i++) {
+                    contexts.get(i).clear();
+                    rules.get(i).clear();
+                }
+                for (Device device : change.getDevices()) apply(NetworkChange.deviceAdded(device));
+                for (Connection connection : change.getConnections()) apply(NetworkChange.connected(connection));
+                break;
+            case DEVICE_REMOVED:
+                // The controller disconnects first, but don't rely on it
+                Map<Device, Connection> remaining = links.get(change.getDevice());
+                if (remaining != null) {
+                    for (Connection connection : new ArrayList<>(remaining.values())) {
+                        apply(NetworkChange.disconnected(connection));
+                    }
+                }
+                apply(change);
+                break;
+            default:
+                apply(change);
+        }
+        changes++;
+        applyNanos += System.nanoTime() - start;
+    }
+
+    private void apply(NetworkChange change) {
+        switch (change.getKind()) {
+            case DEVICE_ADDED:
+                links.putIfAbsent(change.getDevice(), new HashMap<>());
+                break;
+            case DEVICE_REMOVED:
+                links.remove(change.getDevice());
+                break;
+            case CONNECTED: {
+                Connection connection = change.getConnection();
+                Device d1 = connection.getDevice1();
+                Device d2 = connection.getDevice2();
+                links.computeIfAbsent(d1, d -> new HashMap<>()).put(d2, connection);
+                links.computeIfAbsent(d2, d -> new HashMap<>()).put(d1, connection);
+                break;
+            }
+            case DISCONNECTED: {
+                Connection connection = change.getConnection();
+                Map<Device, Connection> from1 = links.get(connection.getDevice1());
+                if (from1 != null) from1.remove(connection.getDevice2());
+                Map<Device, Connection> from2 = links.get(connection.getDevice2());
+                if (from2 != null) from2.remove(connection.getDevice1());
+                break;
+            }
+            default:
+                break;
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            rules.get(i).apply(change, contexts.get(i));
+        }
+    }
+
+    /**
+     * Current violations, grouped by rule in rule order.
+     */
+    public synchronized List<Violation> getViolations() {
+        List<Violation> all = new ArrayList<>();
+        for (RuleContext context : contexts) all.addAll(context.violations());
+        return all;
+    }
+
+    public synchronized int getViolationCount() {
+        int count = 0;
+        for (RuleContext context : contexts) count += context.size();
+        return count;
+    }
+
+    /**
+     * Increases whenever a violation is reported or resolved, so pollers
+     * can tell cheaply whether anything changed. Does not lock.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Changes applied so far and the total time spent on them.
+     */
+    public synchronized long getChangeCount() { return changes; }
+    public synchronized long getApplyNanos() { return applyNanos; }
+
+    Map<Device, Connection> links(Device device) {
+        return links.get(device);
+    }
+
+    void violationsChanged() {
+        version++;
+    }
+}
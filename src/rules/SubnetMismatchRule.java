@@ -0,0 +1,70 @@
+package rules;
+
+import controllers.NetworkChange;
+import models.*;
+
+/**
+ * A router interface and the device at the other end of its link are on
+ * different subnets. Switches are layer 2 and are not checked; a computer
+ * is checked by its address, a router by its interface on the link.
+ */
+public class SubnetMismatchRule implements TopologyRule {
+
+    @Override
+    public String getName() {
+        return "subnet-mismatch";
+    }
+
+    @Override
+    public void apply(NetworkChange change, RuleContext context) {
+        switch (change.getKind()) {
+            case CONNECTED:
+                check(change.getConnection(), context);
+                break;
+            case DISCONNECTED:
+                context.resolve(change.getConnection());
+                break;
+            case DEVICE_UPDATED:
+                // An address or interface changed, only this device's links are affected
+                for (Connection connection : context.connectionsOf(change.getDevice())) {
+                    check(connection, context);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void check(Connection connection, RuleContext context) {
+        Device d1 = connection.getDevice1();
+        Device d2 = connection.getDevice2();
+        String problem = mismatch(d1, d2);
+        if (problem == null) problem = mismatch(d2, d1);
+        if (problem != null) {
+            context.report(connection, problem, d1, d2);
+        } else {
+            context.resolve(connection);
+        }
+    }
+
+    // Describes the mismatch if the router's interface towards other does
+    // not contain the other end's address
+    private static String mismatch(Device device, Device other) {
+        if (!(device instanceof Router)) return null;
+        RouterInterface iface = ((Router) device).getInterfaceTo(other);
+        if (iface == null || !iface.isConfigured()) return null;
+        int address;
+        if (other instanceof Router) {
+            RouterInterface back = ((Router) other).getInterfaceTo(device);
+            if (back == null || !back.isConfigured()) return null;
+            address = back.getAddress();
+        } else if (other instanceof Switch || !IpAddress.isValid(other.getIpAddress())) {
+            return null;
+        } else {
+            address = IpAddress.parse(other.getIpAddress());
+        }
+        if (((address ^ iface.getAddress()) & IpAddress.mask(iface.getPrefixLength())) == 0) return null;
+        return String.format("%s %s is %s/%d but %s is %s", device.getName(), iface.getName(),
+            IpAddress.format(iface.getAddress()), iface.getPrefixLength(), other.getName(), IpAddress.format(address));
+    }
+}
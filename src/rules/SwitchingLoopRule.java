@@ -0,0 +1,188 @@
+package rules;
+
+import controllers.NetworkChange;
+import models.Connection;
+import models.Device;
+import models.Switch;
+import java.util.*;
+
+/**
+ * Switches linked in a cycle, which would flood broadcasts forever without
+ * spanning tree (not modelled). VLANs are ignored.
+ *
+ * Switches joined by switch-to-switch links are kept in groups with their
+ * link count; a group has a cycle exactly when it has at least as many
+ * links as switches. Linking two groups merges the smaller into the larger.
+ * Unlinking searches from both ends at once and stops as soon as they meet
+ * or the smaller side is exhausted, so a change costs at most the size of
+ * the part that splits off rather than the whole network.
+ */
+public class SwitchingLoopRule implements TopologyRule {
+    private static final int NAMES_SHOWN = 5;
+
+    private static final class Group {
+        final Set<Switch> members = new LinkedHashSet<>();
+        int links;
+    }
+
+    private final Map<Switch, Group> groups = new HashMap<>();
+
+    @Override
+    public String getName() {
+        return "switching-loop";
+    }
+
+    @Override
+    public void apply(NetworkChange change, RuleContext context) {
+        switch (change.getKind()) {
+            case DEVICE_ADDED:
+                if (change.getDevice() instanceof Switch) groupOf((Switch) change.getDevice());
+                break;
+            case DEVICE_REMOVED:
+                if (change.getDevice() instanceof Switch) {
+                    // Its links are gone by now, so it is alone in its group
+                    Group group = groups.remove(change.getDevice());
+                    if (group != null) context.resolve(group);
+                }
+                break;
+            case DEVICE_UPDATED:
+                if (change.getDevice() instanceof Switch) evaluate(groupOf((Switch) change.getDevice()), context);
+                break;
+            case CONNECTED:
+                if (isSwitchLink(change.getConnection())) {
+                    join((Switch) change.getConnection().getDevice1(), (Switch) change.getConnection().getDevice2(), context);
+                }
+                break;
+            case DISCONNECTED:
+                if (isSwitchLink(change.getConnection())) {
+                    split((Switch) change.getConnection().getDevice1(), (Switch) change.getConnection().getDevice2(), context);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void clear() {
+        groups.clear();
+    }
+
+    private static boolean isSwitchLink(Connection connection) {
+        return connection.getDevice1() instanceof Switch && connection.getDevice2() instanceof Switch;
+    }
+
+    private Group groupOf(Switch sw) {
+        return groups.computeIfAbsent(sw, s -> {
+            Group group = new Group();
+            group.members.add(s);
+            return group;
+        });
+    }
+
+    private void join(Switch a, Switch b, RuleContext context) {
+        Group big = groupOf(a);
+        Group small = groupOf(b);
+        if (big == small) {
+            big.links++;
+            evaluate(big, context);
+            return;
+        }
+        if (big.members.size() < small.members.size()) {
+            Group swap = big;
+            big = small;
+            small = swap;
+        }
+        for (Switch member : small.members) groups.put(member, big);
+        big.members.addAll(small.members);
+        big.links += small.links + 1;
+        context.resolve(small);
+        evaluate(big, context);
+    }
+
+    private void split(Switch a, Switch b, RuleContext context) {
+        Group group = groupOf(a);
+        group.links--;
+        Set<Switch> cut = separatedPart(a, b, context);
+        if (cut != null) {
+            Group part = new Group();
+            int ends = 0;
+            for (Switch member : cut) {
+                group.members.remove(member);
+                part.members.add(member);
+                groups.put(member, part);
+                for (Connection connection : context.connectionsOf(member)) {
+                    if (connection.getOtherEnd(member) instanceof Switch) ends++;
+                }
+            }
+            part.links = ends / 2;
+            group.links -= part.links;
+            evaluate(part, context);
+        }
+        evaluate(group, context);
+    }
+
+    /**
+     * Switches no longer reachable from the other end of the removed link,
+     * or null if both ends are still connected.
+     */
+    private static Set<Switch> separatedPart(Switch a, Switch b, RuleContext context) {
+        // true: reached from a, false: reached from b
+        Map<Switch, Boolean> side = new HashMap<>();
+        Deque<Switch> fromA = new ArrayDeque<>();
+        Deque<Switch> fromB = new ArrayDeque<>();
+        side.put(a, true);
+        side.put(b, false);
+        fromA.add(a);
+        fromB.add(b);
+        while (true) {
+            if (fromA.isEmpty()) return reached(side, true);
+            if (!expand(fromA, true, side, context)) return null;
+            if (fromB.isEmpty()) return reached(side, false);
+            if (!expand(fromB, false, side, context)) return null;
+        }
+    }
+
+    // Visits the next switch of one search; false if it met the other search
+    private static boolean expand(Deque<Switch> queue, boolean mark, Map<Switch, Boolean> side, RuleContext context) {
+        Switch sw = queue.poll();
+        for (Connection connection : context.connectionsOf(sw)) {
+            Device other = connection.getOtherEnd(sw);
+            if (!(other instanceof Switch)) continue;
+            Boolean seen = side.putIfAbsent((Switch) other, mark);
+            if (seen == null) {
+                queue.add((Switch) other);
+            } else if (seen != mark) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Switch> reached(Map<Switch, Boolean> side, boolean mark) {
+        Set<Switch> part = new HashSet<>();
+        side.forEach((sw, s) -> {
+            if (s == mark) part.add(sw);
+        });
+        return part;
+    }
+
+    private static void evaluate(Group group, RuleContext context) {
+        if (group.members.size() < 2 || group.links < group.members.size()) {
+            context.resolve(group);
+            return;
+        }
+        StringJoiner names = new StringJoiner(", ");
+        List<Device> shown = new ArrayList<>();
+        for (Switch member : group.members) {
+            if (shown.size() == NAMES_SHOWN) {
+                names.add("...");
+                break;
+            }
+            shown.add(member);
+            names.add(member.getName());
+        }
+        context.report(group, String.format("%d switches joined by %d links contain a loop: %s",
+            group.members.size(), group.links, names), shown.toArray(new Device[0]));
+    }
+}
@@ -0,0 +1,26 @@
+package rules;
+
+import controllers.NetworkChange;
+
+/**
+ * A check kept up to date by a {@link RuleEngine} one change at a time.
+ *
+ * A rule only looks at what the change touches and reports or resolves
+ * violations through its context, so its cost follows the size of the
+ * change rather than the network. Rules never see a RESET: the engine
+ * clears them and replays the new network as additions.
+ */
+public interface TopologyRule {
+    String getName();
+
+    /**
+     * Updates the rule for one change. The context already reflects it.
+     */
+    void apply(NetworkChange change, RuleContext context);
+
+    /**
+     * Forgets any state built from earlier changes.
+     */
+    default void clear() {
+    }
+}
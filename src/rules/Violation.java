@@ -0,0 +1,32 @@
+package rules;
+
+import models.Device;
+import java.util.List;
+
+/**
+ * A rule broken by the current network.
+ */
+public final class Violation {
+    private final String rule;
+    private final String message;
+    private final List<Device> devices;
+
+    Violation(String rule, String message, List<Device> devices) {
+        this.rule = rule;
+        this.message = message;
+        this.devices = devices;
+    }
+
+    public String getRule() { return rule; }
+    public String getMessage() { return message; }
+
+    /**
+     * Devices involved, to highlight or select them.
+     */
+    public List<Device> getDevices() { return devices; }
+
+    @Override
+    public String toString() {
+        return rule + ": " + message;
+    }
+}
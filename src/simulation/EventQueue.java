@@ -0,0 +1,269 @@
+package simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pending simulation events ordered by time, then by insertion order.
+ *
+ * Events are kept in a binary heap over parallel primitive arrays, so
+ * scheduling and popping do not allocate. The event most recently popped
+ * is available through the {@code last*} getters.
+ */
+public class EventQueue {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] times;
+    private long[] seqs;
+    private int[] types;
+    private int[] as;
+    private long[] bs;
+    private int size;
+    private long nextSeq;
+
+    private long lastTime;
+    private int lastType;
+    private int lastA;
+    private long lastB;
+    private long lastSeq;
+
+    public EventQueue() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public EventQueue(int capacity) {
+        capacity = Math.max(16, capacity);
+        times = new long[capacity];
+        seqs = new long[capacity];
+        types = new int[capacity];
+        as = new int[capacity];
+        bs = new long[capacity];
+    }
+
+    public void push(long time, int type, int a, long b) {
+        insert(time, nextSeq++, type, a, b);
+    }
+
+    /**
+     * Inserts an event keeping a sequence number assigned earlier.
+     */
+    protected void insert(long time, long seq, int type, int a, long b) {
+        if (size == times.length) grow();
+        int i = size++;
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(time, seq, times[parent], seqs[parent])) break;
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, seq, type, a, b);
+    }
+
+    /**
+     * Removes the earliest event.
+     * @return false if the queue was empty
+     */
+    public boolean pop() {
+        if (size == 0) return false;
+        lastTime = times[0];
+        lastType = types[0];
+        lastA = as[0];
+        lastB = bs[0];
+        lastSeq = seqs[0];
+        int last = --size;
+        if (last > 0) {
+            long time = times[last];
+            long seq = seqs[last];
+            int type = types[last];
+            int a = as[last];
+            long b = bs[last];
+            int i = 0;
+            // Sift down
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(times[child + 1], seqs[child + 1], times[child], seqs[child])) {
+                    child++;
+                }
+                if (!before(times[child], seqs[child], time, seq)) break;
+                move(child, i);
+                i = child;
+            }
+            set(i, time, seq, type, a, b);
+        }
+        return true;
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public int size() { return size; }
+
+    /**
+     * Time of the earliest event, or Long.MAX_VALUE if empty.
+     */
+    public long peekTime() {
+        return size > 0 ? times[0] : Long.MAX_VALUE;
+    }
+
+    public long getLastTime() { return lastTime; }
+    public int getLastType() { return lastType; }
+    public int getLastA() { return lastA; }
+    public long getLastB() { return lastB; }
+    protected long getLastSeq() { return lastSeq; }
+
+    protected long nextSeq() { return nextSeq++; }
+
+    long peekNextSeq() { return nextSeq; }
+
+    /**
+     * Sequence number of the earliest event; only meaningful if not empty.
+     */
+    long peekSeq() { return seqs[0]; }
+
+    /**
+     * Visits every pending event in heap order, without removing them.
+     */
+    public void forEach(EventVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(times[i], types[i], as[i], bs[i]);
+        }
+    }
+
+    public interface EventVisitor {
+        void visit(long time, int type, int a, long b);
+    }
+
+    /**
+     * Visits the events held in memory, in heap order, until the scanner
+     * returns false. For a plain queue these are all pending events; events
+     * a {@link SpillingEventQueue} has written to disk are not read.
+     */
+    public final void scanMemory(EventScanner scanner) {
+        for (int i = 0; i < size; i++) {
+            if (!scanner.visit(times[i], types[i], as[i], bs[i])) return;
+        }
+    }
+
+    public interface EventScanner {
+        /** @return false to stop */
+        boolean visit(long time, int type, int a, long b);
+    }
+
+    protected interface EventSink {
+        void accept(long time, long seq, int type, int a, long b);
+    }
+
+    /**
+     * Visits every event with its sequence number, in heap order.
+     */
+    protected void forEachRecord(EventSink sink) {
+        for (int i = 0; i < size; i++) {
+            sink.accept(times[i], seqs[i], types[i], as[i], bs[i]);
+        }
+    }
+
+    /**
+     * Takes every event at or after the given time out of the queue and
+     * hands it to the sink. Linear in the queue size.
+     */
+    protected void removeFrom(long time, EventSink sink) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (times[i] >= time) {
+                sink.accept(times[i], seqs[i], types[i], as[i], bs[i]);
+            } else {
+                move(i, kept++);
+            }
+        }
+        size = kept;
+        // Restore the heap bottom-up
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            long t = times[i];
+            long seq = seqs[i];
+            int type = types[i];
+            int a = as[i];
+            long b = bs[i];
+            int j = i;
+            while (true) {
+                int child = 2 * j + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(times[child + 1], seqs[child + 1], times[child], seqs[child])) {
+                    child++;
+                }
+                if (!before(times[child], seqs[child], t, seq)) break;
+                move(child, j);
+                j = child;
+            }
+            set(j, t, seq, type, a, b);
+        }
+    }
+
+    public EventQueue copy() {
+        EventQueue copy = new EventQueue(times.length);
+        copyInto(copy);
+        return copy;
+    }
+
+    protected void copyInto(EventQueue copy) {
+        copy.times = times.clone();
+        copy.seqs = seqs.clone();
+        copy.types = types.clone();
+        copy.as = as.clone();
+        copy.bs = bs.clone();
+        copy.size = size;
+        copy.nextSeq = nextSeq;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(nextSeq);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(times[i]);
+            out.writeLong(seqs[i]);
+            out.writeInt(types[i]);
+            out.writeInt(as[i]);
+            out.writeLong(bs[i]);
+        }
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        long seq = in.readLong();
+        int count = in.readInt();
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            insert(in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readLong());
+        }
+        nextSeq = seq;
+    }
+
+    private static boolean before(long t1, long s1, long t2, long s2) {
+        return t1 < t2 || (t1 == t2 && s1 < s2);
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        seqs[to] = seqs[from];
+        types[to] = types[from];
+        as[to] = as[from];
+        bs[to] = bs[from];
+    }
+
+    private void set(int i, long time, long seq, int type, int a, long b) {
+        times[i] = time;
+        seqs[i] = seq;
+        types[i] = type;
+        as[i] = a;
+        bs[i] = b;
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        times = Arrays.copyOf(times, capacity);
+        seqs = Arrays.copyOf(seqs, capacity);
+        types = Arrays.copyOf(types, capacity);
+        as = Arrays.copyOf(as, capacity);
+        bs = Arrays.copyOf(bs, capacity);
+    }
+}
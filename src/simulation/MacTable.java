@@ -0,0 +1,129 @@
+package simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Learned forwarding entries of one switch: destination node to adjacency
+ * slot, with the time each entry was last refreshed for aging.
+ * Open addressing over primitive arrays.
+ */
+public class MacTable {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] slots;
+    private long[] seen;
+    private int size;
+
+    public MacTable() {
+        this(16);
+    }
+
+    private MacTable(int capacity) {
+        keys = new int[capacity];
+        slots = new int[capacity];
+        seen = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public void learn(int node, int slot, long now) {
+        if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+        int i = find(node);
+        if (keys[i] == EMPTY) {
+            keys[i] = node;
+            size++;
+        }
+        slots[i] = slot;
+        seen[i] = now;
+    }
+
+    /**
+     * Adjacency slot learned for the node, or -1 if unknown or not
+     * refreshed since {@code notBefore}.
+     */
+    public int lookup(int node, long notBefore) {
+        int i = find(node);
+        return keys[i] == EMPTY || seen[i] < notBefore ? -1 : slots[i];
+    }
+
+    /**
+     * Drops entries not refreshed since {@code cutoff}.
+     * @return the number of entries removed
+     */
+    public int expire(long cutoff) {
+        int before = size;
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        long[] oldSeen = seen;
+        keys = new int[oldKeys.length];
+        slots = new int[oldKeys.length];
+        seen = new long[oldKeys.length];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldSeen[i] >= cutoff) {
+                learn(oldKeys[i], oldSlots[i], oldSeen[i]);
+            }
+        }
+        return before - size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public MacTable copy() {
+        MacTable copy = new MacTable(0);
+        copy.keys = keys.clone();
+        copy.slots = slots.clone();
+        copy.seen = seen.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                out.writeInt(keys[i]);
+                out.writeInt(slots[i]);
+                out.writeLong(seen[i]);
+            }
+        }
+    }
+
+    static MacTable readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        MacTable table = new MacTable(Math.max(16, Integer.highestOneBit(Math.max(1, count)) * 4));
+        for (int i = 0; i < count; i++) {
+            table.learn(in.readInt(), in.readInt(), in.readLong());
+        }
+        return table;
+    }
+
+    private int find(int node) {
+        int mask = keys.length - 1;
+        int i = (node * 0x9E3779B9) >>> 1 & mask;
+        while (keys[i] != EMPTY && keys[i] != node) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        long[] oldSeen = seen;
+        keys = new int[capacity];
+        slots = new int[capacity];
+        seen = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) learn(oldKeys[i], oldSlots[i], oldSeen[i]);
+        }
+    }
+}
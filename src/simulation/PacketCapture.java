@@ -0,0 +1,300 @@
+package simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes packets sent by a {@link Simulator} to a pcap or pcapng file.
+ *
+ * Only links selected with {@link #captureLink}, {@link #captureDevice} or
+ * {@link #captureInterface} (or all of them) are recorded, and the check is
+ * made when the packet is sent. Each packet becomes an Ethernet/IPv4/UDP
+ * header truncated to the headers, with the original length set to the
+ * simulated size. Records are appended to large direct buffers that a
+ * dedicated thread writes out through a FileChannel; if the writer falls
+ * behind, records are dropped and counted rather than blocking the
+ * simulation.
+ */
+public class PacketCapture implements AutoCloseable {
+    public enum Format { PCAP, PCAPNG }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BUFFER_COUNT = 4;
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int SNAPLEN = 65535;
+    private static final int HEADERS = 14 + 20 + 8;
+    private static final int MAX_RECORD = 32 + HEADERS + 4;
+
+    private final Topology topology;
+    private final Format format;
+    private final FileChannel channel;
+    // pcapng interface id per link, -1 if the link is not captured
+    private final int[] linkInterface;
+    private int interfaceCount;
+    private boolean headerWritten;
+
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final Thread writer;
+    private volatile IOException writeError;
+    private ByteBuffer current;
+    private boolean closed;
+
+    private long captured;
+    private long dropped;
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    public PacketCapture(File file, Format format, Topology topology) throws IOException {
+        this.topology = topology;
+        this.format = format;
+        this.linkInterface = new int[topology.linkCount()];
+        java.util.Arrays.fill(linkInterface, -1);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        current = free.poll();
+        writer = new Thread(this::drain, "pcap-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public PacketCapture captureAll() {
+        for (int link = 0; link < linkInterface.length; link++) captureLink(link);
+        return this;
+    }
+
+    public PacketCapture captureLink(int link) {
+        if (headerWritten) throw new IllegalStateException("Capture points must be set before the first packet");
+        if (linkInterface[link] < 0) linkInterface[link] = interfaceCount++;
+        return this;
+    }
+
+    /**
+     * Captures every link attached to the node.
+     */
+    public PacketCapture captureDevice(int node) {
+        for (int s = topology.adjStart(node); s < topology.adjEnd(node); s++) {
+            captureLink(topology.adjLink(s));
+        }
+        return this;
+    }
+
+    /**
+     * Captures the link attached to one router interface.
+     */
+    public PacketCapture captureInterface(int node, int iface) {
+        int link = topology.interfaceLink(node, iface);
+        if (link < 0) throw new IllegalArgumentException("Interface " + iface + " is not attached");
+        return captureLink(link);
+    }
+
+    public boolean isCaptured(int link) {
+        return linkInterface[link] >= 0;
+    }
+
+    /**
+     * Records a packet put on the wire. Called from the simulation thread.
+     */
+    void record(long timeNanos, int link, int srcNode, int dstNode, int dstIp, int sizeBytes, int priority) {
+        int iface = linkInterface[link];
+        if (iface < 0 || closed) return;
+        if (!headerWritten) writeFileHeader();
+        if (current.remaining() < MAX_RECORD && !rotate()) {
+            dropped++;
+            return;
+        }
+        ByteBuffer buf = current;
+        int wireLength = HEADERS - 28 + Math.max(28, sizeBytes);
+        if (format == Format.PCAP) {
+            buf.putInt((int) (timeNanos / 1_000_000_000L));
+            buf.putInt((int) (timeNanos % 1_000_000_000L));
+            buf.putInt(HEADERS);
+            buf.putInt(wireLength);
+            putFrame(buf, srcNode, dstNode, dstIp, sizeBytes, priority);
+        } else {
+            int blockLength = 32 + HEADERS + pad(HEADERS);
+            buf.putInt(6); // Enhanced Packet Block
+            buf.putInt(blockLength);
+            buf.putInt(iface);
+            buf.putInt((int) (timeNanos >>> 32));
+            buf.putInt((int) timeNanos);
+            buf.putInt(HEADERS);
+            buf.putInt(wireLength);
+            putFrame(buf, srcNode, dstNode, dstIp, sizeBytes, priority);
+            for (int i = 0; i < pad(HEADERS); i++) buf.put((byte) 0);
+            buf.putInt(blockLength);
+        }
+        captured++;
+    }
+
+    private void putFrame(ByteBuffer buf, int srcNode, int dstNode, int dstIp, int sizeBytes, int priority) {
+        int srcIp = topology.ip(srcNode);
+        int ipLength = Math.min(65535, Math.max(28, sizeBytes));
+        // Ethernet, locally administered MACs derived from the device ids
+        buf.putShort(Short.reverseBytes((short) 0x0200));
+        buf.putInt(Integer.reverseBytes(topology.deviceId(dstNode)));
+        buf.putShort(Short.reverseBytes((short) 0x0200));
+        buf.putInt(Integer.reverseBytes(topology.deviceId(srcNode)));
+        buf.putShort(Short.reverseBytes((short) 0x0800));
+        // IPv4, network byte order
+        int start = buf.position();
+        buf.put((byte) 0x45);
+        buf.put((byte) (priority << 5));
+        buf.putShort(Short.reverseBytes((short) ipLength));
+        buf.putInt(Integer.reverseBytes(0x00004000)); // id 0, don't fragment
+        buf.put((byte) Simulator.DEFAULT_TTL);
+        buf.put((byte) 17);
+        buf.putShort((short) 0);
+        buf.putInt(Integer.reverseBytes(srcIp));
+        buf.putInt(Integer.reverseBytes(dstIp));
+        buf.putShort(start + 10, Short.reverseBytes(checksum(buf, start)));
+        // UDP
+        buf.putShort(Short.reverseBytes((short) 9));
+        buf.putShort(Short.reverseBytes((short) 9));
+        buf.putShort(Short.reverseBytes((short) (ipLength - 20)));
+        buf.putShort((short) 0);
+    }
+
+    private static short checksum(ByteBuffer buf, int start) {
+        int sum = 0;
+        for (int i = start; i < start + 20; i += 2) {
+            sum += ((buf.get(i) & 0xff) << 8) | (buf.get(i + 1) & 0xff);
+        }
+        sum = (sum & 0xffff) + (sum >>> 16);
+        sum += sum >>> 16;
+        return (short) ~sum;
+    }
+
+    private void writeFileHeader() {
+        headerWritten = true;
+        ByteBuffer buf = current;
+        if (format == Format.PCAP) {
+            buf.putInt(0xa1b23c4d); // nanosecond timestamps
+            buf.putShort((short) 2);
+            buf.putShort((short) 4);
+            buf.putInt(0);
+            buf.putInt(0);
+            buf.putInt(SNAPLEN);
+            buf.putInt(LINKTYPE_ETHERNET);
+            return;
+        }
+        // Section Header Block
+        buf.putInt(0x0A0D0D0A);
+        buf.putInt(28);
+        buf.putInt(0x1A2B3C4D);
+        buf.putShort((short) 1);
+        buf.putShort((short) 0);
+        buf.putLong(-1);
+        buf.putInt(28);
+        // One Interface Description Block per captured link, in interface id order
+        int[] links = new int[interfaceCount];
+        for (int link = 0; link < linkInterface.length; link++) {
+            if (linkInterface[link] >= 0) links[linkInterface[link]] = link;
+        }
+        for (int link : links) {
+            byte[] name = linkName(link).getBytes(StandardCharsets.UTF_8);
+            int nameLength = Math.min(name.length, 256);
+            int length = 20 + 4 + nameLength + pad(nameLength) + 8 + 4;
+            if (current.remaining() < length + MAX_RECORD) rotateBlocking();
+            buf = current;
+            buf.putInt(1);
+            buf.putInt(length);
+            buf.putShort((short) LINKTYPE_ETHERNET);
+            buf.putShort((short) 0);
+            buf.putInt(SNAPLEN);
+            buf.putShort((short) 2); // if_name
+            buf.putShort((short) nameLength);
+            buf.put(name, 0, nameLength);
+            for (int i = 0; i < pad(nameLength); i++) buf.put((byte) 0);
+            buf.putShort((short) 9); // if_tsresol: nanoseconds
+            buf.putShort((short) 1);
+            buf.putInt(9);
+            buf.putInt(0); // opt_endofopt
+            buf.putInt(length);
+        }
+    }
+
+    private String linkName(int link) {
+        return topology.name(topology.linkA(link)) + " <-> " + topology.name(topology.linkB(link));
+    }
+
+    private static int pad(int length) {
+        return (4 - (length & 3)) & 3;
+    }
+
+    // Hands the current buffer to the writer; false if no empty buffer is ready
+    private boolean rotate() {
+        ByteBuffer next = free.poll();
+        if (next == null) return false;
+        current.flip();
+        full.add(current);
+        current = next;
+        return true;
+    }
+
+    private void rotateBlocking() {
+        try {
+            ByteBuffer next = free.take();
+            current.flip();
+            full.add(current);
+            current = next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing capture header");
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buf = full.take();
+                if (buf == END) return;
+                try {
+                    while (buf.hasRemaining()) channel.write(buf);
+                } catch (IOException e) {
+                    if (writeError == null) writeError = e;
+                }
+                buf.clear();
+                free.add(buf);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Topology getTopology() { return topology; }
+    public Format getFormat() { return format; }
+    public long getCapturedCount() { return captured; }
+    public long getDroppedCount() { return dropped; }
+
+    /**
+     * Flushes outstanding records and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (!headerWritten) writeFileHeader();
+        current.flip();
+        full.add(current);
+        full.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (writeError != null) throw writeError;
+    }
+}
@@ -0,0 +1,187 @@
+package simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Packets in flight, stored column-wise and recycled through a free list
+ * so that the simulation does not allocate per packet.
+ */
+public class PacketPool {
+    private int[] src;
+    private int[] dst;
+    private int[] dstIp;
+    private int[] size;
+    private int[] priority;
+    private int[] ttl;
+    private long[] created;
+    // Link-layer sender and addressee of the frame on its current segment;
+    // -1 addressee for frames every node acts on
+    private int[] hopSrc;
+    private int[] hopDst;
+    private int[] nextFree;
+    private int freeHead = -1;
+    private int highWater;
+    private int live;
+
+    public PacketPool() {
+        this(1024);
+    }
+
+    private PacketPool(int capacity) {
+        src = new int[capacity];
+        dst = new int[capacity];
+        dstIp = new int[capacity];
+        size = new int[capacity];
+        priority = new int[capacity];
+        ttl = new int[capacity];
+        created = new long[capacity];
+        hopSrc = new int[capacity];
+        hopDst = new int[capacity];
+        nextFree = new int[capacity];
+    }
+
+    public int allocate(int source, int destination, int destinationIp, int bytes, int prio, int hops, long now) {
+        int id;
+        if (freeHead >= 0) {
+            id = freeHead;
+            freeHead = nextFree[id];
+        } else {
+            if (highWater == src.length) grow();
+            id = highWater++;
+        }
+        src[id] = source;
+        dst[id] = destination;
+        dstIp[id] = destinationIp;
+        size[id] = bytes;
+        priority[id] = prio;
+        ttl[id] = hops;
+        created[id] = now;
+        hopSrc[id] = source;
+        hopDst[id] = -1;
+        live++;
+        return id;
+    }
+
+    /**
+     * Copy of a packet, used when a switch floods a frame out of several ports.
+     */
+    public int duplicate(int id) {
+        int copy = allocate(src[id], dst[id], dstIp[id], size[id], priority[id], ttl[id], created[id]);
+        hopSrc[copy] = hopSrc[id];
+        hopDst[copy] = hopDst[id];
+        return copy;
+    }
+
+    /**
+     * Addresses the frame for its next hop.
+     */
+    public void address(int id, int from, int to) {
+        hopSrc[id] = from;
+        hopDst[id] = to;
+    }
+
+    public void free(int id) {
+        nextFree[id] = freeHead;
+        freeHead = id;
+        live--;
+    }
+
+    public int src(int id) { return src[id]; }
+    public int dst(int id) { return dst[id]; }
+    public int dstIp(int id) { return dstIp[id]; }
+    public int size(int id) { return size[id]; }
+    public int priority(int id) { return priority[id]; }
+    public long created(int id) { return created[id]; }
+    public int hopSrc(int id) { return hopSrc[id]; }
+    public int hopDst(int id) { return hopDst[id]; }
+
+    /**
+     * Decrements the hop limit.
+     * @return false if the packet has run out of hops
+     */
+    public boolean hop(int id) {
+        return --ttl[id] > 0;
+    }
+
+    public int liveCount() {
+        return live;
+    }
+
+    public PacketPool copy() {
+        PacketPool copy = new PacketPool(0);
+        copy.src = src.clone();
+        copy.dst = dst.clone();
+        copy.dstIp = dstIp.clone();
+        copy.size = size.clone();
+        copy.priority = priority.clone();
+        copy.ttl = ttl.clone();
+        copy.created = created.clone();
+        copy.hopSrc = hopSrc.clone();
+        copy.hopDst = hopDst.clone();
+        copy.nextFree = nextFree.clone();
+        copy.freeHead = freeHead;
+        copy.highWater = highWater;
+        copy.live = live;
+        return copy;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(highWater);
+        out.writeInt(freeHead);
+        out.writeInt(live);
+        for (int i = 0; i < highWater; i++) {
+            out.writeInt(src[i]);
+            out.writeInt(dst[i]);
+            out.writeInt(dstIp[i]);
+            out.writeInt(size[i]);
+            out.writeByte(priority[i]);
+            out.writeShort(ttl[i]);
+            out.writeLong(created[i]);
+            out.writeInt(hopSrc[i]);
+            out.writeInt(hopDst[i]);
+            out.writeInt(nextFree[i]);
+        }
+    }
+
+    /**
+     * @param hops whether the stream has the next-hop columns; older
+     *             checkpoints leave their frames unaddressed
+     */
+    static PacketPool readFrom(DataInput in, boolean hops) throws IOException {
+        int count = in.readInt();
+        PacketPool pool = new PacketPool(Math.max(16, count));
+        pool.highWater = count;
+        pool.freeHead = in.readInt();
+        pool.live = in.readInt();
+        for (int i = 0; i < count; i++) {
+            pool.src[i] = in.readInt();
+            pool.dst[i] = in.readInt();
+            pool.dstIp[i] = in.readInt();
+            pool.size[i] = in.readInt();
+            pool.priority[i] = in.readByte();
+            pool.ttl[i] = in.readShort();
+            pool.created[i] = in.readLong();
+            pool.hopSrc[i] = hops ? in.readInt() : pool.src[i];
+            pool.hopDst[i] = hops ? in.readInt() : -1;
+            pool.nextFree[i] = in.readInt();
+        }
+        return pool;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, src.length * 2);
+        src = Arrays.copyOf(src, capacity);
+        dst = Arrays.copyOf(dst, capacity);
+        dstIp = Arrays.copyOf(dstIp, capacity);
+        size = Arrays.copyOf(size, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        ttl = Arrays.copyOf(ttl, capacity);
+        created = Arrays.copyOf(created, capacity);
+        hopSrc = Arrays.copyOf(hopSrc, capacity);
+        hopDst = Arrays.copyOf(hopDst, capacity);
+        nextFree = Arrays.copyOf(nextFree, capacity);
+    }
+}
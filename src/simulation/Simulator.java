@@ -0,0 +1,698 @@
+package simulation;
+
+import models.ForwardingTable;
+import models.LinkQueue;
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Discrete-event packet simulation over a {@link Topology} snapshot.
+ *
+ * Computers send to their single link, switches learn source addresses and
+ * forward or flood, routers forward by longest-prefix match on the
+ * destination IP. Every link direction has its own output queue and is busy
+ * while a packet is being serialized onto it. VLANs are not modelled.
+ *
+ * The whole state can be written to a compact binary checkpoint and read
+ * back, or forked in memory. A fork shares the topology and, until either
+ * side changes them, the event queue, packet pool, link queues and MAC
+ * tables; each object is copied the first time it is written. Forks are
+ * independent of each other and may run on separate threads, but a single
+ * simulator is not thread-safe.
+ */
+public class Simulator {
+    private static final int CHECKPOINT_MAGIC = 0x4E534350; // "NSCP"
+    private static final int CHECKPOINT_VERSION = 3;
+
+    static final int EVENT_GENERATE = 1;
+    static final int EVENT_TX_DONE = 2;
+    static final int EVENT_ARRIVE = 3;
+
+    public static final int DEFAULT_TTL = 64;
+    public static final long MAC_AGING_NANOS = 300_000_000_000L;
+
+    private final Topology topology;
+    private long now;
+    private long randomState;
+
+    // Shared with forks until written; see own*()
+    private EventQueue events;
+    private boolean eventsOwned;
+    private PacketPool packets;
+    private boolean packetsOwned;
+    private LinkQueue[] queues;
+    private boolean[] queueOwned;
+    private MacTable[] macTables;
+    private boolean[] macOwned;
+
+    // Small per-simulation state, copied eagerly on fork
+    private boolean[] busy;
+    private boolean[] linkDown;
+    private int sourceCount;
+    private int[] sourceFrom = new int[4];
+    private int[] sourceTo = new int[4];
+    private int[] sourceSize = new int[4];
+    private int[] sourcePriority = new int[4];
+    private long[] sourceInterval = new long[4];
+
+    // Not shared with forks or saved in checkpoints
+    private PacketCapture capture;
+
+    private long generated;
+    private long delivered;
+    private long queueDrops;
+    private long linkLosses;
+    private long expired;
+    private long unroutable;
+    private long totalLatencyNanos;
+
+    // Cumulative per link direction and per node, read by statistics samplers
+    private long[] directionBytes;
+    private long[] directionDrops;
+    private long[] nodeDelivered;
+    private long[] nodeLatencyNanos;
+    private long[] nodeDrops;
+
+    public Simulator(Topology topology) {
+        this(topology, 0x9E3779B97F4A7C15L);
+    }
+
+    public Simulator(Topology topology, long seed) {
+        this.topology = topology;
+        this.randomState = seed != 0 ? seed : 1;
+        this.events = new EventQueue();
+        this.eventsOwned = true;
+        this.packets = new PacketPool();
+        this.packetsOwned = true;
+        int directions = topology.linkCount() * 2;
+        this.queues = new LinkQueue[directions];
+        this.queueOwned = new boolean[directions];
+        this.busy = new boolean[directions];
+        this.linkDown = new boolean[topology.linkCount()];
+        this.macTables = new MacTable[topology.nodeCount()];
+        this.macOwned = new boolean[topology.nodeCount()];
+        this.directionBytes = new long[directions];
+        this.directionDrops = new long[directions];
+        this.nodeDelivered = new long[topology.nodeCount()];
+        this.nodeLatencyNanos = new long[topology.nodeCount()];
+        this.nodeDrops = new long[topology.nodeCount()];
+    }
+
+    /**
+     * Starts a constant-rate flow between two nodes, first packet now.
+     * @return the source index
+     */
+    public int addTrafficSource(int fromNode, int toNode, long intervalNanos, int sizeBytes, int priority) {
+        if (intervalNanos <= 0) throw new IllegalArgumentException("Interval must be positive");
+        int source = sourceCount;
+        addSourceRow(fromNode, toNode, sizeBytes, priority, intervalNanos);
+        ownEvents().push(now, EVENT_GENERATE, source, 0);
+        return source;
+    }
+
+    /**
+     * Keeps at most about {@code memoryLimit} pending events in memory from
+     * now on, spilling later ones to sorted run files in the directory.
+     * Event order, and so the results, are unchanged.
+     */
+    public void spillEvents(Path directory, int memoryLimit) {
+        SpillingEventQueue spilling = new SpillingEventQueue(directory, memoryLimit);
+        events.copyInto(spilling);
+        spilling.trim();
+        close();
+        events = spilling;
+        eventsOwned = true;
+    }
+
+    /**
+     * Deletes the spill files of the event queue, if it spills. The
+     * simulation cannot continue afterwards; other simulations hold no
+     * resources and need not be closed.
+     */
+    public void close() {
+        // A spilling queue is never shared with forks, see fork()
+        if (events instanceof SpillingEventQueue) ((SpillingEventQueue) events).close();
+    }
+
+    /**
+     * Takes a link out of service (or back) for this simulation only.
+     * Packets sent onto a down link are lost.
+     */
+    public void setLinkDown(int link, boolean down) {
+        linkDown[link] = down;
+    }
+
+    /**
+     * Processes the next event.
+     * @return false if there was nothing left to do
+     */
+    public boolean step() {
+        EventQueue queue = ownEvents();
+        if (!queue.pop()) return false;
+        now = queue.getLastTime();
+        int a = queue.getLastA();
+        switch (queue.getLastType()) {
+            case EVENT_GENERATE:
+                generate(a);
+                break;
+            case EVENT_TX_DONE:
+                busy[a] = false;
+                startTransmission(a);
+                break;
+            case EVENT_ARRIVE:
+                int link = a >>> 1;
+                int node = (a & 1) == 0 ? topology.linkB(link) : topology.linkA(link);
+                receive(node, (int) queue.getLastB(), link);
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Processes every event up to and including the given time and then
+     * advances the clock to it.
+     */
+    public void run(long untilNanos) {
+        while (events.peekTime() <= untilNanos) {
+            step();
+        }
+        now = Math.max(now, untilNanos);
+    }
+
+    private void generate(int source) {
+        int from = sourceFrom[source];
+        int to = sourceTo[source];
+        ownEvents().push(now + sourceInterval[source], EVENT_GENERATE, source, 0);
+        int packet = ownPackets().allocate(from, to, topology.ip(to), sourceSize[source],
+            sourcePriority[source], DEFAULT_TTL, now);
+        generated++;
+        receive(from, packet, -1);
+    }
+
+    private void receive(int node, int packet, int inLink) {
+        PacketPool pool = ownPackets();
+        int hopDst = pool.hopDst(packet);
+        if (hopDst >= 0 && hopDst != node && topology.type(node) != Topology.SWITCH) {
+            // A flooded copy reaching a node the frame was not addressed to
+            pool.free(packet);
+            return;
+        }
+        if (pool.dst(packet) == node) {
+            long latency = now - pool.created(packet);
+            delivered++;
+            totalLatencyNanos += latency;
+            nodeDelivered[node]++;
+            nodeLatencyNanos[node] += latency;
+            pool.free(packet);
+            return;
+        }
+        if (inLink >= 0 && !pool.hop(packet)) {
+            expired++;
+            nodeDrops[node]++;
+            pool.free(packet);
+            return;
+        }
+        switch (topology.type(node)) {
+            case Topology.SWITCH:
+                forwardSwitch(node, packet, inLink);
+                break;
+            case Topology.ROUTER:
+                forwardRouter(node, packet);
+                break;
+            default:
+                // Hosts only originate; anything else addressed to them is dropped
+                int link = inLink < 0 && topology.degree(node) > 0 ? topology.adjLink(topology.adjStart(node)) : -1;
+                int hop = link >= 0 ? topology.nextHop(node, link, pool.dst(packet), 0) : -1;
+                if (hop >= 0) {
+                    pool.address(packet, node, hop);
+                    send(link, node, packet);
+                } else {
+                    unroutable++;
+                    nodeDrops[node]++;
+                    pool.free(packet);
+                }
+        }
+    }
+
+    private void forwardSwitch(int node, int packet, int inLink) {
+        int inSlot = -1;
+        for (int s = topology.adjStart(node); s < topology.adjEnd(node); s++) {
+            if (topology.adjLink(s) == inLink) {
+                inSlot = s;
+                break;
+            }
+        }
+        if (inSlot >= 0) ownMacTable(node).learn(packets.hopSrc(packet), inSlot, now);
+        MacTable table = macTables[node];
+        int target = packets.hopDst(packet) >= 0 ? packets.hopDst(packet) : packets.dst(packet);
+        int outSlot = table != null ? table.lookup(target, now - MAC_AGING_NANOS) : -1;
+        if (outSlot >= 0 && outSlot != inSlot) {
+            send(topology.adjLink(outSlot), node, packet);
+            return;
+        }
+        // Unknown destination: flood out of every other port
+        int last = -1;
+        for (int s = topology.adjStart(node); s < topology.adjEnd(node); s++) {
+            if (s == inSlot) continue;
+            if (last >= 0) send(topology.adjLink(last), node, ownPackets().duplicate(packet));
+            last = s;
+        }
+        if (last >= 0) {
+            send(topology.adjLink(last), node, packet);
+        } else {
+            unroutable++;
+            nodeDrops[node]++;
+            ownPackets().free(packet);
+        }
+    }
+
+    private void forwardRouter(int node, int packet) {
+        ForwardingTable fib = topology.fib(node);
+        ForwardingTable.Route route = fib != null ? fib.lookup(packets.dstIp(packet)) : null;
+        int link = route != null ? topology.interfaceLink(node, route.getInterfaceIndex()) : -1;
+        int hop = link >= 0 ? topology.nextHop(node, link, packets.dst(packet), route.getGateway()) : -1;
+        if (hop < 0) {
+            unroutable++;
+            nodeDrops[node]++;
+            ownPackets().free(packet);
+            return;
+        }
+        ownPackets().address(packet, node, hop);
+        send(link, node, packet);
+    }
+
+    private void send(int link, int fromNode, int packet) {
+        int direction = topology.direction(link, fromNode);
+        if (packets.size(packet) > topology.mtu(link)) {
+            queueDrops++;
+            directionDrops[direction]++;
+            ownPackets().free(packet);
+            return;
+        }
+        if (!ownQueue(direction).enqueue(packet, packets.size(packet), packets.priority(packet), now)) {
+            queueDrops++;
+            directionDrops[direction]++;
+            ownPackets().free(packet);
+            return;
+        }
+        if (!busy[direction]) startTransmission(direction);
+    }
+
+    private void startTransmission(int direction) {
+        if (queues[direction] == null || queues[direction].isEmpty()) return;
+        LinkQueue queue = ownQueue(direction);
+        int packet = (int) queue.dequeue();
+        int link = direction >>> 1;
+        long txNanos = topology.bandwidthBps(link) > 0
+            ? queue.getLastSize() * 8_000_000_000L / topology.bandwidthBps(link) : 0;
+        busy[direction] = true;
+        directionBytes[direction] += queue.getLastSize();
+        ownEvents().push(now + txNanos, EVENT_TX_DONE, direction, 0);
+        if (capture != null) {
+            capture.record(now, link, packets.src(packet), packets.dst(packet), packets.dstIp(packet),
+                packets.size(packet), packets.priority(packet));
+        }
+        if (linkDown[link] || nextDouble() < topology.lossRate(link)) {
+            linkLosses++;
+            directionDrops[direction]++;
+            ownPackets().free(packet);
+            return;
+        }
+        events.push(now + txNanos + topology.delayNanos(link), EVENT_ARRIVE, direction, packet);
+    }
+
+    private double nextDouble() {
+        randomState ^= randomState >>> 12;
+        randomState ^= randomState << 25;
+        randomState ^= randomState >>> 27;
+        return ((randomState * 0x2545F4914F6CDD1DL) >>> 11) * 0x1.0p-53;
+    }
+
+    private EventQueue ownEvents() {
+        if (!eventsOwned) {
+            events = events.copy();
+            eventsOwned = true;
+        }
+        return events;
+    }
+
+    private PacketPool ownPackets() {
+        if (!packetsOwned) {
+            packets = packets.copy();
+            packetsOwned = true;
+        }
+        return packets;
+    }
+
+    private LinkQueue ownQueue(int direction) {
+        LinkQueue queue = queues[direction];
+        if (queue == null) {
+            int link = direction >>> 1;
+            queue = new LinkQueue(topology.discipline(link), topology.queueCapacity(link), randomState ^ direction);
+        } else if (!queueOwned[direction]) {
+            queue = queue.copy();
+        } else {
+            return queue;
+        }
+        queues[direction] = queue;
+        queueOwned[direction] = true;
+        return queue;
+    }
+
+    private MacTable ownMacTable(int node) {
+        MacTable table = macTables[node];
+        if (table == null) {
+            table = new MacTable();
+        } else if (!macOwned[node]) {
+            table = table.copy();
+        } else {
+            return table;
+        }
+        macTables[node] = table;
+        macOwned[node] = true;
+        return table;
+    }
+
+    /**
+     * Creates an independent branch continuing from the current state.
+     * Costs time proportional to the number of nodes and links, not to the
+     * amount of queued traffic.
+     */
+    public Simulator fork() {
+        Simulator copy = new Simulator(topology, this);
+        if (events instanceof SpillingEventQueue) {
+            // Copied right away so that each queue, and its open run files, has one owner
+            copy.events = events.copy();
+            copy.eventsOwned = true;
+        } else {
+            eventsOwned = false;
+        }
+        // From now on neither side may write to what they share
+        packetsOwned = false;
+        Arrays.fill(queueOwned, false);
+        Arrays.fill(macOwned, false);
+        return copy;
+    }
+
+    private Simulator(Topology topology, Simulator parent) {
+        this.topology = topology;
+        this.now = parent.now;
+        // Branches draw different random numbers from here on
+        this.randomState = parent.randomState * 0x9E3779B97F4A7C15L + 1;
+        this.events = parent.events;
+        this.packets = parent.packets;
+        this.queues = parent.queues.clone();
+        this.queueOwned = new boolean[queues.length];
+        this.macTables = parent.macTables.clone();
+        this.macOwned = new boolean[macTables.length];
+        this.busy = parent.busy.clone();
+        this.linkDown = parent.linkDown.clone();
+        this.sourceCount = parent.sourceCount;
+        this.sourceFrom = parent.sourceFrom.clone();
+        this.sourceTo = parent.sourceTo.clone();
+        this.sourceSize = parent.sourceSize.clone();
+        this.sourcePriority = parent.sourcePriority.clone();
+        this.sourceInterval = parent.sourceInterval.clone();
+        this.generated = parent.generated;
+        this.delivered = parent.delivered;
+        this.queueDrops = parent.queueDrops;
+        this.linkLosses = parent.linkLosses;
+        this.expired = parent.expired;
+        this.unroutable = parent.unroutable;
+        this.totalLatencyNanos = parent.totalLatencyNanos;
+        this.directionBytes = parent.directionBytes.clone();
+        this.directionDrops = parent.directionDrops.clone();
+        this.nodeDelivered = parent.nodeDelivered.clone();
+        this.nodeLatencyNanos = parent.nodeLatencyNanos.clone();
+        this.nodeDrops = parent.nodeDrops.clone();
+    }
+
+    /**
+     * Runs each branch up to the given time, in parallel, and waits for all
+     * of them. Branches must not be shared with other threads meanwhile.
+     */
+    public static void runAll(List<Simulator> branches, long untilNanos) throws InterruptedException {
+        int threads = Math.min(branches.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            for (Simulator branch : branches) branch.run(untilNanos);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Simulator branch : branches) {
+                futures.add(executor.submit(() -> branch.run(untilNanos)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Simulation branch failed", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the complete simulation state, topology included.
+     */
+    public void checkpoint(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeInt(CHECKPOINT_VERSION);
+        topology.writeTo(out);
+        out.writeLong(now);
+        out.writeLong(randomState);
+        out.writeLong(generated);
+        out.writeLong(delivered);
+        out.writeLong(queueDrops);
+        out.writeLong(linkLosses);
+        out.writeLong(expired);
+        out.writeLong(unroutable);
+        out.writeLong(totalLatencyNanos);
+        out.writeInt(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            out.writeInt(sourceFrom[i]);
+            out.writeInt(sourceTo[i]);
+            out.writeInt(sourceSize[i]);
+            out.writeByte(sourcePriority[i]);
+            out.writeLong(sourceInterval[i]);
+        }
+        for (int link = 0; link < linkDown.length; link++) {
+            out.writeBoolean(linkDown[link]);
+        }
+        for (int d = 0; d < queues.length; d++) {
+            out.writeBoolean(busy[d]);
+            out.writeBoolean(queues[d] != null);
+            if (queues[d] != null) queues[d].writeTo(out);
+        }
+        for (MacTable table : macTables) {
+            out.writeBoolean(table != null);
+            if (table != null) table.writeTo(out);
+        }
+        for (int d = 0; d < directionBytes.length; d++) {
+            out.writeLong(directionBytes[d]);
+            out.writeLong(directionDrops[d]);
+        }
+        for (int v = 0; v < nodeDelivered.length; v++) {
+            out.writeLong(nodeDelivered[v]);
+            out.writeLong(nodeLatencyNanos[v]);
+            out.writeLong(nodeDrops[v]);
+        }
+        events.writeTo(out);
+        packets.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Reads a simulation written by {@link #checkpoint(OutputStream)}.
+     */
+    public static Simulator restore(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if (in.readInt() != CHECKPOINT_MAGIC) throw new IOException("Not a simulation checkpoint");
+        int version = in.readInt();
+        if (version < 1 || version > CHECKPOINT_VERSION) throw new IOException("Unsupported checkpoint version " + version);
+        Simulator sim = new Simulator(Topology.readFrom(in, version >= 3));
+        sim.now = in.readLong();
+        sim.randomState = in.readLong();
+        sim.generated = in.readLong();
+        sim.delivered = in.readLong();
+        sim.queueDrops = in.readLong();
+        sim.linkLosses = in.readLong();
+        sim.expired = in.readLong();
+        sim.unroutable = in.readLong();
+        sim.totalLatencyNanos = in.readLong();
+        int sources = in.readInt();
+        for (int i = 0; i < sources; i++) {
+            int from = in.readInt();
+            int to = in.readInt();
+            int size = in.readInt();
+            int priority = in.readByte();
+            long interval = in.readLong();
+            // Their pending GENERATE events are restored with the event queue
+            sim.addSourceRow(from, to, size, priority, interval);
+        }
+        for (int link = 0; link < sim.linkDown.length; link++) {
+            sim.linkDown[link] = in.readBoolean();
+        }
+        for (int d = 0; d < sim.queues.length; d++) {
+            sim.busy[d] = in.readBoolean();
+            if (in.readBoolean()) {
+                sim.queues[d] = LinkQueue.readFrom(in);
+                sim.queueOwned[d] = true;
+            }
+        }
+        for (int v = 0; v < sim.macTables.length; v++) {
+            if (in.readBoolean()) {
+                sim.macTables[v] = MacTable.readFrom(in);
+                sim.macOwned[v] = true;
+            }
+        }
+        // Version 1 had no per-link and per-node counters
+        if (version >= 2) {
+            for (int d = 0; d < sim.directionBytes.length; d++) {
+                sim.directionBytes[d] = in.readLong();
+                sim.directionDrops[d] = in.readLong();
+            }
+            for (int v = 0; v < sim.nodeDelivered.length; v++) {
+                sim.nodeDelivered[v] = in.readLong();
+                sim.nodeLatencyNanos[v] = in.readLong();
+                sim.nodeDrops[v] = in.readLong();
+            }
+        }
+        sim.events.readFrom(in);
+        // Version 3 added router interface addresses and each frame's next hop
+        sim.packets = PacketPool.readFrom(in, version >= 3);
+        return sim;
+    }
+
+    private void addSourceRow(int from, int to, int size, int priority, long interval) {
+        if (sourceCount == sourceFrom.length) {
+            int capacity = sourceCount * 2;
+            sourceFrom = Arrays.copyOf(sourceFrom, capacity);
+            sourceTo = Arrays.copyOf(sourceTo, capacity);
+            sourceSize = Arrays.copyOf(sourceSize, capacity);
+            sourcePriority = Arrays.copyOf(sourcePriority, capacity);
+            sourceInterval = Arrays.copyOf(sourceInterval, capacity);
+        }
+        int source = sourceCount++;
+        sourceFrom[source] = from;
+        sourceTo[source] = to;
+        sourceSize[source] = size;
+        sourcePriority[source] = priority;
+        sourceInterval[source] = interval;
+    }
+
+    /**
+     * Records packets as they are put on captured links, or stops
+     * recording if null. The caller remains responsible for closing it.
+     */
+    public void setCapture(PacketCapture capture) {
+        if (capture != null && capture.getTopology() != topology) {
+            throw new IllegalArgumentException("Capture was created for a different topology");
+        }
+        this.capture = capture;
+    }
+
+    public PacketCapture getCapture() { return capture; }
+
+    public Topology getTopology() { return topology; }
+    public long getTime() { return now; }
+    public int getPendingEvents() { return events.size(); }
+    public int getPacketsInFlight() { return packets.liveCount(); }
+
+    public long getGeneratedCount() { return generated; }
+    public long getDeliveredCount() { return delivered; }
+    public long getQueueDropCount() { return queueDrops; }
+    public long getLinkLossCount() { return linkLosses; }
+    public long getExpiredCount() { return expired; }
+    public long getUnroutableCount() { return unroutable; }
+
+    /** Bytes put on the wire in a link direction so far. */
+    public long getDirectionBytes(int direction) { return directionBytes[direction]; }
+    /** Packets dropped by the queue or lost on the wire in a link direction so far. */
+    public long getDirectionDrops(int direction) { return directionDrops[direction]; }
+    public long getNodeDelivered(int node) { return nodeDelivered[node]; }
+    public long getNodeLatencyNanos(int node) { return nodeLatencyNanos[node]; }
+    /** Packets a node discarded because they expired or could not be forwarded. */
+    public long getNodeDrops(int node) { return nodeDrops[node]; }
+
+    public double getMeanLatencyNanos() {
+        return delivered > 0 ? (double) totalLatencyNanos / delivered : 0;
+    }
+
+    /**
+     * Output queue of a link direction (see {@link Topology#direction}), or
+     * null if nothing has been sent that way yet. For reading only.
+     */
+    public LinkQueue getQueue(int direction) {
+        return queues[direction];
+    }
+
+    public boolean isLinkDown(int link) {
+        return linkDown[link];
+    }
+
+    /**
+     * Takes a picture of the frames currently on the wire and of link
+     * utilization since the previous snapshot, which may be null. Reads the
+     * pending arrivals held in memory only, up to {@link TrafficSnapshot#MAX_FRAMES};
+     * events spilled to disk are far enough ahead not to be on the wire yet.
+     */
+    public TrafficSnapshot snapshotTraffic(TrafficSnapshot previous) {
+        int directions = topology.linkCount() * 2;
+        FrameCollector frames = new FrameCollector(Math.min(TrafficSnapshot.MAX_FRAMES, events.size()));
+        events.scanMemory(frames);
+        float[] utilization = new float[topology.linkCount()];
+        if (previous != null && previous.getTopology() == topology) {
+            double seconds = (now - previous.getTime()) / 1e9;
+            for (int link = 0; link < utilization.length; link++) {
+                long bandwidth = topology.bandwidthBps(link);
+                if (seconds <= 0) {
+                    // Nothing ran since; keep the last measurement instead of showing idle links
+                    utilization[link] = previous.getUtilization(link);
+                } else if (bandwidth > 0) {
+                    long busiest = Math.max(directionBytes[link * 2] - previous.directionBytes(link * 2),
+                        directionBytes[link * 2 + 1] - previous.directionBytes(link * 2 + 1));
+                    utilization[link] = (float) Math.min(100, busiest * 8 * 100.0 / (bandwidth * seconds));
+                }
+            }
+        }
+        return new TrafficSnapshot(topology, now, frames.count, frames.directions, frames.starts, frames.ends,
+            Arrays.copyOf(directionBytes, directions), utilization);
+    }
+
+    // Turns pending arrivals back into the span each frame occupies on its link
+    private final class FrameCollector implements EventQueue.EventScanner {
+        final int[] directions;
+        final long[] starts;
+        final long[] ends;
+        int count;
+
+        FrameCollector(int capacity) {
+            directions = new int[capacity];
+            starts = new long[capacity];
+            ends = new long[capacity];
+        }
+
+        @Override
+        public boolean visit(long time, int type, int a, long b) {
+            if (count == directions.length) return false;
+            if (type != EVENT_ARRIVE) return true;
+            int link = a >>> 1;
+            long bandwidth = topology.bandwidthBps(link);
+            long txNanos = bandwidth > 0 ? packets.size((int) b) * 8_000_000_000L / bandwidth : 0;
+            directions[count] = a;
+            starts[count] = time - txNanos - topology.delayNanos(link);
+            ends[count] = time;
+            count++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package simulation;
+
+import java.io.*;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event queue that keeps a bounded number of events in memory and spills
+ * the far future to sorted runs on disk, for long simulations with many
+ * scheduled timers.
+ *
+ * Events before the horizon live in the in-memory heap, events at or after
+ * it are collected in a spill buffer that is written out as a sorted run
+ * whenever it fills up. When the heap runs dry the buffer and the runs are
+ * merged and the earliest events, at least half the memory limit's worth,
+ * are moved back into the heap; the horizon becomes the time of the next
+ * event left behind. Events keep their sequence numbers throughout, so the
+ * order is exactly that of a plain {@link EventQueue}. Until the heap first
+ * exceeds its limit nothing is spilled and the queue behaves like its parent.
+ *
+ * Copies share the run files, which are read-only and deleted once every
+ * copy has read past them or been closed. A queue that is dropped without
+ * {@link #close()} releases its files when it is garbage collected.
+ */
+public class SpillingEventQueue extends EventQueue {
+    private static final int RECORD_BYTES = 32;
+    private static final int MAX_RUNS = 16;
+    private static final int MERGE_FAN_IN = MAX_RUNS / 2;
+    private static final int MIN_BUFFER = 1024;
+    private static final int STREAM_BUFFER = 1 << 16;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path directory;
+    private final int memoryLimit;
+    private final int bufferLimit;
+
+    private long horizon = Long.MAX_VALUE;
+    // Spilled events waiting in memory and on disk
+    private EventQueue buffer;
+    private final List<Cursor> runs = new ArrayList<>();
+    private long spilled;
+    private long runsWritten;
+
+    /**
+     * @param directory where run files are created
+     * @param memoryLimit events kept in the in-memory heap before spilling
+     */
+    public SpillingEventQueue(Path directory, int memoryLimit) {
+        super(Math.min(memoryLimit, 1 << 20));
+        if (memoryLimit < 2 * MIN_BUFFER) {
+            throw new IllegalArgumentException("Memory limit must be at least " + 2 * MIN_BUFFER + " events");
+        }
+        this.directory = directory;
+        this.memoryLimit = memoryLimit;
+        this.bufferLimit = Math.max(MIN_BUFFER, memoryLimit / 4);
+        this.buffer = new EventQueue(bufferLimit);
+    }
+
+    @Override
+    protected void insert(long time, long seq, int type, int a, long b) {
+        if (time >= horizon) {
+            spill(time, seq, type, a, b);
+            return;
+        }
+        super.insert(time, seq, type, a, b);
+        if (super.size() > memoryLimit) lowerHorizon();
+    }
+
+    @Override
+    public boolean pop() {
+        if (super.isEmpty() && spilled > 0) refill();
+        return super.pop();
+    }
+
+    // Does not refill: a queue shared by forked simulators is only read until copied
+    @Override
+    public long peekTime() {
+        if (!super.isEmpty() || spilled == 0) return super.peekTime();
+        long time = buffer.peekTime();
+        for (Cursor cursor : runs) time = Math.min(time, cursor.time);
+        return time;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return super.isEmpty() && spilled == 0;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, super.size() + spilled);
+    }
+
+    public int getMemoryLimit() { return memoryLimit; }
+    public long getSpilledCount() { return spilled; }
+    public int getRunCount() { return runs.size(); }
+    public long getRunsWritten() { return runsWritten; }
+
+    /**
+     * Visits every pending event, including those spilled to disk.
+     */
+    @Override
+    public void forEach(EventVisitor visitor) {
+        forEachRecord((time, seq, type, a, b) -> visitor.visit(time, type, a, b));
+    }
+
+    @Override
+    protected void forEachRecord(EventSink sink) {
+        super.forEachRecord(sink);
+        buffer.forEachRecord(sink);
+        for (Cursor cursor : runs) cursor.forEachRemaining(sink);
+    }
+
+    @Override
+    public EventQueue copy() {
+        SpillingEventQueue copy = new SpillingEventQueue(directory, memoryLimit);
+        copyInto(copy);
+        return copy;
+    }
+
+    @Override
+    protected void copyInto(EventQueue target) {
+        super.copyInto(target);
+        if (!(target instanceof SpillingEventQueue)) {
+            // A plain queue has to hold everything
+            buffer.forEachRecord(target::insert);
+            for (Cursor cursor : runs) cursor.forEachRemaining(target::insert);
+            return;
+        }
+        SpillingEventQueue copy = (SpillingEventQueue) target;
+        copy.closeRuns();
+        copy.horizon = horizon;
+        copy.buffer = buffer.copy();
+        for (Cursor cursor : runs) copy.runs.add(cursor.duplicate());
+        copy.spilled = spilled;
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(peekNextSeq());
+        out.writeInt(size());
+        try {
+            forEachRecord((time, seq, type, a, b) -> {
+                try {
+                    out.writeLong(time);
+                    out.writeLong(seq);
+                    out.writeInt(type);
+                    out.writeInt(a);
+                    out.writeLong(b);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws IOException {
+        closeRuns();
+        horizon = Long.MAX_VALUE;
+        buffer = new EventQueue(bufferLimit);
+        spilled = 0;
+        super.readFrom(in);
+    }
+
+    /**
+     * Deletes the run files this queue still reads from. The queue is
+     * empty of spilled events afterwards.
+     */
+    public void close() {
+        closeRuns();
+        buffer = new EventQueue(bufferLimit);
+        spilled = 0;
+        horizon = Long.MAX_VALUE;
+    }
+
+    // After the heap was filled wholesale, spill until it is within the limit
+    void trim() {
+        while (super.size() > memoryLimit) {
+            int before = super.size();
+            lowerHorizon();
+            if (super.size() == before) return;
+        }
+    }
+
+    private void closeRuns() {
+        for (Cursor cursor : runs) cursor.close();
+        runs.clear();
+    }
+
+    private void spill(long time, long seq, int type, int a, long b) {
+        buffer.insert(time, seq, type, a, b);
+        spilled++;
+        if (buffer.size() >= bufferLimit) writeBuffer();
+    }
+
+    // The heap is over its limit: move its later half out to the spill
+    private void lowerHorizon() {
+        long[] times = new long[super.size()];
+        int[] count = new int[1];
+        super.forEachRecord((time, seq, type, a, b) -> times[count[0]++] = time);
+        Arrays.sort(times);
+        int split = times.length / 2;
+        // Equal times must stay on one side of the horizon
+        while (split < times.length && times[split] == times[0]) split++;
+        if (split == times.length) return;
+        long threshold = times[split];
+        horizon = threshold;
+        removeFrom(threshold, this::spill);
+    }
+
+    // Moves the earliest spilled events back into the heap
+    private void refill() {
+        long budget = memoryLimit / 2;
+        long lastTime = Long.MIN_VALUE;
+        while (spilled > 0) {
+            Cursor run = null;
+            boolean fromBuffer = !buffer.isEmpty();
+            long time = fromBuffer ? buffer.peekTime() : Long.MAX_VALUE;
+            long seq = fromBuffer ? buffer.peekSeq() : Long.MAX_VALUE;
+            for (Cursor cursor : runs) {
+                if (cursor.time < time || (cursor.time == time && cursor.seq < seq)) {
+                    run = cursor;
+                    time = cursor.time;
+                    seq = cursor.seq;
+                }
+            }
+            if (budget <= 0 && time != lastTime) {
+                horizon = time;
+                return;
+            }
+            if (run != null) {
+                super.insert(run.time, run.seq, run.type, run.a, run.b);
+                if (!run.advance()) {
+                    run.close();
+                    runs.remove(run);
+                }
+            } else {
+                buffer.pop();
+                super.insert(buffer.getLastTime(), buffer.getLastSeq(), buffer.getLastType(),
+                    buffer.getLastA(), buffer.getLastB());
+            }
+            spilled--;
+            budget--;
+            lastTime = time;
+        }
+        horizon = Long.MAX_VALUE;
+    }
+
+    private void writeBuffer() {
+        try {
+            Path file = newRunFile();
+            long count = buffer.size();
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER))) {
+                while (buffer.pop()) {
+                    out.writeLong(buffer.getLastTime());
+                    out.writeLong(buffer.getLastSeq());
+                    out.writeInt(buffer.getLastType());
+                    out.writeInt(buffer.getLastA());
+                    out.writeLong(buffer.getLastB());
+                }
+            }
+            buffer = new EventQueue(bufferLimit);
+            runs.add(new Cursor(new Run(file, count), 0));
+            runsWritten++;
+            if (runs.size() > MAX_RUNS) mergeRuns();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill events to " + directory, e);
+        }
+    }
+
+    // Too many runs make every refill step slow. Merge only the smallest
+    // ones, so runs grow in size tiers and each event is rewritten once per
+    // tier rather than on every merge
+    private void mergeRuns() throws IOException {
+        List<Cursor> merging = new ArrayList<>(runs);
+        merging.sort(Comparator.comparingLong(Cursor::remaining));
+        merging = new ArrayList<>(merging.subList(0, MERGE_FAN_IN));
+        runs.removeAll(merging);
+        Path file = newRunFile();
+        long count = 0;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER))) {
+            while (!merging.isEmpty()) {
+                Cursor first = merging.get(0);
+                for (Cursor cursor : merging) {
+                    if (cursor.time < first.time || (cursor.time == first.time && cursor.seq < first.seq)) {
+                        first = cursor;
+                    }
+                }
+                out.writeLong(first.time);
+                out.writeLong(first.seq);
+                out.writeInt(first.type);
+                out.writeInt(first.a);
+                out.writeLong(first.b);
+                count++;
+                if (!first.advance()) {
+                    first.close();
+                    merging.remove(first);
+                }
+            }
+        }
+        runs.add(new Cursor(new Run(file, count), 0));
+    }
+
+    private Path newRunFile() throws IOException {
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, "events-", ".run");
+    }
+
+    /**
+     * A sorted run file, deleted when the last cursor over it closes.
+     */
+    private static final class Run {
+        final Path file;
+        final long count;
+        final AtomicInteger readers = new AtomicInteger();
+
+        Run(Path file, long count) {
+            this.file = file;
+            this.count = count;
+        }
+
+        void release() {
+            if (readers.decrementAndGet() == 0) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.err.println("Could not delete " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reading position in a run, with the record under it loaded.
+     */
+    private static final class Cursor {
+        final Run run;
+        final DataInputStream in;
+        // Closes the stream and releases the run, on close() or once unreachable
+        final Cleaner.Cleanable cleanable;
+        long index;
+        long time;
+        long seq;
+        int type;
+        int a;
+        long b;
+
+        Cursor(Run run, long index) throws IOException {
+            this.run = run;
+            this.index = index;
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), STREAM_BUFFER));
+            run.readers.incrementAndGet();
+            cleanable = CLEANER.register(this, new Release(run, in));
+            try {
+                in.skipNBytes(index * RECORD_BYTES);
+                read();
+            } catch (IOException e) {
+                cleanable.clean();
+                throw e;
+            }
+        }
+
+        private void read() throws IOException {
+            time = in.readLong();
+            seq = in.readLong();
+            type = in.readInt();
+            a = in.readInt();
+            b = in.readLong();
+        }
+
+        /**
+         * Moves to the next record.
+         * @return false at the end of the run
+         */
+        boolean advance() {
+            if (++index >= run.count) return false;
+            try {
+                read();
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read spilled events from " + run.file, e);
+            }
+        }
+
+        long remaining() {
+            return run.count - index;
+        }
+
+        Cursor duplicate() {
+            try {
+                return new Cursor(run, index);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read spilled events from " + run.file, e);
+            }
+        }
+
+        // The current record and everything after it, without moving
+        void forEachRemaining(EventSink sink) {
+            sink.accept(time, seq, type, a, b);
+            if (index + 1 >= run.count) return;
+            try (DataInputStream rest = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(run.file), STREAM_BUFFER))) {
+                rest.skipNBytes((index + 1) * RECORD_BYTES);
+                for (long i = index + 1; i < run.count; i++) {
+                    sink.accept(rest.readLong(), rest.readLong(), rest.readInt(), rest.readInt(), rest.readLong());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read spilled events from " + run.file, e);
+            }
+        }
+
+        void close() {
+            cleanable.clean();
+        }
+    }
+
+    // Must not refer to the cursor, or it would never become unreachable
+    private static final class Release implements Runnable {
+        private final Run run;
+        private final InputStream in;
+
+        Release(Run run, InputStream in) {
+            this.run = run;
+            this.in = in;
+        }
+
+        @Override
+        public void run() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing left to read anyway
+            }
+            run.release();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package simulation;
+
+import models.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Immutable, index-based snapshot of a network for simulation and analysis.
+ *
+ * Devices are numbered 0..n-1 ("nodes") and links 0..m-1. Adjacency is in
+ * compressed sparse row form: the neighbours of node v are
+ * {@code adjNode[adjStart[v] .. adjStart[v+1])}, with the link used to reach
+ * each one in {@code adjLink}. Nothing here refers back to the live model,
+ * so a snapshot can be shared freely between threads.
+ */
+public final class Topology {
+    public static final byte COMPUTER = DeviceStore.TYPE_COMPUTER;
+    public static final byte SWITCH = DeviceStore.TYPE_SWITCH;
+    public static final byte ROUTER = DeviceStore.TYPE_ROUTER;
+
+    private final int[] deviceIds;
+    private final byte[] types;
+    private final int[] ips;
+    private final String[] names;
+
+    private final int[] adjStart;
+    private final int[] adjNode;
+    private final int[] adjLink;
+
+    private final int[] linkA;
+    private final int[] linkB;
+    private final long[] bandwidthBps;
+    private final long[] delayNanos;
+    private final double[] lossRate;
+    private final int[] mtu;
+    private final QueueDiscipline[] disciplines;
+    private final int[] queueCapacity;
+
+    // Routers only: compiled FIB, interface index -> link (-1 if unattached)
+    // and interface index -> configured address (0 if none)
+    private final ForwardingTable[] fibs;
+    private final int[][] interfaceLinks;
+    private final int[][] interfaceAddresses;
+
+    // Derived on construction: the L2 segment (switches and hosts joined
+    // without a router) of each non-router node and of each link, and per
+    // segment the attached routers with their address and connected prefix
+    private int[] segments;
+    private int[] linkSegments;
+    private int[] segmentRouterStart;
+    private int[] segmentRouters;
+    private int[] segmentAddresses;
+    private int[] segmentPrefixes;
+    private int[] segmentLengths;
+
+    private Topology(int nodes, int links) {
+        deviceIds = new int[nodes];
+        types = new byte[nodes];
+        ips = new int[nodes];
+        names = new String[nodes];
+        adjStart = new int[nodes + 1];
+        adjNode = new int[links * 2];
+        adjLink = new int[links * 2];
+        linkA = new int[links];
+        linkB = new int[links];
+        bandwidthBps = new long[links];
+        delayNanos = new long[links];
+        lossRate = new double[links];
+        mtu = new int[links];
+        disciplines = new QueueDiscipline[links];
+        queueCapacity = new int[links];
+        fibs = new ForwardingTable[nodes];
+        interfaceLinks = new int[nodes][];
+        interfaceAddresses = new int[nodes][];
+    }
+
+    /**
+     * Takes a snapshot of the given devices and connections. Connections
+     * to devices not in the list are ignored.
+     */
+    public static Topology of(List<Device> devices, List<Connection> connections) {
+        Map<Device, Integer> index = new HashMap<>(devices.size() * 2);
+        for (Device device : devices) {
+            index.putIfAbsent(device, index.size());
+        }
+        List<Connection> usable = new ArrayList<>(connections.size());
+        for (Connection conn : connections) {
+            if (index.containsKey(conn.getDevice1()) && index.containsKey(conn.getDevice2())) {
+                usable.add(conn);
+            }
+        }
+
+        Topology t = new Topology(index.size(), usable.size());
+        Map<Long, Integer> linkByPair = new HashMap<>(usable.size() * 2);
+        for (Map.Entry<Device, Integer> e : index.entrySet()) {
+            Device device = e.getKey();
+            int v = e.getValue();
+            t.deviceIds[v] = device.getId();
+            t.types[v] = DeviceStore.typeOf(device);
+            t.ips[v] = IpAddress.parseOrDefault(device.getIpAddress(), 0);
+            t.names[v] = device.getName();
+        }
+        int[] degree = new int[index.size()];
+        for (int l = 0; l < usable.size(); l++) {
+            Connection conn = usable.get(l);
+            int a = index.get(conn.getDevice1());
+            int b = index.get(conn.getDevice2());
+            t.linkA[l] = a;
+            t.linkB[l] = b;
+            t.bandwidthBps[l] = conn.getBandwidthBps();
+            t.delayNanos[l] = conn.getPropagationDelayNanos();
+            t.lossRate[l] = conn.getLossRate();
+            t.mtu[l] = conn.getMtu();
+            t.disciplines[l] = conn.getQueueDiscipline();
+            t.queueCapacity[l] = conn.getQueueCapacity();
+            degree[a]++;
+            degree[b]++;
+            linkByPair.put(pair(a, b), l);
+        }
+        t.fillAdjacency(degree);
+
+        for (Map.Entry<Device, Integer> e : index.entrySet()) {
+            if (!(e.getKey() instanceof Router)) continue;
+            Router router = (Router) e.getKey();
+            int v = e.getValue();
+            // Own copy of the table so lookups never race with edits to the model
+            ForwardingTable fib = new ForwardingTable();
+            router.getForwardingTable().getRoutes().forEach(fib::add);
+            t.fibs[v] = fib;
+            List<RouterInterface> ifaces = router.getInterfaces();
+            t.interfaceLinks[v] = new int[ifaces.size()];
+            t.interfaceAddresses[v] = new int[ifaces.size()];
+            for (RouterInterface iface : ifaces) {
+                Integer other = iface.getDevice() != null ? index.get(iface.getDevice()) : null;
+                Integer link = other != null ? linkByPair.get(pair(v, other)) : null;
+                t.interfaceLinks[v][iface.getIndex()] = link != null ? link : -1;
+                t.interfaceAddresses[v][iface.getIndex()] = iface.isConfigured() ? iface.getAddress() : 0;
+            }
+        }
+        t.findSegments();
+        return t;
+    }
+
+    private void fillAdjacency(int[] degree) {
+        for (int v = 0; v < degree.length; v++) {
+            adjStart[v + 1] = adjStart[v] + degree[v];
+        }
+        int[] fill = Arrays.copyOf(adjStart, degree.length);
+        for (int l = 0; l < linkA.length; l++) {
+            int a = linkA[l];
+            int b = linkB[l];
+            adjNode[fill[a]] = b;
+            adjLink[fill[a]++] = l;
+            adjNode[fill[b]] = a;
+            adjLink[fill[b]++] = l;
+        }
+    }
+
+    private static long pair(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    public int nodeCount() { return types.length; }
+    public int linkCount() { return linkA.length; }
+
+    public int deviceId(int node) { return deviceIds[node]; }
+    public byte type(int node) { return types[node]; }
+    public int ip(int node) { return ips[node]; }
+    public String name(int node) { return names[node]; }
+
+    public int adjStart(int node) { return adjStart[node]; }
+    public int adjEnd(int node) { return adjStart[node + 1]; }
+    public int adjNode(int slot) { return adjNode[slot]; }
+    public int adjLink(int slot) { return adjLink[slot]; }
+    public int degree(int node) { return adjStart[node + 1] - adjStart[node]; }
+
+    public int linkA(int link) { return linkA[link]; }
+    public int linkB(int link) { return linkB[link]; }
+    public long bandwidthBps(int link) { return bandwidthBps[link]; }
+    public long delayNanos(int link) { return delayNanos[link]; }
+    public double lossRate(int link) { return lossRate[link]; }
+    public int mtu(int link) { return mtu[link]; }
+    public QueueDiscipline discipline(int link) { return disciplines[link]; }
+    public int queueCapacity(int link) { return queueCapacity[link]; }
+
+    /**
+     * Direction index of a link as seen from the sending node: 2*link for
+     * a to b, 2*link+1 for b to a.
+     */
+    public int direction(int link, int fromNode) {
+        return linkA[link] == fromNode ? link * 2 : link * 2 + 1;
+    }
+
+    public ForwardingTable fib(int node) { return fibs[node]; }
+
+    /**
+     * Link attached to a router interface, or -1.
+     */
+    public int interfaceLink(int node, int iface) {
+        int[] links = interfaceLinks[node];
+        return links != null && iface >= 0 && iface < links.length ? links[iface] : -1;
+    }
+
+    /**
+     * Node a frame leaving {@code from} over {@code link} is addressed to on
+     * its way to {@code destination}: a router at the far end of the link,
+     * the router on the far segment owning {@code gatewayIp} if one is
+     * given, the destination itself if it is on that segment, or else a
+     * host's default router. -1 if there is none.
+     */
+    public int nextHop(int from, int link, int destination, int gatewayIp) {
+        int other = linkA[link] == from ? linkB[link] : linkA[link];
+        if (types[other] == ROUTER) return other;
+        int segment = linkSegments[link];
+        if (gatewayIp != 0) return segmentRouter(segment, gatewayIp, from, false);
+        if (attached(destination, segment)) return destination;
+        return types[from] != ROUTER ? segmentRouter(segment, ips[from], from, true) : -1;
+    }
+
+    private boolean attached(int node, int segment) {
+        if (types[node] != ROUTER) return segments[node] == segment;
+        for (int s = adjStart[node]; s < adjStart[node + 1]; s++) {
+            if (linkSegments[adjLink[s]] == segment) return true;
+        }
+        return false;
+    }
+
+    // Router on a segment that owns an address, by its own or its interface
+    // address or else the longest connected prefix; optionally the first router if none matches
+    private int segmentRouter(int segment, int address, int exclude, boolean anyRouter) {
+        int best = -1;
+        int bestLength = -1;
+        int first = -1;
+        for (int i = segmentRouterStart[segment]; i < segmentRouterStart[segment + 1]; i++) {
+            int router = segmentRouters[i];
+            if (router == exclude) continue;
+            if (ips[router] == address || segmentAddresses[i] == address) return router;
+            if (first < 0) first = router;
+            int length = segmentLengths[i];
+            if (length > bestLength && ((address ^ segmentPrefixes[i]) & IpAddress.mask(length)) == 0) {
+                best = router;
+                bestLength = length;
+            }
+        }
+        return best >= 0 || !anyRouter ? best : first;
+    }
+
+    private void findSegments() {
+        int nodes = nodeCount();
+        segments = new int[nodes];
+        Arrays.fill(segments, -1);
+        int count = 0;
+        int[] stack = new int[nodes];
+        for (int v = 0; v < nodes; v++) {
+            if (types[v] == ROUTER || segments[v] >= 0) continue;
+            int top = 0;
+            stack[top++] = v;
+            segments[v] = count;
+            while (top > 0) {
+                int u = stack[--top];
+                for (int s = adjStart[u]; s < adjStart[u + 1]; s++) {
+                    int w = adjNode[s];
+                    if (types[w] != ROUTER && segments[w] < 0) {
+                        segments[w] = count;
+                        stack[top++] = w;
+                    }
+                }
+            }
+            count++;
+        }
+        // A link between two routers is a segment of its own
+        linkSegments = new int[linkCount()];
+        for (int l = 0; l < linkA.length; l++) {
+            int a = segments[linkA[l]];
+            int b = segments[linkB[l]];
+            linkSegments[l] = a >= 0 ? a : b >= 0 ? b : count++;
+        }
+
+        segmentRouterStart = new int[count + 1];
+        for (int v = 0; v < nodes; v++) {
+            if (types[v] != ROUTER) continue;
+            for (int s = adjStart[v]; s < adjStart[v + 1]; s++) {
+                segmentRouterStart[linkSegments[adjLink[s]] + 1]++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            segmentRouterStart[i + 1] += segmentRouterStart[i];
+        }
+        segmentRouters = new int[segmentRouterStart[count]];
+        segmentAddresses = new int[segmentRouters.length];
+        segmentPrefixes = new int[segmentRouters.length];
+        segmentLengths = new int[segmentRouters.length];
+        int[] fill = Arrays.copyOf(segmentRouterStart, count);
+        for (int v = 0; v < nodes; v++) {
+            if (types[v] != ROUTER) continue;
+            for (int s = adjStart[v]; s < adjStart[v + 1]; s++) {
+                int i = fill[linkSegments[adjLink[s]]]++;
+                int iface = interfaceOf(v, adjLink[s]);
+                segmentRouters[i] = v;
+                segmentLengths[i] = -1;
+                if (iface < 0) continue;
+                segmentAddresses[i] = interfaceAddresses[v][iface];
+                ForwardingTable.Route connected = connectedRoute(v, iface);
+                if (connected != null) {
+                    segmentPrefixes[i] = connected.getPrefix();
+                    segmentLengths[i] = connected.getLength();
+                }
+            }
+        }
+    }
+
+    private int interfaceOf(int router, int link) {
+        int[] links = interfaceLinks[router];
+        if (links == null) return -1;
+        for (int i = 0; i < links.length; i++) {
+            if (links[i] == link) return i;
+        }
+        return -1;
+    }
+
+    private ForwardingTable.Route connectedRoute(int router, int iface) {
+        for (ForwardingTable.Route route : fibs[router].getRoutes()) {
+            if (route.getType() == ForwardingTable.Route.Type.CONNECTED && route.getInterfaceIndex() == iface) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Node index of a device id, or -1. Linear; intended for setup, not hot paths.
+     */
+    public int nodeOf(int deviceId) {
+        for (int v = 0; v < deviceIds.length; v++) {
+            if (deviceIds[v] == deviceId) return v;
+        }
+        return -1;
+    }
+
+    public int nodeByName(String name) {
+        for (int v = 0; v < names.length; v++) {
+            if (names[v].equalsIgnoreCase(name)) return v;
+        }
+        return -1;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(nodeCount());
+        out.writeInt(linkCount());
+        for (int v = 0; v < nodeCount(); v++) {
+            out.writeInt(deviceIds[v]);
+            out.writeByte(types[v]);
+            out.writeInt(ips[v]);
+            out.writeUTF(names[v]);
+        }
+        for (int l = 0; l < linkCount(); l++) {
+            out.writeInt(linkA[l]);
+            out.writeInt(linkB[l]);
+            out.writeLong(bandwidthBps[l]);
+            out.writeLong(delayNanos[l]);
+            out.writeDouble(lossRate[l]);
+            out.writeInt(mtu[l]);
+            out.writeByte(disciplines[l].ordinal());
+            out.writeInt(queueCapacity[l]);
+        }
+        for (int v = 0; v < nodeCount(); v++) {
+            if (fibs[v] == null) {
+                out.writeBoolean(false);
+                continue;
+            }
+            out.writeBoolean(true);
+            out.writeInt(interfaceLinks[v].length);
+            for (int link : interfaceLinks[v]) out.writeInt(link);
+            for (int address : interfaceAddresses[v]) out.writeInt(address);
+            List<ForwardingTable.Route> routes = fibs[v].getRoutes();
+            out.writeInt(routes.size());
+            for (ForwardingTable.Route r : routes) {
+                out.writeInt(r.getPrefix());
+                out.writeByte(r.getLength());
+                out.writeInt(r.getGateway());
+                out.writeInt(r.getInterfaceIndex());
+                out.writeByte(r.getType().ordinal());
+            }
+        }
+    }
+
+    /**
+     * @param addresses whether the stream has router interface addresses
+     */
+    static Topology readFrom(DataInput in, boolean addresses) throws IOException {
+        int nodes = in.readInt();
+        int links = in.readInt();
+        Topology t = new Topology(nodes, links);
+        for (int v = 0; v < nodes; v++) {
+            t.deviceIds[v] = in.readInt();
+            t.types[v] = in.readByte();
+            t.ips[v] = in.readInt();
+            t.names[v] = in.readUTF();
+        }
+        int[] degree = new int[nodes];
+        QueueDiscipline[] disciplineValues = QueueDiscipline.values();
+        for (int l = 0; l < links; l++) {
+            t.linkA[l] = in.readInt();
+            t.linkB[l] = in.readInt();
+            t.bandwidthBps[l] = in.readLong();
+            t.delayNanos[l] = in.readLong();
+            t.lossRate[l] = in.readDouble();
+            t.mtu[l] = in.readInt();
+            t.disciplines[l] = disciplineValues[in.readByte()];
+            t.queueCapacity[l] = in.readInt();
+            degree[t.linkA[l]]++;
+            degree[t.linkB[l]]++;
+        }
+        t.fillAdjacency(degree);
+        ForwardingTable.Route.Type[] routeTypes = ForwardingTable.Route.Type.values();
+        for (int v = 0; v < nodes; v++) {
+            if (!in.readBoolean()) continue;
+            int[] ifaceLinks = new int[in.readInt()];
+            for (int i = 0; i < ifaceLinks.length; i++) ifaceLinks[i] = in.readInt();
+            t.interfaceLinks[v] = ifaceLinks;
+            t.interfaceAddresses[v] = new int[ifaceLinks.length];
+            if (addresses) {
+                for (int i = 0; i < ifaceLinks.length; i++) t.interfaceAddresses[v][i] = in.readInt();
+            }
+            ForwardingTable fib = new ForwardingTable();
+            int routes = in.readInt();
+            for (int i = 0; i < routes; i++) {
+                fib.add(new ForwardingTable.Route(in.readInt(), in.readByte(), in.readInt(), in.readInt(),
+                    routeTypes[in.readByte()]));
+            }
+            t.fibs[v] = fib;
+        }
+        t.findSegments();
+        return t;
+    }
+}
@@ -0,0 +1,69 @@
+package simulation;
+
+/**
+ * Immutable picture of the packets on the wire and the load of every link
+ * at one simulated instant, for drawing on another thread.
+ *
+ * A frame occupies its link from the moment its first bit is sent until
+ * its last bit arrives, so its position at simulated time t is
+ * {@code (t - start) / (end - start)} of the way along its direction.
+ */
+public final class TrafficSnapshot {
+    // Frames beyond this are not recorded; the picture would be solid anyway
+    public static final int MAX_FRAMES = 50_000;
+
+    private final Topology topology;
+    private final long time;
+    private final long wallNanos;
+    private final int frameCount;
+    private final int[] frameDirections;
+    private final long[] frameStarts;
+    private final long[] frameEnds;
+    private final long[] directionBytes;
+    private final float[] utilization;
+
+    TrafficSnapshot(Topology topology, long time, int frameCount, int[] frameDirections,
+            long[] frameStarts, long[] frameEnds, long[] directionBytes, float[] utilization) {
+        this.topology = topology;
+        this.time = time;
+        this.wallNanos = System.nanoTime();
+        this.frameCount = frameCount;
+        this.frameDirections = frameDirections;
+        this.frameStarts = frameStarts;
+        this.frameEnds = frameEnds;
+        this.directionBytes = directionBytes;
+        this.utilization = utilization;
+    }
+
+    public Topology getTopology() { return topology; }
+    public long getTime() { return time; }
+
+    /**
+     * {@link System#nanoTime()} when the snapshot was taken.
+     */
+    public long getWallNanos() { return wallNanos; }
+
+    public int getFrameCount() { return frameCount; }
+    public int frameDirection(int frame) { return frameDirections[frame]; }
+    public long frameStart(int frame) { return frameStarts[frame]; }
+    public long frameEnd(int frame) { return frameEnds[frame]; }
+
+    /**
+     * Fraction of the way along its direction the frame has travelled at
+     * the given simulated time, clamped to [0, 1].
+     */
+    public float frameProgress(int frame, long atTime) {
+        long span = frameEnds[frame] - frameStarts[frame];
+        if (span <= 0) return 1f;
+        double progress = (double) (atTime - frameStarts[frame]) / span;
+        return (float) Math.max(0, Math.min(1, progress));
+    }
+
+    /**
+     * Utilization of the busier direction of the link, in percent, since
+     * the previous snapshot.
+     */
+    public float getUtilization(int link) { return utilization[link]; }
+
+    long directionBytes(int direction) { return directionBytes[direction]; }
+}
@@ -0,0 +1,26 @@
+package stats;
+
+/**
+ * Quantities recorded over time, per link or per device.
+ */
+public enum Metric {
+    LINK_UTILIZATION("Utilization", "%", true),
+    LINK_DROPS("Drops", "pkt/s", true),
+    DEVICE_THROUGHPUT("Received", "pkt/s", false),
+    DEVICE_DROPS("Drops", "pkt/s", false),
+    DEVICE_LATENCY("Latency", "ms", false);
+
+    private final String label;
+    private final String unit;
+    private final boolean perLink;
+
+    Metric(String label, String unit, boolean perLink) {
+        this.label = label;
+        this.unit = unit;
+        this.perLink = perLink;
+    }
+
+    public String getLabel() { return label; }
+    public String getUnit() { return unit; }
+    public boolean isPerLink() { return perLink; }
+}
@@ -0,0 +1,77 @@
+package stats;
+
+import java.util.Arrays;
+
+/**
+ * One metric for a set of entities at raw, one second and one minute
+ * resolution. Raw samples are averaged into the coarser rings as their
+ * buckets complete; NaN samples (no data) are left out of the averages.
+ */
+public class MultiResolutionSeries {
+    private final int entities;
+    private final SeriesRing[] rings = new SeriesRing[Resolution.values().length];
+    // Partial buckets for SECOND and MINUTE
+    private final double[][] sums = new double[rings.length][];
+    private final int[][] counts = new int[rings.length][];
+    private final long[] buckets = new long[rings.length];
+    private final float[][] averages = new float[rings.length][];
+
+    public MultiResolutionSeries(int entities, int rawCapacity, int secondCapacity, int minuteCapacity) {
+        this.entities = entities;
+        rings[Resolution.RAW.ordinal()] = new SeriesRing(entities, rawCapacity);
+        rings[Resolution.SECOND.ordinal()] = new SeriesRing(entities, secondCapacity);
+        rings[Resolution.MINUTE.ordinal()] = new SeriesRing(entities, minuteCapacity);
+        for (int r = 1; r < rings.length; r++) {
+            sums[r] = new double[entities];
+            counts[r] = new int[entities];
+            buckets[r] = -1;
+            averages[r] = new float[entities];
+        }
+    }
+
+    /**
+     * Adds a raw sample covering the interval that ends at {@code time}.
+     */
+    public void add(long time, float[] values) {
+        rings[0].add(time, values);
+        accumulate(1, time, values);
+    }
+
+    private void accumulate(int r, long time, float[] values) {
+        // A sample ending exactly on a boundary belongs to the bucket before it
+        long bucket = (time - 1) / Resolution.values()[r].getBucketNanos();
+        if (buckets[r] >= 0 && bucket != buckets[r]) flush(r);
+        buckets[r] = bucket;
+        double[] sum = sums[r];
+        int[] count = counts[r];
+        for (int e = 0; e < entities; e++) {
+            float v = values[e];
+            if (!Float.isNaN(v)) {
+                sum[e] += v;
+                count[e]++;
+            }
+        }
+    }
+
+    private void flush(int r) {
+        double[] sum = sums[r];
+        int[] count = counts[r];
+        float[] out = averages[r];
+        for (int e = 0; e < entities; e++) {
+            out[e] = count[e] > 0 ? (float) (sum[e] / count[e]) : Float.NaN;
+        }
+        long end = (buckets[r] + 1) * Resolution.values()[r].getBucketNanos();
+        rings[r].add(end, out);
+        Arrays.fill(sum, 0);
+        Arrays.fill(count, 0);
+        if (r + 1 < rings.length) accumulate(r + 1, end, out);
+    }
+
+    public SeriesRing getRing(Resolution resolution) {
+        return rings[resolution.ordinal()];
+    }
+
+    public float[] get(Resolution resolution, int entity) {
+        return rings[resolution.ordinal()].get(entity);
+    }
+}
@@ -0,0 +1,21 @@
+package stats;
+
+/**
+ * Sampling resolutions kept for every series.
+ */
+public enum Resolution {
+    RAW(0),
+    SECOND(1_000_000_000L),
+    MINUTE(60_000_000_000L);
+
+    private final long bucketNanos;
+
+    Resolution(long bucketNanos) {
+        this.bucketNanos = bucketNanos;
+    }
+
+    /** Bucket width, or 0 for raw samples. */
+    public long getBucketNanos() {
+        return bucketNanos;
+    }
+}
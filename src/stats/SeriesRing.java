@@ -0,0 +1,51 @@
+package stats;
+
+/**
+ * Fixed-size ring of samples for many entities that are sampled together.
+ * One row per sample time holds a value per entity, so all entities share
+ * a single head and the data is one flat float array.
+ */
+public class SeriesRing {
+    private final int entities;
+    private final int capacity;
+    private final float[] data;
+    private int head;
+    private int count;
+    private long lastTime = -1;
+
+    public SeriesRing(int entities, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.entities = entities;
+        this.capacity = capacity;
+        this.data = new float[entities * capacity];
+    }
+
+    /**
+     * Appends a row, overwriting the oldest once the ring is full.
+     */
+    public void add(long time, float[] row) {
+        System.arraycopy(row, 0, data, head * entities, entities);
+        head = (head + 1) % capacity;
+        if (count < capacity) count++;
+        lastTime = time;
+    }
+
+    /**
+     * Copies one entity's samples, oldest first.
+     */
+    public float[] get(int entity) {
+        float[] values = new float[count];
+        int start = (head - count + capacity) % capacity;
+        for (int i = 0; i < count; i++) {
+            values[i] = data[((start + i) % capacity) * entities + entity];
+        }
+        return values;
+    }
+
+    public int size() { return count; }
+    public int getCapacity() { return capacity; }
+    public int getEntities() { return entities; }
+
+    /** Time of the newest sample, or -1 if empty. */
+    public long getLastTime() { return lastTime; }
+}
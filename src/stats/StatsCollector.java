@@ -0,0 +1,216 @@
+package stats;
+
+import simulation.Simulator;
+import simulation.Topology;
+
+/**
+ * Samples a simulator's per-link and per-device counters at a fixed
+ * simulated interval into bounded multi-resolution series.
+ *
+ * Sampling only reads counters the simulator keeps anyway, so the event
+ * loop itself is untouched. Readers on other threads never see the rings:
+ * the collector publishes an immutable {@link StatsSnapshot} of the
+ * watched device through a volatile field. A snapshot copies every ring
+ * of the device and its links, so a new one is only taken at the end of
+ * {@link #runSampled} and only once the previous one has been read; the
+ * copy rate follows the reader's polling rate, not the sample rate.
+ * All other methods must be called from the thread driving the simulator.
+ *
+ * Every link keeps its own rings, which with the default capacities is
+ * 840 floats per link metric, about 6.6 KB per link.
+ */
+public class StatsCollector {
+    public static final long DEFAULT_INTERVAL_NANOS = 100_000_000L;
+    public static final int DEFAULT_RAW_CAPACITY = 300;
+    public static final int DEFAULT_SECOND_CAPACITY = 300;
+    public static final int DEFAULT_MINUTE_CAPACITY = 240;
+
+    private final Topology topology;
+    private final long intervalNanos;
+    private final MultiResolutionSeries[] series = new MultiResolutionSeries[Metric.values().length];
+
+    private long lastTime;
+    private final long[] lastDirectionBytes;
+    private final long[] lastDirectionDrops;
+    private final long[] lastDelivered;
+    private final long[] lastLatency;
+    private final long[] lastNodeDrops;
+    private final float[][] rows = new float[Metric.values().length][];
+
+    private volatile int watchedDevice = -1;
+    private int watchedNode = -1;
+    private int resolvedDevice = -1;
+    private volatile StatsSnapshot snapshot;
+    // Set when the published snapshot has been read, cleared on publish
+    private volatile boolean snapshotRead = true;
+    private boolean sampledSincePublish;
+
+    public StatsCollector(Simulator sim) {
+        this(sim, DEFAULT_INTERVAL_NANOS, DEFAULT_RAW_CAPACITY, DEFAULT_SECOND_CAPACITY, DEFAULT_MINUTE_CAPACITY);
+    }
+
+    public StatsCollector(Simulator sim, long intervalNanos, int rawCapacity, int secondCapacity, int minuteCapacity) {
+        if (intervalNanos <= 0) throw new IllegalArgumentException("Interval must be positive");
+        this.topology = sim.getTopology();
+        this.intervalNanos = intervalNanos;
+        int links = topology.linkCount();
+        int nodes = topology.nodeCount();
+        for (Metric metric : Metric.values()) {
+            int entities = metric.isPerLink() ? links : nodes;
+            series[metric.ordinal()] = new MultiResolutionSeries(entities, rawCapacity, secondCapacity, minuteCapacity);
+            rows[metric.ordinal()] = new float[entities];
+        }
+        lastDirectionBytes = new long[links * 2];
+        lastDirectionDrops = new long[links * 2];
+        lastDelivered = new long[nodes];
+        lastLatency = new long[nodes];
+        lastNodeDrops = new long[nodes];
+        // Start from the simulator's current counters, which matters after a restore
+        lastTime = sim.getTime();
+        for (int d = 0; d < links * 2; d++) {
+            lastDirectionBytes[d] = sim.getDirectionBytes(d);
+            lastDirectionDrops[d] = sim.getDirectionDrops(d);
+        }
+        for (int v = 0; v < nodes; v++) {
+            lastDelivered[v] = sim.getNodeDelivered(v);
+            lastLatency[v] = sim.getNodeLatencyNanos(v);
+            lastNodeDrops[v] = sim.getNodeDrops(v);
+        }
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * Runs the simulator to the given time, sampling at every interval boundary on the way.
+     */
+    public void runSampled(Simulator sim, long untilNanos) {
+        long next = (sim.getTime() / intervalNanos + 1) * intervalNanos;
+        while (next <= untilNanos) {
+            sim.run(next);
+            sample(sim);
+            next += intervalNanos;
+        }
+        sim.run(untilNanos);
+        if ((sampledSincePublish || watchedDevice != resolvedDevice) && snapshotRead) publish();
+    }
+
+    /**
+     * Records the change in the simulator's counters since the previous sample.
+     */
+    public void sample(Simulator sim) {
+        long now = sim.getTime();
+        if (now <= lastTime) return;
+        double seconds = (now - lastTime) / 1e9;
+
+        float[] utilization = rows[Metric.LINK_UTILIZATION.ordinal()];
+        float[] linkDrops = rows[Metric.LINK_DROPS.ordinal()];
+        for (int link = 0; link < topology.linkCount(); link++) {
+            long drops = 0;
+            long busiest = 0;
+            for (int d = link * 2; d <= link * 2 + 1; d++) {
+                long bytes = sim.getDirectionBytes(d);
+                long dropped = sim.getDirectionDrops(d);
+                busiest = Math.max(busiest, bytes - lastDirectionBytes[d]);
+                drops += dropped - lastDirectionDrops[d];
+                lastDirectionBytes[d] = bytes;
+                lastDirectionDrops[d] = dropped;
+            }
+            long bandwidth = topology.bandwidthBps(link);
+            // Utilization of the busier direction
+            utilization[link] = bandwidth > 0 ? (float) (busiest * 8 * 100.0 / (bandwidth * seconds)) : 0;
+            linkDrops[link] = (float) (drops / seconds);
+        }
+
+        float[] received = rows[Metric.DEVICE_THROUGHPUT.ordinal()];
+        float[] nodeDrops = rows[Metric.DEVICE_DROPS.ordinal()];
+        float[] latency = rows[Metric.DEVICE_LATENCY.ordinal()];
+        for (int v = 0; v < topology.nodeCount(); v++) {
+            long delivered = sim.getNodeDelivered(v) - lastDelivered[v];
+            long latencySum = sim.getNodeLatencyNanos(v) - lastLatency[v];
+            long dropped = sim.getNodeDrops(v) - lastNodeDrops[v];
+            received[v] = (float) (delivered / seconds);
+            nodeDrops[v] = (float) (dropped / seconds);
+            latency[v] = delivered > 0 ? (float) (latencySum / 1e6 / delivered) : Float.NaN;
+            lastDelivered[v] += delivered;
+            lastLatency[v] += latencySum;
+            lastNodeDrops[v] += dropped;
+        }
+
+        for (Metric metric : Metric.values()) {
+            series[metric.ordinal()].add(now, rows[metric.ordinal()]);
+        }
+        lastTime = now;
+        sampledSincePublish = true;
+    }
+
+    public MultiResolutionSeries getSeries(Metric metric) {
+        return series[metric.ordinal()];
+    }
+
+    /**
+     * Selects the device whose series are published in snapshots, or -1
+     * for none. May be called from any thread; takes effect on the next
+     * {@link #publish()}.
+     */
+    public void watch(int deviceId) {
+        watchedDevice = deviceId;
+    }
+
+    /**
+     * Latest published snapshot, or null if no device is watched.
+     * Safe to call from any thread.
+     */
+    public StatsSnapshot getSnapshot() {
+        if (!snapshotRead) snapshotRead = true;
+        return snapshot;
+    }
+
+    /**
+     * Publishes a fresh snapshot of the watched device.
+     */
+    public void publish() {
+        sampledSincePublish = false;
+        snapshotRead = false;
+        int device = watchedDevice;
+        if (device != resolvedDevice) {
+            resolvedDevice = device;
+            watchedNode = device >= 0 ? topology.nodeOf(device) : -1;
+        }
+        int node = watchedNode;
+        if (node < 0) {
+            snapshot = null;
+            return;
+        }
+        Resolution[] resolutions = Resolution.values();
+        Metric[] metrics = Metric.values();
+        float[][][] deviceSeries = new float[metrics.length][][];
+        for (Metric metric : metrics) {
+            if (metric.isPerLink()) continue;
+            float[][] byResolution = new float[resolutions.length][];
+            for (Resolution resolution : resolutions) {
+                byResolution[resolution.ordinal()] = series[metric.ordinal()].get(resolution, node);
+            }
+            deviceSeries[metric.ordinal()] = byResolution;
+        }
+        int degree = topology.degree(node);
+        String[] linkNames = new String[degree];
+        float[][][][] linkSeries = new float[degree][][][];
+        for (int i = 0; i < degree; i++) {
+            int slot = topology.adjStart(node) + i;
+            int link = topology.adjLink(slot);
+            linkNames[i] = topology.name(topology.adjNode(slot));
+            linkSeries[i] = new float[metrics.length][][];
+            for (Metric metric : metrics) {
+                if (!metric.isPerLink()) continue;
+                float[][] byResolution = new float[resolutions.length][];
+                for (Resolution resolution : resolutions) {
+                    byResolution[resolution.ordinal()] = series[metric.ordinal()].get(resolution, link);
+                }
+                linkSeries[i][metric.ordinal()] = byResolution;
+            }
+        }
+        snapshot = new StatsSnapshot(lastTime, device, topology.name(node), deviceSeries, linkNames, linkSeries);
+    }
+}
@@ -0,0 +1,50 @@
+package stats;
+
+/**
+ * Immutable copy of the series for one device and the links attached to
+ * it, published by a {@link StatsCollector} for display on another thread.
+ */
+public final class StatsSnapshot {
+    private final long time;
+    private final int deviceId;
+    private final String deviceName;
+    // [metric][resolution], null for per-link metrics
+    private final float[][][] deviceSeries;
+    private final String[] linkNames;
+    // [link][metric][resolution], null for per-device metrics
+    private final float[][][][] linkSeries;
+
+    StatsSnapshot(long time, int deviceId, String deviceName, float[][][] deviceSeries,
+            String[] linkNames, float[][][][] linkSeries) {
+        this.time = time;
+        this.deviceId = deviceId;
+        this.deviceName = deviceName;
+        this.deviceSeries = deviceSeries;
+        this.linkNames = linkNames;
+        this.linkSeries = linkSeries;
+    }
+
+    /** Simulation time of the newest sample. */
+    public long getTime() { return time; }
+    public int getDeviceId() { return deviceId; }
+    public String getDeviceName() { return deviceName; }
+
+    /**
+     * Samples of a per-device metric, oldest first. Must not be modified.
+     */
+    public float[] getDeviceSeries(Metric metric, Resolution resolution) {
+        if (metric.isPerLink()) throw new IllegalArgumentException(metric + " is a link metric");
+        return deviceSeries[metric.ordinal()][resolution.ordinal()];
+    }
+
+    public int getLinkCount() { return linkNames.length; }
+    public String getLinkName(int index) { return linkNames[index]; }
+
+    /**
+     * Samples of a per-link metric for one of the device's links, oldest first.
+     */
+    public float[] getLinkSeries(int index, Metric metric, Resolution resolution) {
+        if (!metric.isPerLink()) throw new IllegalArgumentException(metric + " is a device metric");
+        return linkSeries[index][metric.ordinal()][resolution.ordinal()];
+    }
+}
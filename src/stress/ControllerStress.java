@@ -0,0 +1,331 @@
+package stress;
+
+import controllers.NetworkController;
+import models.*;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hammers a {@link NetworkController} from many threads with a mix of
+ * edits and queries, reports throughput and latency percentiles per
+ * operation, then checks that the network is still consistent.
+ *
+ * <pre>
+ * java -cp bin stress.ControllerStress [--threads 8] [--seconds 10] [--warmup 2]
+ *     [--devices 2000] [--reads 80] [--writes add:1,remove:1,connect:4,disconnect:2,update:1]
+ *     [--seed 1]
+ * </pre>
+ *
+ * {@code --reads} is the percentage of operations that only query;
+ * {@code --writes} weighs the edit operations against each other. Exits
+ * with status 1 if any invariant is broken.
+ */
+public class ControllerStress {
+    enum Op {
+        ADD(true), REMOVE(true), CONNECT(true), DISCONNECT(true), UPDATE(true),
+        LOOKUP(false), IS_CONNECTED(false), SEARCH(false), CANDIDATES(false), LIST(false);
+
+        final boolean write;
+
+        Op(boolean write) {
+            this.write = write;
+        }
+    }
+
+    private static final int MAX_REPORTED_VIOLATIONS = 20;
+
+    private final NetworkController controller;
+    private final int threads;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final int readPercent;
+    private final Op[] reads = { Op.LOOKUP, Op.IS_CONNECTED, Op.SEARCH, Op.CANDIDATES, Op.LIST };
+    private final Op[] writes;
+    private final long seed;
+
+    // Devices the workers pick from; a slot is emptied before its device is removed
+    private final AtomicReferenceArray<Device> slots;
+    private final AtomicLong nextName = new AtomicLong();
+    private volatile boolean measuring;
+    private volatile boolean stopping;
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Op.values().length];
+    private final long[] rejected = new long[Op.values().length];
+
+    public ControllerStress(NetworkController controller, int threads, long durationNanos, long warmupNanos,
+            int devices, int readPercent, Map<Op, Integer> writeWeights, long seed) {
+        if (threads <= 0 || devices <= 0) throw new IllegalArgumentException("Threads and devices must be positive");
+        if (readPercent < 0 || readPercent > 100) throw new IllegalArgumentException("Read percentage must be 0-100");
+        this.controller = controller;
+        this.threads = threads;
+        this.durationNanos = durationNanos;
+        this.warmupNanos = warmupNanos;
+        this.readPercent = readPercent;
+        this.seed = seed;
+        // Expanded by weight so picking an operation is one array lookup
+        List<Op> weighted = new ArrayList<>();
+        for (Map.Entry<Op, Integer> entry : writeWeights.entrySet()) {
+            if (!entry.getKey().write) throw new IllegalArgumentException(entry.getKey() + " is not a write");
+            for (int i = 0; i < entry.getValue(); i++) weighted.add(entry.getKey());
+        }
+        if (weighted.isEmpty() && readPercent < 100) throw new IllegalArgumentException("No write operations given");
+        this.writes = weighted.toArray(new Op[0]);
+        // Half full, so adds and removes both usually find a slot
+        this.slots = new AtomicReferenceArray<>(devices * 2);
+        for (int i = 0; i < devices; i++) {
+            Device device = newDevice(new SplittableRandom(seed + i));
+            controller.addDevice(device);
+            slots.set(i * 2, device);
+        }
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Runs the workers for the warm-up and then the measured duration.
+     * @return operations completed per second while measuring
+     */
+    public double run() throws InterruptedException {
+        List<Worker> workers = new ArrayList<>();
+        CountDownLatch ready = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(new SplittableRandom(seed * 31 + i), ready);
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        Thread.sleep(warmupNanos / 1_000_000);
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(durationNanos / 1_000_000);
+        measuring = false;
+        long elapsed = System.nanoTime() - start;
+        stopping = true;
+        long total = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i].merge(worker.latencies[i]);
+                rejected[i] += worker.rejected[i];
+            }
+        }
+        for (LatencyHistogram histogram : latencies) total += histogram.count();
+        return total / (elapsed / 1e9);
+    }
+
+    public String report(double throughput) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d threads, %d%% reads: %.0f ops/s%n", threads, readPercent, throughput));
+        sb.append(String.format("%-13s %10s %9s %9s %9s %9s %9s %9s%n",
+            "operation", "count", "rejected", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        LatencyHistogram all = new LatencyHistogram();
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latencies[op.ordinal()];
+            all.merge(h);
+            if (h.count() > 0) sb.append(row(op.name(), h, rejected[op.ordinal()]));
+        }
+        sb.append(row("all", all, Arrays.stream(rejected).sum()));
+        return sb.toString();
+    }
+
+    private static String row(String name, LatencyHistogram h, long rejected) {
+        return String.format("%-13s %10d %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name.toLowerCase(), h.count(),
+            rejected, h.mean() / 1e3, h.percentile(50) / 1e3, h.percentile(99) / 1e3,
+            h.percentile(99.9) / 1e3, h.max() / 1e3);
+    }
+
+    /**
+     * Checks the controller's structures agree with each other: every
+     * connection joins two devices that are still in the network and
+     * consider themselves linked, every device link has its connection,
+     * no device exceeds its ports and the name index finds every device.
+     * Must be called while nothing is modifying the controller.
+     *
+     * @return descriptions of the violations found, empty if consistent
+     */
+    public static List<String> checkInvariants(NetworkController controller) {
+        List<String> violations = new ArrayList<>();
+        List<Device> devices = controller.getDevices();
+        List<Connection> connections = controller.getConnections();
+        Set<Device> present = new HashSet<>(devices);
+        if (present.size() != devices.size()) violations.add("Device list holds duplicates");
+        Map<Device, Integer> linkCounts = new HashMap<>();
+        Set<List<Integer>> pairs = new HashSet<>();
+        for (Connection connection : connections) {
+            Device d1 = connection.getDevice1();
+            Device d2 = connection.getDevice2();
+            String name = d1.getName() + " - " + d2.getName();
+            if (!present.contains(d1) || !present.contains(d2)) {
+                violations.add("Connection " + name + " references a removed device");
+            }
+            if (!d1.isConnectedTo(d2) || !d2.isConnectedTo(d1)) {
+                violations.add("Connection " + name + " is not linked on both devices");
+            }
+            if (controller.getConnection(d1, d2) != connection) {
+                violations.add("Connection " + name + " is missing from the pair index");
+            }
+            if (!pairs.add(List.of(Math.min(d1.getId(), d2.getId()), Math.max(d1.getId(), d2.getId())))) {
+                violations.add("Duplicate connection " + name);
+            }
+            linkCounts.merge(d1, 1, Integer::sum);
+            linkCounts.merge(d2, 1, Integer::sum);
+        }
+        for (Device device : devices) {
+            int links = linkCounts.getOrDefault(device, 0);
+            if (device.getConnectionCount() != links) {
+                violations.add(device.getName() + " uses " + device.getConnectionCount() + " ports but has "
+                    + links + " connections");
+            }
+            if (device.getConnectionCount() > device.getMaxConnections()) {
+                violations.add(device.getName() + " uses " + device.getConnectionCount() + " of "
+                    + device.getMaxConnections() + " ports");
+            }
+            if (controller.getDeviceByName(device.getName()) != device) {
+                violations.add(device.getName() + " is not found by name");
+            }
+        }
+        return violations;
+    }
+
+    private Device newDevice(SplittableRandom random) {
+        long n = nextName.getAndIncrement();
+        String ip = "10." + ((n >> 16) & 0xff) + "." + ((n >> 8) & 0xff) + "." + (n & 0xff);
+        int kind = random.nextInt(10);
+        if (kind < 6) return new Computer("pc" + n, ip);
+        if (kind < 9) return new Switch("sw" + n, ip, Switch.DEFAULT_PORT_COUNT);
+        return new Router("rt" + n, ip);
+    }
+
+    private final class Worker extends Thread {
+        final SplittableRandom random;
+        final CountDownLatch ready;
+        final LatencyHistogram[] latencies = new LatencyHistogram[Op.values().length];
+        final long[] rejected = new long[Op.values().length];
+        // Pairs this worker connected, so disconnects mostly hit real links
+        final Device[][] linked = new Device[256][];
+        int linkedCount;
+
+        Worker(SplittableRandom random, CountDownLatch ready) {
+            super("stress-worker");
+            setDaemon(true);
+            this.random = random;
+            this.ready = ready;
+            for (int i = 0; i < latencies.length; i++) latencies[i] = new LatencyHistogram();
+        }
+
+        @Override
+        public void run() {
+            ready.countDown();
+            while (!stopping) {
+                Op op = random.nextInt(100) < readPercent ? reads[random.nextInt(reads.length)]
+                    : writes[random.nextInt(writes.length)];
+                long start = System.nanoTime();
+                boolean done = perform(op);
+                long elapsed = System.nanoTime() - start;
+                if (measuring) {
+                    latencies[op.ordinal()].record(elapsed);
+                    if (!done) rejected[op.ordinal()]++;
+                }
+            }
+        }
+
+        // False when the controller refused the operation or there was nothing to do
+        private boolean perform(Op op) {
+            int slot = random.nextInt(slots.length());
+            Device device = slots.get(slot);
+            Device other = slots.get(random.nextInt(slots.length()));
+            switch (op) {
+                case ADD:
+                    if (device != null) return false;
+                    Device added = newDevice(random);
+                    controller.addDevice(added);
+                    if (!slots.compareAndSet(slot, null, added)) controller.removeDevice(added);
+                    return true;
+                case REMOVE:
+                    if (device == null || !slots.compareAndSet(slot, device, null)) return false;
+                    controller.removeDevice(device);
+                    return true;
+                case CONNECT:
+                    if (device == null || other == null) return false;
+                    try {
+                        controller.connectDevices(device, other);
+                        linked[linkedCount++ % linked.length] = new Device[] { device, other };
+                        return true;
+                    } catch (NetworkController.NetworkException | IllegalArgumentException e) {
+                        return false;
+                    }
+                case DISCONNECT:
+                    if (linkedCount == 0) return false;
+                    Device[] pair = linked[random.nextInt(Math.min(linkedCount, linked.length))];
+                    if (!controller.isConnected(pair[0], pair[1])) return false;
+                    controller.disconnectDevices(pair[0], pair[1]);
+                    return true;
+                case UPDATE:
+                    if (device == null) return false;
+                    String name = device.getName();
+                    String prefix = name.substring(0, 2);
+                    try {
+                        controller.updateDevice(device, prefix + nextName.getAndIncrement(), device.getIpAddress());
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                case LOOKUP:
+                    return device != null && controller.getDeviceByName(device.getName()) != null;
+                case IS_CONNECTED:
+                    return device != null && other != null && controller.isConnected(device, other);
+                case SEARCH:
+                    return device != null && !controller.searchDevices(device.getName().substring(0, 3), 20).isEmpty();
+                case CANDIDATES:
+                    return device != null && !controller.findConnectionCandidates(device, "s", 0, 20).getDevices().isEmpty();
+                case LIST:
+                    return !controller.getConnections().isEmpty();
+                default:
+                    throw new IllegalStateException(op.name());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Expected an option, got " + args[i]);
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+            String.valueOf(Math.max(4, Runtime.getRuntime().availableProcessors()))));
+        double seconds = Double.parseDouble(options.getOrDefault("seconds", "10"));
+        double warmup = Double.parseDouble(options.getOrDefault("warmup", "2"));
+        int devices = Integer.parseInt(options.getOrDefault("devices", "2000"));
+        int reads = Integer.parseInt(options.getOrDefault("reads", "80"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        Map<Op, Integer> writes = new EnumMap<>(Op.class);
+        for (String part : options.getOrDefault("writes", "add:1,remove:1,connect:4,disconnect:2,update:1").split(",")) {
+            String[] weight = part.split(":");
+            writes.put(Op.valueOf(weight[0].trim().toUpperCase()), weight.length > 1 ? Integer.parseInt(weight[1].trim()) : 1);
+        }
+
+        ControllerStress stress = new ControllerStress(new NetworkController(), threads,
+            (long) (seconds * 1e9), (long) (warmup * 1e9), devices, reads, writes, seed);
+        double throughput = stress.run();
+        System.out.print(stress.report(throughput));
+
+        List<String> violations = checkInvariants(stress.controller);
+        if (violations.isEmpty()) {
+            System.out.println("Invariants hold: " + stress.controller.getDevices().size() + " devices, "
+                + stress.controller.getConnections().size() + " connections");
+            return;
+        }
+        System.out.println(violations.size() + " invariant violations:");
+        violations.stream().limit(MAX_REPORTED_VIOLATIONS).forEach(v -> System.out.println("  " + v));
+        if (violations.size() > MAX_REPORTED_VIOLATIONS) {
+            System.out.println("  ... and " + (violations.size() - MAX_REPORTED_VIOLATIONS) + " more");
+        }
+        System.exit(1);
+    }
+}
@@ -0,0 +1,68 @@
+package stress;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds: every power of two is
+ * split into 16 linear buckets, so percentiles are within about 6% of the
+ * true value at any scale. Recording is a few arithmetic operations and
+ * never allocates. Not thread-safe; keep one per thread and merge.
+ */
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long total;
+    private long max;
+    private long sum;
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[index(nanos)]++;
+        total++;
+        sum += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    long count() { return total; }
+    long max() { return max; }
+
+    double mean() {
+        return total > 0 ? (double) sum / total : 0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, 0 if empty.
+     */
+    long percentile(double percent) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(percent / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) return Math.min(max, upperBound(i));
+        }
+        return max;
+    }
+
+    // Values below SUB_BUCKETS get exact buckets; above, the top SUB_BITS + 1
+    // bits select the bucket within the value's power of two
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
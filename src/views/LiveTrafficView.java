@@ -0,0 +1,335 @@
+package views;
+
+import controllers.SimulationController;
+import models.DeviceStore;
+import simulation.Topology;
+import simulation.TrafficSnapshot;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Animated view of a running simulation: frames moving along their links
+ * and links coloured by utilization.
+ *
+ * Drawing is done by a dedicated render thread straight into the canvas's
+ * buffer strategy at a fixed frame rate, so the event dispatch thread is
+ * never involved. The thread only reads the traffic snapshots the
+ * simulation clock publishes and interpolates frame positions between
+ * them; it never locks the simulator. When a frame takes longer than its
+ * slot the missed slots are dropped instead of being rendered late. A
+ * frame that fails is logged and skipped; only closing the view stops
+ * the thread.
+ */
+public class LiveTrafficView extends JFrame {
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_FPS = 60;
+    private static final int MARGIN = 30;
+    private static final int FRAME_DOT = 4;
+    // Device positions can change while the view is open
+    private static final long LAYOUT_REFRESH_NANOS = 500_000_000L;
+    // Never extrapolate further than this past the latest snapshot
+    private static final long MAX_EXTRAPOLATION_NANOS = 250_000_000L;
+
+    private final transient SimulationController simulation;
+    private final transient DeviceStore store;
+    private final transient SpriteCache sprites;
+    private final Canvas canvas = new Canvas();
+    private final long framePeriodNanos;
+    private transient volatile Thread renderer;
+
+    // Render thread only
+    private transient Topology layoutTopology;
+    private long layoutTime;
+    private int layoutWidth;
+    private int layoutHeight;
+    private float[] nodeX = new float[0];
+    private float[] nodeY = new float[0];
+    private float scale = 1;
+    private transient VolatileImage deviceLayer;
+    private boolean layerStale = true;
+    private transient TrafficSnapshot lastDrawn;
+    private long lastRenderTime;
+
+    private volatile long renderedFrames;
+    private volatile long skippedFrames;
+    private volatile long failedFrames;
+
+    public LiveTrafficView(SimulationController simulation, DeviceStore store, SpriteCache sprites, int fps) {
+        super("Live Traffic");
+        if (fps <= 0) throw new IllegalArgumentException("Frame rate must be positive");
+        this.simulation = simulation;
+        this.store = store;
+        this.sprites = sprites;
+        this.framePeriodNanos = 1_000_000_000L / fps;
+        setSize(800, 600);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        // Painted only by the render thread
+        canvas.setIgnoreRepaint(true);
+        canvas.setBackground(Color.WHITE);
+        add(canvas, BorderLayout.CENTER);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopRendering();
+            }
+        });
+    }
+
+    /**
+     * Shows the window and starts the render thread.
+     */
+    public void start() {
+        setVisible(true);
+        if (renderer != null) return;
+        simulation.setTrafficSnapshots(true);
+        canvas.createBufferStrategy(2);
+        Thread thread = new Thread(this::renderLoop, "live-traffic-render");
+        thread.setDaemon(true);
+        // The simulation clock comes first when the machine is busy
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        renderer = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the render thread and snapshot publishing; the window stays open.
+     */
+    public void stopRendering() {
+        Thread thread = renderer;
+        if (thread == null) return;
+        renderer = null;
+        thread.interrupt();
+        try {
+            // Let the last frame finish before the buffers go away
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        simulation.setTrafficSnapshots(false);
+    }
+
+    public long getRenderedFrames() { return renderedFrames; }
+    public long getSkippedFrames() { return skippedFrames; }
+    public long getFailedFrames() { return failedFrames; }
+
+    private void renderLoop() {
+        Thread self = Thread.currentThread();
+        long next = System.nanoTime();
+        String lastError = null;
+        while (renderer == self) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            // Drop the slots we are already too late for
+            long missed = (now - next) / framePeriodNanos;
+            if (missed > 0) {
+                skippedFrames += missed;
+                next += missed * framePeriodNanos;
+            }
+            next += framePeriodNanos;
+            try {
+                if (needsFrame(now)) render(now);
+            } catch (RuntimeException e) {
+                // The canvas can go away under us while the window is closing
+                if (renderer != self) break;
+                failedFrames++;
+                // Rebuild everything on the next frame, and log each new error once
+                layerStale = true;
+                lastDrawn = null;
+                if (!String.valueOf(e).equals(lastError)) {
+                    lastError = String.valueOf(e);
+                    System.err.println("Live view frame failed: " + e);
+                }
+            }
+        }
+    }
+
+    // Nothing moves while paused, redraw only when something changed
+    private boolean needsFrame(long now) {
+        return simulation.getPlaySpeed() > 0 || simulation.getTrafficSnapshot() != lastDrawn
+            || layerStale || now - lastRenderTime >= LAYOUT_REFRESH_NANOS
+            || canvas.getWidth() != layoutWidth || canvas.getHeight() != layoutHeight;
+    }
+
+    private void render(long now) {
+        BufferStrategy strategy = canvas.getBufferStrategy();
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        if (strategy == null || width <= 0 || height <= 0) return;
+        TrafficSnapshot snapshot = simulation.getTrafficSnapshot();
+        if (snapshot != null) updateLayout(snapshot.getTopology(), width, height, now);
+        do {
+            do {
+                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, width, height);
+                    if (snapshot == null) {
+                        g.setColor(Color.GRAY);
+                        g.drawString("No simulation running", 10, 20);
+                    } else {
+                        drawTraffic(g, snapshot, now);
+                    }
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        lastDrawn = snapshot;
+        lastRenderTime = now;
+        renderedFrames++;
+    }
+
+    private void drawTraffic(Graphics2D g, TrafficSnapshot snapshot, long now) {
+        Topology topology = snapshot.getTopology();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setStroke(new BasicStroke(Math.max(1f, 3 * scale)));
+        for (int link = 0; link < topology.linkCount(); link++) {
+            int a = topology.linkA(link);
+            int b = topology.linkB(link);
+            if (Float.isNaN(nodeX[a]) || Float.isNaN(nodeX[b])) continue;
+            g.setColor(utilizationColor(snapshot.getUtilization(link)));
+            g.drawLine((int) nodeX[a], (int) nodeY[a], (int) nodeX[b], (int) nodeY[b]);
+        }
+
+        drawDeviceLayer(g);
+
+        // Move frames on from the snapshot by the wall time since it was taken
+        double speed = simulation.getPlaySpeed();
+        long ahead = Math.min(now - snapshot.getWallNanos(), MAX_EXTRAPOLATION_NANOS);
+        long time = snapshot.getTime() + (long) (Math.max(0, ahead) * speed);
+        g.setColor(Color.BLACK);
+        for (int frame = 0; frame < snapshot.getFrameCount(); frame++) {
+            int direction = snapshot.frameDirection(frame);
+            int link = direction >>> 1;
+            int from = (direction & 1) == 0 ? topology.linkA(link) : topology.linkB(link);
+            int to = (direction & 1) == 0 ? topology.linkB(link) : topology.linkA(link);
+            if (Float.isNaN(nodeX[from]) || Float.isNaN(nodeX[to])) continue;
+            if (time >= snapshot.frameEnd(frame)) continue;
+            float progress = snapshot.frameProgress(frame, time);
+            int x = (int) (nodeX[from] + (nodeX[to] - nodeX[from]) * progress);
+            int y = (int) (nodeY[from] + (nodeY[to] - nodeY[from]) * progress);
+            g.fillRect(x - FRAME_DOT / 2, y - FRAME_DOT / 2, FRAME_DOT, FRAME_DOT);
+        }
+
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(String.format("t=%.3f s  frames on wire: %d  rendered: %d  skipped: %d",
+            time / 1e9, snapshot.getFrameCount(), renderedFrames, skippedFrames), 10, 20);
+    }
+
+    // Green when idle through yellow to red when saturated
+    private static Color utilizationColor(float percent) {
+        float load = Math.max(0, Math.min(1, percent / 100f));
+        return Color.getHSBColor((1 - load) / 3f, 0.9f, load > 0 ? 0.85f : 0.6f);
+    }
+
+    private void updateLayout(Topology topology, int width, int height, long now) {
+        if (topology == layoutTopology && width == layoutWidth && height == layoutHeight
+                && now - layoutTime < LAYOUT_REFRESH_NANOS) {
+            return;
+        }
+        int nodes = topology.nodeCount();
+        if (nodeX.length != nodes) {
+            nodeX = new float[nodes];
+            nodeY = new float[nodes];
+        }
+        // Positions are read without the controller's lock; a device moved
+        // mid-read is simply drawn at its new place on the next refresh
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int node = 0; node < nodes; node++) {
+            int id = topology.deviceId(node);
+            if (!store.hasPosition(id)) continue;
+            minX = Math.min(minX, store.getX(id));
+            minY = Math.min(minY, store.getY(id));
+            maxX = Math.max(maxX, store.getX(id) + SpriteCache.SIZE);
+            maxY = Math.max(maxY, store.getY(id) + SpriteCache.SIZE);
+        }
+        float newScale = 1;
+        if (minX <= maxX) {
+            newScale = Math.min((width - 2f * MARGIN) / (maxX - minX), (height - 2f * MARGIN) / (maxY - minY));
+            newScale = Math.max(0.01f, Math.min(1.5f, newScale));
+        }
+        boolean moved = topology != layoutTopology || newScale != scale;
+        for (int node = 0; node < nodes; node++) {
+            int id = topology.deviceId(node);
+            float x = Float.NaN, y = Float.NaN;
+            if (store.hasPosition(id)) {
+                x = MARGIN + (store.getX(id) - minX + SpriteCache.SIZE / 2f) * newScale;
+                y = MARGIN + (store.getY(id) - minY + SpriteCache.SIZE / 2f) * newScale;
+            }
+            moved |= Float.compare(x, nodeX[node]) != 0 || Float.compare(y, nodeY[node]) != 0;
+            nodeX[node] = x;
+            nodeY[node] = y;
+        }
+        scale = newScale;
+        layerStale |= moved || width != layoutWidth || height != layoutHeight;
+        layoutTopology = topology;
+        layoutWidth = width;
+        layoutHeight = height;
+        layoutTime = now;
+    }
+
+    // Devices only change with the layout, so they are drawn once into an
+    // accelerated image and blitted every frame
+    private void drawDeviceLayer(Graphics2D g) {
+        GraphicsConfiguration config = canvas.getGraphicsConfiguration();
+        if (config == null) return;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (deviceLayer == null || deviceLayer.getWidth() != layoutWidth || deviceLayer.getHeight() != layoutHeight) {
+                if (deviceLayer != null) deviceLayer.flush();
+                deviceLayer = config.createCompatibleVolatileImage(layoutWidth, layoutHeight, Transparency.TRANSLUCENT);
+                layerStale = true;
+            }
+            int state = deviceLayer.validate(config);
+            if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                deviceLayer.flush();
+                deviceLayer = null;
+                continue;
+            }
+            if (state == VolatileImage.IMAGE_RESTORED || layerStale) paintDevices();
+            g.drawImage(deviceLayer, 0, 0, null);
+            if (!deviceLayer.contentsLost()) return;
+            layerStale = true;
+        }
+    }
+
+    private void paintDevices() {
+        Graphics2D g = deviceLayer.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, layoutWidth, layoutHeight);
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            Topology topology = layoutTopology;
+            int size = Math.max(4, Math.round(SpriteCache.SIZE * scale));
+            for (int node = 0; node < topology.nodeCount(); node++) {
+                if (Float.isNaN(nodeX[node])) continue;
+                int x = (int) nodeX[node] - size / 2;
+                int y = (int) nodeY[node] - size / 2;
+                Image sprite = topology.type(node) == Topology.SWITCH ? sprites.getSwitch()
+                    : topology.type(node) == Topology.COMPUTER ? sprites.getComputer() : null;
+                if (sprite != null) {
+                    g.drawImage(sprite, x, y, size, size, null);
+                } else {
+                    g.setColor(topology.type(node) == Topology.ROUTER ? new Color(0, 128, 0) : Color.RED);
+                    g.fillOval(x, y, size, size);
+                }
+            }
+            // Sprites may still have been loading
+            layerStale = !sprites.isLoaded();
+        } finally {
+            g.dispose();
+        }
+    }
+}
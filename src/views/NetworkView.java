@@ -2,62 +2,82 @@ package views;
 
 import models.*;
 import controllers.*;
+import history.ProjectDiff;
+import history.ProjectHistory;
+import history.Version;
+import rules.RuleEngine;
+import rules.Violation;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Serializable;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.prefs.Preferences;
 
 public class NetworkView extends JFrame {
-	private Image pcImage;
-	private Image switchImage;
+	private final transient SpriteCache sprites;
 	private JTextArea deviceInfoArea;
     private final NetworkController controller;
+    private final transient SimulationController simulation;
+    private StatsChartPanel statsChart;
+    private JToggleButton simulateBtn;
     private JPanel canvas;  // Removed final modifier
     private Device selectedDevice = null;
-    private final Map<Device, Point> devicePositions = new HashMap<>();
     private Point dragStartPoint;
     private JLabel statusBar;  // Removed final modifier
+    private JButton saveBtn;
+    private JButton loadBtn;
+    private JButton cancelBtn;
+    private transient SwingWorker<?, ?> fileTask;  // Running background save/load, if any
+    private File projectFile;  // Last saved or loaded, its history is kept beside it
+    private LiveTrafficView liveView;
+    private transient RuleEngine rules;
+    private long shownRulesVersion = -1;
+    private static final int CANDIDATE_PAGE_SIZE = 200;
+    private static final int SEARCH_LIMIT = 100;
+    private static final int STATS_REFRESH_MILLIS = 250;
+    private static final int FAILURE_SAMPLES = 1000;
+    private static final int FAILURES_PER_SAMPLE = 2;
+    private static final Preferences PREFERENCES = Preferences.userNodeForPackage(NetworkView.class);
+    private static final String PREF_LAST_PROJECT = "lastProject";
 
     public NetworkView(NetworkController controller) {
+        this(controller, new SimulationController(controller));
+    }
+
+    public NetworkView(NetworkController controller, SimulationController simulation) {
+        this(controller, simulation, SpriteCache.loadAsync());
+    }
+
+    /**
+     * Builds the window without waiting for the sprites; devices are drawn
+     * as plain shapes until they arrive.
+     */
+    public NetworkView(NetworkController controller, SimulationController simulation, SpriteCache sprites) {
         this.controller = controller;
-        
-        try {
-            // Try loading from resources first
-            pcImage = ImageIO.read(getClass().getResource("/images/pc.png"));
-            switchImage = ImageIO.read(getClass().getResource("/images/switch.png"));
-            
-            // If not found in resources, try file system
-            if (pcImage == null) pcImage = ImageIO.read(new File("images/pc.png"));
-            if (switchImage == null) switchImage = ImageIO.read(new File("images/switch.png"));
-            
-            // Scale images if loaded successfully
-            if (pcImage != null) pcImage = pcImage.getScaledInstance(50, 50, Image.SCALE_SMOOTH);
-            if (switchImage != null) switchImage = switchImage.getScaledInstance(50, 50, Image.SCALE_SMOOTH);
-        } catch (Exception e) {
-            System.err.println("Warning: Could not load device images: " + e.getMessage());
-            pcImage = null;
-            switchImage = null;
-        }
-        
+        this.simulation = simulation;
+        this.sprites = sprites;
         this.canvas = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
                 drawNetwork(g);
+                StartupMetrics.painted(sprites);
             }
         };
+        sprites.whenLoaded(canvas::repaint);
         this.statusBar = new JLabel(" Ready");
         initializeUI();
     }
@@ -74,19 +94,40 @@ public class NetworkView extends JFrame {
         deviceInfoArea.setEditable(false);
         deviceInfoArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         infoPanel.add(new JScrollPane(deviceInfoArea), BorderLayout.CENTER);
+        statsChart = new StatsChartPanel();
+        infoPanel.add(statsChart, BorderLayout.SOUTH);
+        // Charts only read published snapshots, polling never waits on the simulation
+        new javax.swing.Timer(STATS_REFRESH_MILLIS, e -> statsChart.setSnapshot(simulation.getStatsSnapshot())).start();
         // Add to frame (let's put it on the EAST side)
         add(infoPanel, BorderLayout.EAST);
+        add(createSearchPanel(), BorderLayout.WEST);
         // Toolbar
         JToolBar toolBar = new JToolBar();
         JButton addComputerBtn = new JButton("Add Computer");
         JButton addSwitchBtn = new JButton("Add Switch");
-        JButton saveBtn = new JButton("Save");
-        JButton loadBtn = new JButton("Load");
+        JButton addRouterBtn = new JButton("Add Router");
+        saveBtn = new JButton("Save");
+        loadBtn = new JButton("Load");
+        cancelBtn = new JButton("Cancel");
+        cancelBtn.setEnabled(false);
+        simulateBtn = new JToggleButton("Simulate");
+        JButton failureSweepBtn = new JButton("Failure Sweep");
+        JButton historyBtn = new JButton("History");
+        JButton liveViewBtn = new JButton("Live View");
+        JButton rulesBtn = new JButton("Rules");
 
         toolBar.add(addComputerBtn);
         toolBar.add(addSwitchBtn);
+        toolBar.add(addRouterBtn);
         toolBar.add(saveBtn);
         toolBar.add(loadBtn);
+        toolBar.add(cancelBtn);
+        toolBar.addSeparator();
+        toolBar.add(simulateBtn);
+        toolBar.add(liveViewBtn);
+        toolBar.add(failureSweepBtn);
+        toolBar.add(historyBtn);
+        toolBar.add(rulesBtn);
         add(toolBar, BorderLayout.NORTH);
 
         // Canvas setup
@@ -113,8 +154,9 @@ public class NetworkView extends JFrame {
                     Point newPos = e.getPoint();
                     int dx = newPos.x - dragStartPoint.x;
                     int dy = newPos.y - dragStartPoint.y;
-                    Point currentPos = devicePositions.get(selectedDevice);
-                    devicePositions.put(selectedDevice, new Point(currentPos.x + dx, currentPos.y + dy));
+                    DeviceStore store = controller.getDeviceStore();
+                    int id = selectedDevice.getId();
+                    controller.moveDevice(selectedDevice, store.getX(id) + dx, store.getY(id) + dy);
                     dragStartPoint = newPos;
                     canvas.repaint();
                 }
@@ -130,29 +172,48 @@ public class NetworkView extends JFrame {
         // Button actions
         addComputerBtn.addActionListener(e -> addDevice("Computer"));
         addSwitchBtn.addActionListener(e -> addDevice("Switch"));
+        addRouterBtn.addActionListener(e -> addDevice("Router"));
         saveBtn.addActionListener(e -> saveNetwork());
         loadBtn.addActionListener(e -> loadNetwork());
+        cancelBtn.addActionListener(e -> cancelFileTask());
+        simulateBtn.addActionListener(e -> toggleSimulation());
+        failureSweepBtn.addActionListener(e -> runFailureSweep(failureSweepBtn));
+        historyBtn.addActionListener(e -> showHistory());
+        liveViewBtn.addActionListener(e -> showLiveView());
+        rulesBtn.addActionListener(e -> showViolations());
+        // The engine checks each edit as it happens; polling its version costs nothing
+        rules = RuleEngine.attachedTo(controller);
+        new javax.swing.Timer(STATS_REFRESH_MILLIS, e -> {
+            long version = rules.getVersion();
+            if (version == shownRulesVersion) return;
+            shownRulesVersion = version;
+            int count = rules.getViolationCount();
+            rulesBtn.setText(count == 0 ? "Rules" : "Rules (" + count + ")");
+        }).start();
     }
 
  // Update the drawNetwork method
     private void drawNetwork(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;
         g2d.setStroke(new BasicStroke(2));
+        DeviceStore store = controller.getDeviceStore();
         
         // Draw connections
         for (Connection conn : controller.getConnections()) {
-            Point p1 = devicePositions.get(conn.getDevice1());
-            Point p2 = devicePositions.get(conn.getDevice2());
-            if (p1 != null && p2 != null) {
+            int id1 = conn.getDevice1().getId();
+            int id2 = conn.getDevice2().getId();
+            if (store.hasPosition(id1) && store.hasPosition(id2)) {
                 g2d.setColor(Color.BLUE);
-                g2d.drawLine(p1.x + 25, p1.y + 25, p2.x + 25, p2.y + 25);
+                g2d.drawLine(store.getX(id1) + 25, store.getY(id1) + 25,
+                             store.getX(id2) + 25, store.getY(id2) + 25);
             }
         }
         
         // Draw devices
         for (Device device : controller.getDevices()) {
-            Point pos = devicePositions.get(device);
-            if (pos == null) continue;
+            int id = device.getId();
+            if (!store.hasPosition(id)) continue;
+            Point pos = new Point(store.getX(id), store.getY(id));
             
             // Highlight selected device
             if (device == selectedDevice) {
@@ -166,8 +227,9 @@ public class NetworkView extends JFrame {
             }
             
             if (device instanceof Switch) {
+                Image switchImage = sprites.getSwitch();
                 if (switchImage != null) {
-                    g2d.drawImage(switchImage, pos.x, pos.y, this);
+                    g2d.drawImage(switchImage, pos.x, pos.y, null);
                 } else {
                     // Fallback to rectangle
                     g2d.setColor(Color.RED);
@@ -181,9 +243,20 @@ public class NetworkView extends JFrame {
                 g2d.setColor(Color.BLACK);
                 g2d.drawString(sw.getName(), pos.x, pos.y + 70);
                 g2d.drawString("Conn: " + sw.getConnectedDevices().size(), pos.x, pos.y + 85);
+            } else if (device instanceof Router) {
+                g2d.setColor(new Color(0, 128, 0));
+                g2d.fillOval(pos.x, pos.y, 50, 50);
+                g2d.setColor(Color.WHITE);
+                g2d.drawString("RT", pos.x + 17, pos.y + 30);
+                
+                // Draw device info
+                g2d.setColor(Color.BLACK);
+                g2d.drawString(device.getName(), pos.x, pos.y + 70);
+                g2d.drawString("Routes: " + ((Router) device).getForwardingTable().size(), pos.x, pos.y + 85);
             } else {
+                Image pcImage = sprites.getComputer();
                 if (pcImage != null) {
-                    g2d.drawImage(pcImage, pos.x, pos.y, this);
+                    g2d.drawImage(pcImage, pos.x, pos.y, null);
                 } else {
                     // Fallback to rectangle
                     g2d.setColor(Color.BLUE);
@@ -204,19 +277,56 @@ public class NetworkView extends JFrame {
         
         JMenuItem connectItem = new JMenuItem("Connect to...");
         JMenuItem disconnectItem = new JMenuItem("Disconnect");
+        JMenuItem linkItem = new JMenuItem("Link settings...");
         JMenuItem updateItem = new JMenuItem("Update");
         JMenuItem deleteItem = new JMenuItem("Delete");
+        JMenuItem interfaceItem = new JMenuItem("Configure interface...");
+        JMenuItem routesItem = new JMenuItem("Import routes...");
+        JMenuItem portItem = new JMenuItem("Configure port...");
+        JMenuItem domainItem = new JMenuItem("Broadcast domain...");
+        JMenuItem trafficItem = new JMenuItem("Add traffic...");
         
         connectItem.addActionListener(e -> showConnectionDialog());
         disconnectItem.addActionListener(e -> disconnectSelected());
+        linkItem.addActionListener(e -> configureLink());
         updateItem.addActionListener(e -> editSelectedDevice()); // Add this line
         deleteItem.addActionListener(e -> deleteSelectedDevice());
+        interfaceItem.addActionListener(e -> configureRouterInterface());
+        routesItem.addActionListener(e -> importRouterRoutes());
+        portItem.addActionListener(e -> configureSwitchPort());
+        domainItem.addActionListener(e -> showBroadcastDomain());
+        trafficItem.addActionListener(e -> addTrafficFromSelected());
         
         contextMenu.add(connectItem);
         contextMenu.add(disconnectItem);
+        contextMenu.add(linkItem);
         contextMenu.addSeparator();
         contextMenu.add(updateItem); // Add this line
         contextMenu.add(deleteItem);
+        contextMenu.addSeparator();
+        contextMenu.add(interfaceItem);
+        contextMenu.add(routesItem);
+        contextMenu.add(portItem);
+        contextMenu.add(domainItem);
+        contextMenu.addSeparator();
+        contextMenu.add(trafficItem);
+        
+        // Routing entries only apply to routers, port entries to switches
+        contextMenu.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                boolean router = selectedDevice instanceof Router;
+                interfaceItem.setEnabled(router);
+                routesItem.setEnabled(router);
+                portItem.setEnabled(selectedDevice instanceof Switch);
+                domainItem.setEnabled(selectedDevice != null);
+                trafficItem.setEnabled(selectedDevice instanceof Computer);
+            }
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {}
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {}
+        });
         
         canvas.setComponentPopupMenu(contextMenu);
     }
@@ -225,11 +335,12 @@ public class NetworkView extends JFrame {
         Device previouslySelected = selectedDevice;
         selectedDevice = null;
         
+        DeviceStore store = controller.getDeviceStore();
         for (Device device : controller.getDevices()) {
-            Point pos = devicePositions.get(device);
-            if (pos == null) continue;
+            int id = device.getId();
+            if (!store.hasPosition(id)) continue;
 
-            Rectangle bounds = new Rectangle(pos.x, pos.y, 50, 50);
+            Rectangle bounds = new Rectangle(store.getX(id), store.getY(id), 50, 50);
             if (bounds.contains(point)) {
                 selectedDevice = device;
                 break;
@@ -245,7 +356,75 @@ public class NetworkView extends JFrame {
     }
 
 
+    // Results follow the query as it is typed; picking one selects the device and scrolls to it
+    private JPanel createSearchPanel() {
+        DefaultListModel<Device> model = new DefaultListModel<>();
+        JList<Device> results = new JList<>(model);
+        results.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        results.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                Device device = (Device) value;
+                return super.getListCellRendererComponent(list,
+                    device.getName() + "  " + device.getIpAddress(), index, isSelected, cellHasFocus);
+            }
+        });
+        JTextField queryField = new JTextField(14);
+        queryField.setToolTipText("Name, part of a name, IP address prefix or CIDR block (10.0.0.0/8)");
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            private void research() {
+                model.clear();
+                model.addAll(controller.searchDevices(queryField.getText(), SEARCH_LIMIT));
+            }
+            @Override public void insertUpdate(DocumentEvent e) { research(); }
+            @Override public void removeUpdate(DocumentEvent e) { research(); }
+            @Override public void changedUpdate(DocumentEvent e) { research(); }
+        });
+        queryField.addActionListener(e -> {
+            if (!model.isEmpty()) results.setSelectedIndex(0);
+        });
+        results.addListSelectionListener(e -> {
+            Device device = results.getSelectedValue();
+            if (e.getValueIsAdjusting() || device == null) return;
+            selectedDevice = device;
+            updateDeviceInfoDisplay();
+            centerOnDevice(device);
+            canvas.repaint();
+            statusBar.setText(" Selected: " + device.getName());
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder("Find Device"));
+        panel.add(queryField, BorderLayout.NORTH);
+        panel.add(new JScrollPane(results), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void centerOnDevice(Device device) {
+        DeviceStore store = controller.getDeviceStore();
+        int id = device.getId();
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, canvas);
+        if (!store.hasPosition(id) || viewport == null) return;
+        Dimension extent = viewport.getExtentSize();
+        int centerX = store.getX(id) + 25;
+        int centerY = store.getY(id) + 25;
+        // Grow the canvas so that the device can sit in the middle of the view
+        Dimension size = canvas.getPreferredSize();
+        int width = Math.max(size.width, centerX + extent.width / 2);
+        int height = Math.max(size.height, centerY + extent.height / 2);
+        if (width != size.width || height != size.height) {
+            canvas.setPreferredSize(new Dimension(width, height));
+            canvas.revalidate();
+        }
+        Rectangle target = new Rectangle(centerX - extent.width / 2, centerY - extent.height / 2,
+            extent.width, extent.height);
+        // After the scroll pane has laid out the larger canvas
+        SwingUtilities.invokeLater(() -> canvas.scrollRectToVisible(target));
+    }
+
     private void updateDeviceInfoDisplay() {
+        simulation.watch(selectedDevice != null ? selectedDevice.getId() : -1);
         if (selectedDevice == null) {
             deviceInfoArea.setText("");
             return;
@@ -259,7 +438,19 @@ public class NetworkView extends JFrame {
         if (selectedDevice instanceof Switch) {
             Switch sw = (Switch) selectedDevice;
             info.append("Connections: ").append(sw.getConnectedDevices().size()).append("\n");
-            info.append("Available ports: ").append(sw.getAvailablePorts()).append("\n");
+            info.append("Available ports: ").append(sw.getAvailablePorts())
+                .append(" of ").append(sw.getPortCount()).append("\n");
+            for (Port port : sw.getPorts()) {
+                if (!port.isFree()) {
+                    info.append("  ").append(port).append("\n");
+                }
+            }
+        } else if (selectedDevice instanceof Router) {
+            Router router = (Router) selectedDevice;
+            for (RouterInterface iface : router.getInterfaces()) {
+                info.append("  ").append(iface).append("\n");
+            }
+            info.append("Routes: ").append(router.getForwardingTable().size()).append("\n");
         } else if (selectedDevice instanceof Computer) {
             Computer pc = (Computer) selectedDevice;
             info.append("Connected to: ")
@@ -293,15 +484,18 @@ public class NetworkView extends JFrame {
             return;
         }
 
-        Device device = type.equals("Computer") ? 
-            new Computer(name, ip) : new Switch(name, ip);
+        Device device;
+        switch (type) {
+            case "Computer": device = new Computer(name, ip); break;
+            case "Router": device = new Router(name, ip); break;
+            default: device = new Switch(name, ip); break;
+        }
 
         try {
             controller.addDevice(device);
-            devicePositions.put(device, new Point(
+            controller.moveDevice(device,
                 (int)(Math.random() * (canvas.getWidth() - 100)),
-                (int)(Math.random() * (canvas.getHeight() - 100))
-            ));
+                (int)(Math.random() * (canvas.getHeight() - 100)));
             canvas.repaint();
             statusBar.setText(" Added " + type + ": " + name);
         } catch (Exception e) {
@@ -330,7 +524,6 @@ public class NetworkView extends JFrame {
         if (confirm == JOptionPane.YES_OPTION) {
             String deviceName = selectedDevice.getName();
             controller.removeDevice(selectedDevice);
-            devicePositions.remove(selectedDevice);
             selectedDevice = null;
             canvas.repaint();
             statusBar.setText(" Deleted device: " + deviceName);
@@ -347,25 +540,9 @@ public class NetworkView extends JFrame {
             return;
         }
         
-        List<Device> availableDevices = controller.getDevices().stream()
-            .filter(d -> !d.equals(selectedDevice))
-            .filter(d -> !controller.isConnected(selectedDevice, d))
-            .filter(d -> {
-                try {
-                    return selectedDevice.canConnectTo(d) && d.canConnectTo(selectedDevice);
-                } catch (Exception e) {
-                    return false;
-                }
-            })
-            .sorted((d1, d2) -> {
-                // Sort switches first, then computers
-                if (d1 instanceof Switch && d2 instanceof Computer) return -1;
-                if (d1 instanceof Computer && d2 instanceof Switch) return 1;
-                return d1.getName().compareTo(d2.getName());
-            })
-            .collect(Collectors.toList());
-        
-        if (availableDevices.isEmpty()) {
+        CandidatePage firstPage = controller.findConnectionCandidates(selectedDevice, null, 0, CANDIDATE_PAGE_SIZE);
+        
+        if (firstPage.getDevices().isEmpty()) {
             JOptionPane.showMessageDialog(this, 
                 "No valid devices to connect to", 
                 "No Available Devices", 
@@ -373,14 +550,7 @@ public class NetworkView extends JFrame {
             return;
         }
         
-        Device target = (Device) JOptionPane.showInputDialog(
-            this,
-            "Connect " + selectedDevice.getName() + " to:",
-            "Connect Devices",
-            JOptionPane.QUESTION_MESSAGE,
-            null,
-            availableDevices.toArray(),
-            availableDevices.get(0));
+        Device target = chooseConnectionTarget(selectedDevice, firstPage);
         
         if (target != null) {
             try {
@@ -397,6 +567,63 @@ public class NetworkView extends JFrame {
         }
     }
 
+    // Candidates are fetched a page at a time so the dialog opens instantly on large networks
+    private Device chooseConnectionTarget(Device source, CandidatePage firstPage) {
+        DefaultListModel<Device> model = new DefaultListModel<>();
+        JList<Device> list = new JList<>(model);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setVisibleRowCount(12);
+        JTextField filterField = new JTextField();
+        JButton moreBtn = new JButton("More...");
+        CandidatePage[] lastPage = {firstPage};
+        
+        model.addAll(firstPage.getDevices());
+        list.setSelectedIndex(0);
+        moreBtn.setEnabled(firstPage.hasMore());
+        
+        moreBtn.addActionListener(e -> {
+            CandidatePage next = controller.findConnectionCandidates(
+                source, filterField.getText().trim(), lastPage[0].getNextOffset(), CANDIDATE_PAGE_SIZE);
+            model.addAll(next.getDevices());
+            moreBtn.setEnabled(next.hasMore());
+            lastPage[0] = next;
+        });
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            private void refilter() {
+                CandidatePage page = controller.findConnectionCandidates(
+                    source, filterField.getText().trim(), 0, CANDIDATE_PAGE_SIZE);
+                model.clear();
+                model.addAll(page.getDevices());
+                if (!model.isEmpty()) list.setSelectedIndex(0);
+                moreBtn.setEnabled(page.hasMore());
+                lastPage[0] = page;
+            }
+            @Override public void insertUpdate(DocumentEvent e) { refilter(); }
+            @Override public void removeUpdate(DocumentEvent e) { refilter(); }
+            @Override public void changedUpdate(DocumentEvent e) { refilter(); }
+        });
+        
+        JPanel filterPanel = new JPanel(new BorderLayout(5, 5));
+        filterPanel.add(new JLabel("Name starts with:"), BorderLayout.WEST);
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel("Connect " + source.getName() + " to:"), BorderLayout.NORTH);
+        JPanel center = new JPanel(new BorderLayout(5, 5));
+        center.add(filterPanel, BorderLayout.NORTH);
+        center.add(new JScrollPane(list), BorderLayout.CENTER);
+        panel.add(center, BorderLayout.CENTER);
+        panel.add(moreBtn, BorderLayout.SOUTH);
+        
+        int result = JOptionPane.showConfirmDialog(
+            this,
+            panel,
+            "Connect Devices",
+            JOptionPane.OK_CANCEL_OPTION,
+            JOptionPane.PLAIN_MESSAGE);
+        return result == JOptionPane.OK_OPTION ? list.getSelectedValue() : null;
+    }
+
     private void disconnectSelected() {
         if (selectedDevice == null) {
             JOptionPane.showMessageDialog(this, 
@@ -407,19 +634,91 @@ public class NetworkView extends JFrame {
         }
         
         if (selectedDevice instanceof Switch) {
-            disconnectSwitch((Switch) selectedDevice);
+            disconnectFromOneOf(selectedDevice, ((Switch) selectedDevice).getConnectedDevices());
+        } else if (selectedDevice instanceof Router) {
+            disconnectFromOneOf(selectedDevice, ((Router) selectedDevice).getConnectedDevices());
         } else {
             disconnectComputer((Computer) selectedDevice);
         }
         updateDeviceInfoDisplay();
     }
 
-    private void disconnectSwitch(Switch switchDevice) {
-        List<Device> connectedDevices = switchDevice.getConnectedDevices();
+    private void configureLink() {
+        if (selectedDevice == null) return;
+        Device device = selectedDevice;
+        List<Device> neighbours;
+        if (device instanceof Switch) {
+            neighbours = ((Switch) device).getConnectedDevices();
+        } else if (device instanceof Router) {
+            neighbours = ((Router) device).getConnectedDevices();
+        } else {
+            Device connected = ((Computer) device).getConnectedDevice();
+            neighbours = connected != null ? List.of(connected) : List.of();
+        }
+        if (neighbours.isEmpty()) {
+            showInfo(device.getName() + " is not connected to any devices", "No Connections");
+            return;
+        }
+        
+        JComboBox<Device> neighbourBox = new JComboBox<>(neighbours.toArray(new Device[0]));
+        JSpinner bandwidthSpinner = new JSpinner(new SpinnerNumberModel(1000.0, 0.001, 1_000_000.0, 100.0));
+        JSpinner delaySpinner = new JSpinner(new SpinnerNumberModel(5.0, 0.0, 10_000_000.0, 1.0));
+        JSpinner lossSpinner = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 100.0, 0.1));
+        JSpinner mtuSpinner = new JSpinner(new SpinnerNumberModel(Connection.DEFAULT_MTU, 68, 65535, 100));
+        JComboBox<QueueDiscipline> disciplineBox = new JComboBox<>(QueueDiscipline.values());
+        JSpinner capacitySpinner = new JSpinner(new SpinnerNumberModel(Connection.DEFAULT_QUEUE_CAPACITY, 1, 1_000_000, 16));
+        // Show the chosen link's current settings
+        Runnable load = () -> {
+            Connection connection = controller.getConnection(device, (Device) neighbourBox.getSelectedItem());
+            if (connection == null) return;
+            bandwidthSpinner.setValue(connection.getBandwidthBps() / 1e6);
+            delaySpinner.setValue(connection.getPropagationDelayNanos() / 1e3);
+            lossSpinner.setValue(connection.getLossRate() * 100);
+            mtuSpinner.setValue(connection.getMtu());
+            disciplineBox.setSelectedItem(connection.getQueueDiscipline());
+            capacitySpinner.setValue(connection.getQueueCapacity());
+        };
+        neighbourBox.addActionListener(e -> load.run());
+        load.run();
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Link to:"));
+        panel.add(neighbourBox);
+        panel.add(new JLabel("Bandwidth (Mbps):"));
+        panel.add(bandwidthSpinner);
+        panel.add(new JLabel("Delay (\u00b5s):"));
+        panel.add(delaySpinner);
+        panel.add(new JLabel("Loss (%):"));
+        panel.add(lossSpinner);
+        panel.add(new JLabel("MTU (bytes):"));
+        panel.add(mtuSpinner);
+        panel.add(new JLabel("Queue discipline:"));
+        panel.add(disciplineBox);
+        panel.add(new JLabel("Capacity (packets):"));
+        panel.add(capacitySpinner);
+        if (JOptionPane.showConfirmDialog(this, panel, "Link Settings of " + device.getName(),
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
         
+        Device neighbour = (Device) neighbourBox.getSelectedItem();
+        try {
+            Connection settings = new Connection(device, neighbour);
+            settings.setBandwidthBps(Math.round((Double) bandwidthSpinner.getValue() * 1e6));
+            settings.setPropagationDelayNanos(Math.round((Double) delaySpinner.getValue() * 1e3));
+            settings.setLossRate((Double) lossSpinner.getValue() / 100);
+            settings.setMtu((Integer) mtuSpinner.getValue());
+            settings.setQueue((QueueDiscipline) disciplineBox.getSelectedItem(), (Integer) capacitySpinner.getValue());
+            controller.configureLink(device, neighbour, settings);
+            statusBar.setText("Updated link " + device.getName() + " - " + neighbour.getName());
+        } catch (NetworkController.NetworkException | IllegalArgumentException ex) {
+            showError(ex.getMessage(), "Link Settings");
+        }
+    }
+
+    private void disconnectFromOneOf(Device switchDevice, List<Device> connectedDevices) {
         if (connectedDevices.isEmpty()) {
             JOptionPane.showMessageDialog(this, 
-                "Switch is not connected to any devices", 
+                switchDevice.getClass().getSimpleName() + " is not connected to any devices", 
                 "No Connections", 
                 JOptionPane.INFORMATION_MESSAGE);
             return;
@@ -472,6 +771,8 @@ public class NetworkView extends JFrame {
     }
 
     private void saveNetwork() {
+        if (fileTask != null) return;
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Network Project");
         fileChooser.setFileFilter(new FileNameExtensionFilter("Network Files (*.net)", "net"));
@@ -480,34 +781,58 @@ public class NetworkView extends JFrame {
         int userSelection = fileChooser.showSaveDialog(this);
         
         if (userSelection == JFileChooser.APPROVE_OPTION) {
-            File fileToSave = fileChooser.getSelectedFile();
-            if (!fileToSave.getName().toLowerCase().endsWith(".net")) {
-                fileToSave = new File(fileToSave.getAbsolutePath() + ".net");
+            File selected = fileChooser.getSelectedFile();
+            if (!selected.getName().toLowerCase().endsWith(".net")) {
+                selected = new File(selected.getAbsolutePath() + ".net");
             }
+            File fileToSave = selected;
             
-            try {
-                // Create a map to hold both network data and positions
-                Map<String, Object> saveData = new HashMap<>();
-                saveData.put("network", controller.getNetworkData());
-                saveData.put("positions", devicePositions);
-                
-                // Use the controller's save method but pass our combined data
-                try (ObjectOutputStream oos = new ObjectOutputStream(
-                        new FileOutputStream(fileToSave))) {
-                    oos.writeObject(saveData);
+            // Deep copy of the project taken on the EDT, so editing can go on
+            // while the objects are rebuilt and written in the background
+            ProjectSnapshot snapshot = controller.snapshotProject();
+            
+            startFileTask(new SwingWorker<Void, String>() {
+                @Override
+                protected Void doInBackground() throws Exception {
+                    ProjectFiles.write(fileToSave, snapshot.toProjectData(),
+                        (done, total) -> publish(" Saving " + fileToSave.getName() + "... " + formatBytes(done)),
+                        this::isCancelled);
+                    return null;
                 }
-                
-                statusBar.setText("Project saved successfully: " + fileToSave.getName());
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, 
-                    "Failed to save project: " + ex.getMessage(),
-                    "Save Error", 
-                    JOptionPane.ERROR_MESSAGE);
-            }
+
+                @Override
+                protected void process(List<String> chunks) {
+                    statusBar.setText(chunks.get(chunks.size() - 1));
+                }
+
+                @Override
+                protected void done() {
+                    finishFileTask();
+                    try {
+                        get();
+                        rememberProject(fileToSave);
+                        statusBar.setText("Project saved successfully: " + fileToSave.getName());
+                    } catch (CancellationException ex) {
+                        statusBar.setText(" Save cancelled");
+                    } catch (Exception ex) {
+                        if (isCancellation(ex)) {
+                            statusBar.setText(" Save cancelled");
+                            return;
+                        }
+                        JOptionPane.showMessageDialog(NetworkView.this, 
+                            "Failed to save project: " + causeMessage(ex),
+                            "Save Error", 
+                            JOptionPane.ERROR_MESSAGE);
+                        statusBar.setText(" Save failed");
+                    }
+                }
+            }, " Saving " + fileToSave.getName() + "...");
         }
     }
 
     private void loadNetwork() {
+        if (fileTask != null) return;
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Load Network Project");
         fileChooser.setFileFilter(new FileNameExtensionFilter("Network Files (*.net)", "net"));
@@ -515,34 +840,114 @@ public class NetworkView extends JFrame {
         int userSelection = fileChooser.showOpenDialog(this);
         
         if (userSelection == JFileChooser.APPROVE_OPTION) {
-            File fileToLoad = fileChooser.getSelectedFile();
-            
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(fileToLoad))) {
-                
-                @SuppressWarnings("unchecked")
-                Map<String, Object> loadedData = (Map<String, Object>) ois.readObject();
-                
-                // Load network data through controller
-                controller.loadNetworkData(loadedData.get("network"));
-                
-                // Load device positions
-                @SuppressWarnings("unchecked")
-                Map<Device, Point> loadedPositions = (Map<Device, Point>) loadedData.get("positions");
-                devicePositions.clear();
-                devicePositions.putAll(loadedPositions);
-                
-                selectedDevice = null;
-                updateDeviceInfoDisplay();
-                canvas.repaint();
-                statusBar.setText("Project loaded: " + fileToLoad.getName());
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, 
-                    "Failed to load project: " + ex.getMessage(),
-                    "Load Error", 
-                    JOptionPane.ERROR_MESSAGE);
+            loadProject(fileChooser.getSelectedFile());
+        }
+    }
+
+    /**
+     * Loads the project saved or loaded most recently, if it still exists.
+     * The file is read in the background while the window stays usable.
+     */
+    public void openLastProject() {
+        String path = PREFERENCES.get(PREF_LAST_PROJECT, null);
+        if (path == null || fileTask != null) return;
+        File file = new File(path);
+        if (file.isFile()) loadProject(file);
+    }
+
+    private void rememberProject(File file) {
+        projectFile = file;
+        PREFERENCES.put(PREF_LAST_PROJECT, file.getAbsolutePath());
+    }
+
+    private void loadProject(File fileToLoad) {
+        startFileTask(new SwingWorker<Void, String>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                Object data = ProjectFiles.read(fileToLoad,
+                    (done, total) -> publish(" Loading " + fileToLoad.getName() + "... "
+                        + (total > 0 ? (done * 100 / total) + "%" : formatBytes(done))),
+                    this::isCancelled);
+                if (isCancelled()) return null;
+                // Validating and indexing a large network takes a while too;
+                // the controller swaps the network in under its own locks
+                publish(" Loading " + fileToLoad.getName() + "... checking network");
+                controller.loadProjectData(data);
+                return null;
             }
+
+            @Override
+            protected void process(List<String> chunks) {
+                statusBar.setText(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                finishFileTask();
+                try {
+                    get();
+                    
+                    selectedDevice = null;
+                    updateDeviceInfoDisplay();
+                    canvas.repaint();
+                    rememberProject(fileToLoad);
+                    statusBar.setText("Project loaded: " + fileToLoad.getName());
+                } catch (CancellationException ex) {
+                    statusBar.setText(" Load cancelled");
+                } catch (Exception ex) {
+                    if (isCancellation(ex)) {
+                        statusBar.setText(" Load cancelled");
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(NetworkView.this, 
+                        "Failed to load project: " + causeMessage(ex),
+                        "Load Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                    statusBar.setText(" Load failed");
+                }
+            }
+        }, " Loading " + fileToLoad.getName() + "...");
+    }
+
+    private void startFileTask(SwingWorker<?, ?> task, String status) {
+        fileTask = task;
+        saveBtn.setEnabled(false);
+        loadBtn.setEnabled(false);
+        cancelBtn.setEnabled(true);
+        statusBar.setText(status);
+        task.execute();
+    }
+
+    private void finishFileTask() {
+        fileTask = null;
+        saveBtn.setEnabled(true);
+        loadBtn.setEnabled(true);
+        cancelBtn.setEnabled(false);
+    }
+
+    private void cancelFileTask() {
+        if (fileTask != null) {
+            fileTask.cancel(false);  // The stream notices isCancelled() and aborts
+            statusBar.setText(" Cancelling...");
+        }
+    }
+
+    private static boolean isCancellation(Exception ex) {
+        return ex instanceof ExecutionException && ex.getCause() instanceof InterruptedIOException;
+    }
+
+    private static String causeMessage(Exception ex) {
+        Throwable cause = ex;
+        while ((cause instanceof ExecutionException || cause instanceof InvocationTargetException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
         }
+        return cause.getMessage();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) return (bytes / 1024) + " KB";
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
     }
     
     private void editSelectedDevice() {
@@ -554,20 +959,24 @@ public class NetworkView extends JFrame {
             return;
         }
 
-        // Store current position before making changes
-        Point currentPosition = devicePositions.get(selectedDevice);
-        
         // Create edit panel
-        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        boolean isSwitch = selectedDevice instanceof Switch;
+        JPanel panel = new JPanel(new GridLayout(isSwitch ? 3 : 2, 2, 5, 5));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
         JTextField nameField = new JTextField(selectedDevice.getName());
         JTextField ipField = new JTextField(selectedDevice.getIpAddress());
+        JSpinner portsField = new JSpinner(new SpinnerNumberModel(
+            isSwitch ? ((Switch) selectedDevice).getPortCount() : 1, 1, 512, 1));
         
         panel.add(new JLabel("Name:"));
         panel.add(nameField);
         panel.add(new JLabel("IP Address:"));
         panel.add(ipField);
+        if (isSwitch) {
+            panel.add(new JLabel("Ports:"));
+            panel.add(portsField);
+        }
 
         // Show dialog
         int result = JOptionPane.showConfirmDialog(
@@ -592,32 +1001,414 @@ public class NetworkView extends JFrame {
                 return;
             }
 
-            // Check for duplicate names (excluding current device)
-            if (controller.getDevices().stream()
-                .filter(d -> !d.equals(selectedDevice))
-                .anyMatch(d -> d.getName().equalsIgnoreCase(newName))) {
-                showError("Device name '" + newName + "' already exists", "Duplicate Name");
+            // Position is keyed by the device id, so renaming keeps it;
+            // the controller rejects a name another device already has
+            try {
+                controller.updateDevice(selectedDevice, newName, newIp);
+            } catch (IllegalArgumentException ex) {
+                showError(ex.getMessage(), "Duplicate Name");
                 return;
             }
 
-            // Remove old device from positions map before updating
-            devicePositions.remove(selectedDevice);
-            
-            // Update device properties
-            selectedDevice.setName(newName);
-            selectedDevice.setIpAddress(newIp);
-            
-            // Put back in positions map with same position
-            devicePositions.put(selectedDevice, currentPosition);
-            
+            if (isSwitch) {
+                try {
+                    controller.setPortCount((Switch) selectedDevice, (Integer) portsField.getValue());
+                } catch (IllegalStateException ex) {
+                    showError(ex.getMessage(), "Invalid Port Count");
+                    return;
+                }
+            }
+
             canvas.repaint();
             statusBar.setText("Updated device: " + newName);
             updateDeviceInfoDisplay();
         }
     }
 
+    private void configureRouterInterface() {
+        if (!(selectedDevice instanceof Router)) return;
+        Router router = (Router) selectedDevice;
+        
+        RouterInterface iface = (RouterInterface) JOptionPane.showInputDialog(
+            this,
+            "Interface to configure:",
+            "Configure Interface",
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            router.getInterfaces().toArray(),
+            router.getInterfaces().get(0));
+        if (iface == null) return;
+        
+        String cidr = JOptionPane.showInputDialog(this,
+            "Address for " + iface.getName() + " (e.g., 10.0.1.1/24):",
+            iface.isConfigured() ? IpAddress.format(iface.getAddress()) + "/" + iface.getPrefixLength() : "");
+        if (cidr == null || cidr.trim().isEmpty()) return;
+        
+        try {
+            controller.configureInterface(router, iface.getIndex(), cidr.trim());
+            updateDeviceInfoDisplay();
+            canvas.repaint();
+            statusBar.setText("Configured " + router.getName() + " " + iface.getName() + " as " + cidr.trim());
+        } catch (IllegalArgumentException ex) {
+            showError(ex.getMessage(), "Invalid Address");
+        }
+    }
+
+    private void configureSwitchPort() {
+        if (!(selectedDevice instanceof Switch)) return;
+        Switch sw = (Switch) selectedDevice;
+        
+        JComboBox<Port> portBox = new JComboBox<>(sw.getPorts().toArray(new Port[0]));
+        JSpinner speedSpinner = new JSpinner(new SpinnerNumberModel(Port.DEFAULT_SPEED_MBPS, 1, 400_000, 100));
+        JComboBox<Port.Mode> modeBox = new JComboBox<>(Port.Mode.values());
+        JTextField vlansField = new JTextField(12);
+        // Show the chosen port's current settings
+        Runnable load = () -> {
+            Port port = (Port) portBox.getSelectedItem();
+            speedSpinner.setValue(port.getSpeedMbps());
+            modeBox.setSelectedItem(port.getMode());
+            vlansField.setText(port.getMode() == Port.Mode.TRUNK
+                ? Port.formatVlans(port.getVlans()) : String.valueOf(port.getAccessVlan()));
+        };
+        portBox.addActionListener(e -> load.run());
+        load.run();
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Port:"));
+        panel.add(portBox);
+        panel.add(new JLabel("Speed (Mbps):"));
+        panel.add(speedSpinner);
+        panel.add(new JLabel("Mode:"));
+        panel.add(modeBox);
+        panel.add(new JLabel("VLANs (e.g., 10 or 10,20-29):"));
+        panel.add(vlansField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Configure Port on " + sw.getName(),
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        Port port = (Port) portBox.getSelectedItem();
+        try {
+            String vlans = vlansField.getText().trim();
+            int accessVlan = Port.DEFAULT_VLAN;
+            java.util.BitSet trunkVlans = null;
+            if (modeBox.getSelectedItem() == Port.Mode.TRUNK) {
+                trunkVlans = Port.parseVlans(vlans);
+            } else {
+                try {
+                    accessVlan = Integer.parseInt(vlans);
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("An access port carries a single VLAN id");
+                }
+            }
+            controller.configurePort(sw, port.getIndex(), (Integer) speedSpinner.getValue(), accessVlan, trunkVlans);
+            updateDeviceInfoDisplay();
+            canvas.repaint();
+            statusBar.setText("Configured " + sw.getName() + " " + port);
+        } catch (IllegalArgumentException ex) {
+            showError(ex.getMessage(), "Invalid Port Settings");
+        }
+    }
+
+    private void showBroadcastDomain() {
+        if (selectedDevice == null) return;
+        Device device = selectedDevice;
+        
+        String input = JOptionPane.showInputDialog(this, "VLAN id:", String.valueOf(Port.DEFAULT_VLAN));
+        if (input == null || input.trim().isEmpty()) return;
+        
+        try {
+            int vlan = Integer.parseInt(input.trim());
+            // A router sits in one domain per interface carrying the VLAN
+            List<java.util.Set<Device>> domains = controller.getBroadcastDomains().domainsOf(device, vlan);
+            if (domains.isEmpty()) {
+                showInfo(device.getName() + " has no link carrying VLAN " + vlan, "Broadcast Domain");
+                return;
+            }
+            DefaultListModel<String> model = new DefaultListModel<>();
+            for (java.util.Set<Device> domain : domains) {
+                for (Device member : domain) {
+                    if (member != device) model.addElement(member.getName());
+                }
+            }
+            JScrollPane scroll = new JScrollPane(new JList<>(model));
+            scroll.setPreferredSize(new Dimension(300, 300));
+            JDialog dialog = new JDialog(this, model.size() + " device(s) share VLAN " + vlan + " with " + device.getName(), false);
+            dialog.add(scroll);
+            dialog.pack();
+            dialog.setLocationRelativeTo(this);
+            dialog.setVisible(true);
+        } catch (NumberFormatException ex) {
+            showError("VLAN id must be a number", "Invalid VLAN");
+        } catch (IllegalArgumentException ex) {
+            showError(ex.getMessage(), "Invalid VLAN");
+        }
+    }
+
+    private void importRouterRoutes() {
+        if (!(selectedDevice instanceof Router)) return;
+        Router router = (Router) selectedDevice;
+        
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Static Routes");
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        
+        try {
+            int count = controller.importStaticRoutes(router, fileChooser.getSelectedFile());
+            updateDeviceInfoDisplay();
+            canvas.repaint();
+            statusBar.setText("Imported " + count + " routes into " + router.getName());
+        } catch (Exception ex) {
+            showError("Failed to import routes: " + ex.getMessage(), "Import Error");
+        }
+    }
+
     // Helper method for error messages
     
+    private void toggleSimulation() {
+        if (!simulateBtn.isSelected()) {
+            simulation.pause();
+            statusBar.setText(" Simulation paused");
+            return;
+        }
+        if (!simulation.isRunning()) {
+            simulation.start(System.nanoTime());
+        }
+        simulation.play(1.0);
+        statusBar.setText(" Simulation running");
+    }
+
+    private void showViolations() {
+        DefaultListModel<Violation> model = new DefaultListModel<>();
+        model.addAll(rules.getViolations());
+        JList<Violation> list = new JList<>(model);
+        list.addListSelectionListener(e -> {
+            Violation violation = list.getSelectedValue();
+            if (e.getValueIsAdjusting() || violation == null || violation.getDevices().isEmpty()) return;
+            selectedDevice = violation.getDevices().get(0);
+            updateDeviceInfoDisplay();
+            centerOnDevice(selectedDevice);
+            canvas.repaint();
+        });
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setPreferredSize(new Dimension(700, 300));
+        JDialog dialog = new JDialog(this, model.isEmpty() ? "No rule violations" : model.size() + " rule violation(s)", false);
+        dialog.add(scroll);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    // Animated traffic in its own window, drawn off the event dispatch thread
+    private void showLiveView() {
+        if (liveView == null || !liveView.isDisplayable()) {
+            liveView = new LiveTrafficView(simulation, controller.getDeviceStore(), sprites, LiveTrafficView.DEFAULT_FPS);
+            liveView.setLocationRelativeTo(this);
+        }
+        liveView.start();
+        liveView.toFront();
+    }
+
+    private void runFailureSweep(JButton button) {
+        button.setEnabled(false);
+        statusBar.setText(" Running failure sweep...");
+        simulation.Topology topology = controller.getTopology();
+        new SwingWorker<analysis.CriticalityReport, Void>() {
+            @Override
+            protected analysis.CriticalityReport doInBackground() {
+                return new analysis.FailureSweep(topology)
+                    .runStandardSweep(FAILURE_SAMPLES, FAILURES_PER_SAMPLE, System.nanoTime());
+            }
+
+            @Override
+            protected void done() {
+                button.setEnabled(true);
+                try {
+                    analysis.CriticalityReport report = get();
+                    statusBar.setText(" Failure sweep: " + report.countHarmful() + " of "
+                        + report.getResults().size() + " scenarios cause loss");
+                    JTextArea text = new JTextArea(report.summary(100), 25, 100);
+                    text.setEditable(false);
+                    text.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                    JOptionPane.showMessageDialog(NetworkView.this, new JScrollPane(text),
+                        "Failure Criticality", JOptionPane.PLAIN_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    statusBar.setText(" Failure sweep failed");
+                    showError("Failure sweep failed: " + causeMessage(e), "Failure Sweep");
+                }
+            }
+        }.execute();
+    }
+
+    // Versions of the current project, kept in a "<project>.history" directory next to it
+    private void showHistory() {
+        if (projectFile == null) {
+            showWarning("Save or load a project first, its history is kept next to the project file", "History");
+            return;
+        }
+        ProjectHistory history;
+        try {
+            history = ProjectHistory.open(new File(projectFile.getPath() + ".history"));
+        } catch (java.io.IOException e) {
+            showError("Could not open history: " + e.getMessage(), "History");
+            return;
+        }
+        DefaultListModel<Version> model = new DefaultListModel<>();
+        JList<Version> list = new JList<>(model);
+        list.setVisibleRowCount(10);
+        Runnable reload = () -> {
+            model.clear();
+            List<Version> versions = history.getVersions();
+            for (int i = versions.size() - 1; i >= 0; i--) model.addElement(versions.get(i));
+        };
+        reload.run();
+        JTextArea output = new JTextArea(12, 70);
+        output.setEditable(false);
+        output.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JButton commitBtn = new JButton("Commit...");
+        JButton compareBtn = new JButton("Compare");
+        compareBtn.setToolTipText("Compare the two selected versions, or the selected one with the current project");
+        JButton restoreBtn = new JButton("Restore");
+        JButton[] buttons = {commitBtn, compareBtn, restoreBtn};
+
+        commitBtn.addActionListener(e -> {
+            String message = JOptionPane.showInputDialog(this, "Version message:", "Commit Version",
+                JOptionPane.PLAIN_MESSAGE);
+            if (message == null) return;
+            runHistoryTask(buttons, output, () -> {
+                Version version = history.commit(controller, message);
+                SwingUtilities.invokeLater(reload);
+                return "Committed " + version;
+            });
+        });
+        compareBtn.addActionListener(e -> {
+            List<Version> selected = list.getSelectedValuesList();
+            if (selected.isEmpty() || selected.size() > 2) {
+                output.setText("Select one or two versions to compare");
+                return;
+            }
+            // Against the current project, snapshotted here and diffed without committing it
+            ProjectSnapshot current = selected.size() == 1 ? controller.snapshotProject() : null;
+            runHistoryTask(buttons, output, () -> {
+                Version from = selected.get(selected.size() - 1);
+                ProjectDiff diff = current == null ? history.diff(from, selected.get(0))
+                    : history.diff(from, current.toProjectData());
+                return diff.summary(200) + String.format("%n(%d chunks compared in %.1f ms)",
+                    diff.getChunksCompared(), diff.getElapsedNanos() / 1e6);
+            });
+        });
+        restoreBtn.addActionListener(e -> {
+            Version version = list.getSelectedValue();
+            if (version == null || list.getSelectedIndices().length != 1) {
+                output.setText("Select the version to restore");
+                return;
+            }
+            if (JOptionPane.showConfirmDialog(this, "Replace the current network with " + version + "?",
+                    "Restore Version", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            runHistoryTask(buttons, output, () -> {
+                Serializable data = history.checkout(version);
+                // Off the EDT like loadProject; the controller swaps the network in under its own locks
+                controller.loadProjectData(data);
+                SwingUtilities.invokeLater(() -> {
+                    selectedDevice = null;
+                    updateDeviceInfoDisplay();
+                    canvas.repaint();
+                });
+                return "Restored " + version;
+            });
+        });
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        for (JButton button : buttons) buttonPanel.add(button);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JScrollPane(list), BorderLayout.NORTH);
+        panel.add(buttonPanel, BorderLayout.CENTER);
+        panel.add(new JScrollPane(output), BorderLayout.SOUTH);
+        JDialog dialog = new JDialog(this, "History of " + projectFile.getName(), false);
+        dialog.setContentPane(panel);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private interface HistoryTask {
+        String run() throws Exception;
+    }
+
+    private void runHistoryTask(JButton[] buttons, JTextArea output, HistoryTask task) {
+        for (JButton button : buttons) button.setEnabled(false);
+        output.setText("Working...");
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                return task.run();
+            }
+
+            @Override
+            protected void done() {
+                for (JButton button : buttons) button.setEnabled(true);
+                try {
+                    output.setText(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    output.setText("Failed: " + causeMessage(e));
+                }
+                output.setCaretPosition(0);
+            }
+        }.execute();
+    }
+
+    private void addTrafficFromSelected() {
+        if (!(selectedDevice instanceof Computer)) return;
+        List<String> targets = new java.util.ArrayList<>();
+        for (Device device : controller.getDevices()) {
+            if (device instanceof Computer && !device.equals(selectedDevice)) targets.add(device.getName());
+        }
+        if (targets.isEmpty()) {
+            showWarning("There are no other computers to send traffic to", "Add Traffic");
+            return;
+        }
+        targets.sort(String.CASE_INSENSITIVE_ORDER);
+        JComboBox<String> targetBox = new JComboBox<>(targets.toArray(new String[0]));
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(1000, 1, 10_000_000, 100));
+        JSpinner sizeSpinner = new JSpinner(new SpinnerNumberModel(1000, 64, 65535, 100));
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Destination:"));
+        panel.add(targetBox);
+        panel.add(new JLabel("Packets per second:"));
+        panel.add(rateSpinner);
+        panel.add(new JLabel("Packet size (bytes):"));
+        panel.add(sizeSpinner);
+        if (JOptionPane.showConfirmDialog(this, panel, "Add Traffic from " + selectedDevice.getName(),
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        long intervalNanos = 1_000_000_000L / (Integer) rateSpinner.getValue();
+        String target = (String) targetBox.getSelectedItem();
+        try {
+            if (!simulation.isRunning()) simulation.start(System.nanoTime());
+            try {
+                simulation.addTraffic(selectedDevice.getName(), target, intervalNanos, (Integer) sizeSpinner.getValue(), 0);
+            } catch (IllegalArgumentException e) {
+                // The running simulation was started before these devices existed
+                if (JOptionPane.showConfirmDialog(this,
+                        "The running simulation does not include these devices. Restart it with the current network?",
+                        "Add Traffic", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+                    return;
+                }
+                boolean playing = simulation.isPlaying();
+                simulation.stop();
+                simulation.start(System.nanoTime());
+                simulation.addTraffic(selectedDevice.getName(), target, intervalNanos, (Integer) sizeSpinner.getValue(), 0);
+                if (playing) simulation.play(1.0);
+            }
+            simulation.watch(selectedDevice.getId());
+            statusBar.setText(" Traffic added: " + selectedDevice.getName() + " -> " + target);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            showError(e.getMessage(), "Add Traffic");
+        }
+    }
+
     private void showWarning(String message, String title) {
         JOptionPane.showMessageDialog(this, 
             message, 
@@ -640,7 +1431,6 @@ public class NetworkView extends JFrame {
     }
 
     private void initializeDevicePositions() {
-        devicePositions.clear();
         int width = canvas.getWidth();
         int height = canvas.getHeight();
         
@@ -654,12 +1444,9 @@ public class NetworkView extends JFrame {
             Device device = controller.getDevices().get(i);
             int col = i % cols;
             int row = i / cols;
-            devicePositions.put(device, 
-                new Point(
-                    cellWidth * (col + 1) - 30, 
-                    cellHeight * (row + 1) - 20
-                )
-            );
+            controller.moveDevice(device,
+                cellWidth * (col + 1) - 30, 
+                cellHeight * (row + 1) - 20);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package views;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Device icons decoded and scaled once, off the event dispatch thread, into
+ * images compatible with the screen so drawing them is a plain blit. Until
+ * loading finishes the getters return null and callers draw their fallback
+ * shapes.
+ */
+public final class SpriteCache {
+    public static final int SIZE = 50;
+
+    private volatile BufferedImage computer;
+    private volatile BufferedImage networkSwitch;
+    private final CompletableFuture<Void> loaded;
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    private SpriteCache() {
+        loaded = CompletableFuture.runAsync(this::load);
+        loaded.whenComplete((ignored, error) -> {
+            if (error != null) {
+                System.err.println("Warning: Could not load device images: " + error.getMessage());
+            }
+            SwingUtilities.invokeLater(this::fireLoaded);
+        });
+    }
+
+    /**
+     * Starts loading the sprites in the background.
+     */
+    public static SpriteCache loadAsync() {
+        return new SpriteCache();
+    }
+
+    public BufferedImage getComputer() {
+        return computer;
+    }
+
+    public BufferedImage getSwitch() {
+        return networkSwitch;
+    }
+
+    public boolean isLoaded() {
+        return loaded.isDone();
+    }
+
+    /**
+     * Runs the task on the event dispatch thread once loading has finished,
+     * successfully or not. Must be called on the event dispatch thread.
+     */
+    public void whenLoaded(Runnable task) {
+        if (loaded.isDone()) {
+            task.run();
+        } else {
+            listeners.add(task);
+        }
+    }
+
+    private void fireLoaded() {
+        for (Runnable task : listeners) task.run();
+        listeners.clear();
+    }
+
+    private void load() {
+        GraphicsConfiguration config = screenConfiguration();
+        computer = scale(read("pc.png"), config);
+        networkSwitch = scale(read("switch.png"), config);
+    }
+
+    private BufferedImage read(String name) {
+        try (InputStream in = SpriteCache.class.getResourceAsStream("/images/" + name)) {
+            if (in != null) return ImageIO.read(in);
+            // Not packaged, running from the source tree
+            File file = new File("images/" + name);
+            return file.isFile() ? ImageIO.read(file) : null;
+        } catch (IOException e) {
+            System.err.println("Warning: Could not load " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static GraphicsConfiguration screenConfiguration() {
+        if (GraphicsEnvironment.isHeadless()) return null;
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    // Halves with bilinear filtering until close to the target, which looks
+    // as smooth as SCALE_SMOOTH without its per-draw cost
+    private static BufferedImage scale(BufferedImage source, GraphicsConfiguration config) {
+        if (source == null) return null;
+        BufferedImage current = source;
+        int width = current.getWidth();
+        int height = current.getHeight();
+        do {
+            width = Math.max(SIZE, width / 2);
+            height = Math.max(SIZE, height / 2);
+            BufferedImage next = (width == SIZE && height == SIZE) ? create(config) :
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = next.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = next;
+        } while (width != SIZE || height != SIZE);
+        return current;
+    }
+
+    private static BufferedImage create(GraphicsConfiguration config) {
+        return config != null ? config.createCompatibleImage(SIZE, SIZE, Transparency.TRANSLUCENT)
+            : new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+}
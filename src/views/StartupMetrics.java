@@ -0,0 +1,62 @@
+package views;
+
+import javax.swing.SwingUtilities;
+import java.time.Instant;
+
+/**
+ * Time from JVM start to the first frame on screen and to the first moment
+ * the event dispatch thread is free to handle input. The result is printed
+ * when it exceeds the budget ({@code -Dnetsim.startupBudgetMillis}, default
+ * 1000) or when {@code -Dnetsim.startupTiming=true}. With
+ * {@code -Dnetsim.exitAfterStartup=true} the application exits once it is
+ * interactive and the sprites are loaded, which is how the AppCDS training
+ * run is made.
+ */
+public final class StartupMetrics {
+    private static final long DEFAULT_BUDGET_MILLIS = 1000;
+    private static final long startMillis = jvmStartMillis();
+    private static long firstPaintMillis = -1;
+    private static long interactiveMillis = -1;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Called from the canvas on every paint; only the first one counts.
+     */
+    static void painted(SpriteCache sprites) {
+        if (firstPaintMillis >= 0) return;
+        firstPaintMillis = elapsed();
+        // The EDT runs this once it has drained the events queued behind the first paint
+        SwingUtilities.invokeLater(() -> {
+            interactiveMillis = elapsed();
+            report();
+            if (Boolean.getBoolean("netsim.exitAfterStartup")) {
+                sprites.whenLoaded(() -> System.exit(0));
+            }
+        });
+    }
+
+    public static long getTimeToInteractiveMillis() {
+        return interactiveMillis;
+    }
+
+    private static void report() {
+        long budget = Long.getLong("netsim.startupBudgetMillis", DEFAULT_BUDGET_MILLIS);
+        boolean over = interactiveMillis > budget;
+        if (!over && !Boolean.getBoolean("netsim.startupTiming")) return;
+        System.err.println((over ? "Warning: slow startup: " : "Startup: ")
+            + "first paint " + firstPaintMillis + " ms, interactive " + interactiveMillis
+            + " ms (budget " + budget + " ms)");
+    }
+
+    private static long elapsed() {
+        return System.currentTimeMillis() - startMillis;
+    }
+
+    private static long jvmStartMillis() {
+        return ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElseGet(System::currentTimeMillis);
+    }
+}
@@ -0,0 +1,143 @@
+package views;
+
+import stats.Metric;
+import stats.Resolution;
+import stats.StatsSnapshot;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Small line charts of the selected device's statistics: received
+ * packets, drops and latency, plus utilization of each attached link.
+ * Draws whatever snapshot it was last given and never touches the
+ * simulator itself.
+ */
+public class StatsChartPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHART_HEIGHT = 70;
+    private static final int GAP = 6;
+    private static final Color[] LINK_COLORS = {
+        new Color(0, 114, 178), new Color(213, 94, 0), new Color(0, 158, 115),
+        new Color(204, 121, 167), new Color(230, 159, 0), new Color(86, 180, 233)
+    };
+    private static final Metric[] DEVICE_METRICS = {
+        Metric.DEVICE_THROUGHPUT, Metric.DEVICE_DROPS, Metric.DEVICE_LATENCY
+    };
+
+    private final JComboBox<Resolution> resolutionBox = new JComboBox<>(Resolution.values());
+    private final JPanel charts;
+    private transient StatsSnapshot snapshot;
+
+    public StatsChartPanel() {
+        super(new BorderLayout());
+        JPanel header = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        header.add(new JLabel("Resolution:"));
+        header.add(resolutionBox);
+        resolutionBox.addActionListener(e -> repaint());
+        charts = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                drawCharts((Graphics2D) g);
+            }
+        };
+        charts.setBackground(Color.WHITE);
+        charts.setPreferredSize(new Dimension(260, 4 * (CHART_HEIGHT + GAP) + GAP));
+        add(header, BorderLayout.NORTH);
+        add(charts, BorderLayout.CENTER);
+    }
+
+    public void setSnapshot(StatsSnapshot snapshot) {
+        if (snapshot == this.snapshot) return;
+        this.snapshot = snapshot;
+        charts.repaint();
+    }
+
+    private void drawCharts(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setFont(getFont().deriveFont(10f));
+        StatsSnapshot current = snapshot;
+        if (current == null) {
+            g.setColor(Color.GRAY);
+            g.drawString("No simulation statistics", GAP, 20);
+            return;
+        }
+        Resolution resolution = (Resolution) resolutionBox.getSelectedItem();
+        int width = charts.getWidth() - 2 * GAP;
+        int y = GAP;
+        for (Metric metric : DEVICE_METRICS) {
+            float[][] lines = { current.getDeviceSeries(metric, resolution) };
+            drawChart(g, GAP, y, width, metric.getLabel() + " (" + metric.getUnit() + ")", lines, null);
+            y += CHART_HEIGHT + GAP;
+        }
+        int links = current.getLinkCount();
+        float[][] lines = new float[links][];
+        String[] names = new String[links];
+        for (int i = 0; i < links; i++) {
+            lines[i] = current.getLinkSeries(i, Metric.LINK_UTILIZATION, resolution);
+            names[i] = current.getLinkName(i);
+        }
+        drawChart(g, GAP, y, width, "Link utilization (%)", lines, names);
+    }
+
+    private void drawChart(Graphics2D g, int x, int y, int width, String title, float[][] lines, String[] names) {
+        int top = y + 12;
+        int height = CHART_HEIGHT - 12;
+        float max = 0;
+        int samples = 0;
+        for (float[] line : lines) {
+            samples = Math.max(samples, line.length);
+            for (float v : line) {
+                if (!Float.isNaN(v)) max = Math.max(max, v);
+            }
+        }
+        if (max <= 0) max = 1;
+
+        g.setColor(new Color(245, 245, 245));
+        g.fillRect(x, top, width, height);
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawRect(x, top, width, height);
+        g.setColor(Color.DARK_GRAY);
+        String latest = lines.length == 1 && lines[0].length > 0 ? "  " + format(lines[0][lines[0].length - 1]) : "";
+        g.drawString(title + latest, x, y + 10);
+        String scale = format(max);
+        g.drawString(scale, x + width - g.getFontMetrics().stringWidth(scale) - 2, top + 10);
+
+        for (int i = 0; i < lines.length; i++) {
+            float[] line = lines[i];
+            g.setColor(lines.length == 1 ? LINK_COLORS[0] : LINK_COLORS[i % LINK_COLORS.length]);
+            drawLine(g, line, x, top, width, height, max, samples);
+            if (names != null && i < 4) {
+                g.drawString(names[i], x + 2 + i * (width / 4), top + height - 2);
+            }
+        }
+    }
+
+    private static void drawLine(Graphics2D g, float[] line, int x, int top, int width, int height,
+            float max, int samples) {
+        if (samples < 2) return;
+        // Right-align so the newest sample is always at the right edge
+        int offset = samples - line.length;
+        int prevX = -1;
+        int prevY = -1;
+        for (int i = 0; i < line.length; i++) {
+            if (Float.isNaN(line[i])) {
+                prevX = -1;
+                continue;
+            }
+            int px = x + (int) ((long) (i + offset) * width / (samples - 1));
+            int py = top + height - (int) (line[i] / max * (height - 2)) - 1;
+            if (prevX >= 0) g.drawLine(prevX, prevY, px, py);
+            prevX = px;
+            prevY = py;
+        }
+    }
+
+    private static String format(float value) {
+        if (Float.isNaN(value)) return "-";
+        if (value >= 100) return String.format("%.0f", value);
+        return String.format("%.2f", value);
+    }
+}